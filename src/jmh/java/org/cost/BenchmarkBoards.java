@@ -0,0 +1,227 @@
+package org.cost;
+
+import org.cost.game.Game;
+import org.cost.game.GameState;
+import org.cost.player.Player;
+import org.cost.player.PlayerTerritory;
+import org.cost.territory.MapTopology;
+import org.cost.territory.MapTopologyRegistry;
+import org.cost.territory.Territory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Boards shared by the benchmarks: the production map read from the Flyway seed migrations and
+ * synthetic square grids. Territories are owned the way a started game owns them, by spreading
+ * each supply depot's owner outwards until every territory is claimed.
+ */
+public final class BenchmarkBoards {
+
+    public static final int PLAYERS = 4;
+    public static final String GAME_NAME = "benchmark";
+
+    private static final Pattern TERRITORY_ROW =
+            Pattern.compile("\\((\\d+), \"([^\"]+)\", (\\w+), (\\w+), (\\w+), (\\w+)\\)");
+    private static final Pattern SUPPLY_ROW =
+            Pattern.compile("SET supply = '(\\d+)' WHERE name IN \\(([^)]*)\\)");
+
+    private BenchmarkBoards() {
+    }
+
+    public static List<Player> players() {
+        List<Player> players = new ArrayList<>();
+        for (int playerNumber = 1; playerNumber <= PLAYERS; playerNumber++) {
+            players.add(Player.builder()
+                    .playerId((long) playerNumber)
+                    .playerNumber(playerNumber)
+                    .name("player" + playerNumber)
+                    .gameName(GAME_NAME)
+                    .remainingActions(3)
+                    .build());
+        }
+        return players;
+    }
+
+    public static List<PlayerTerritory> board(String name) {
+        return claim(territories(name));
+    }
+
+    /**
+     * The map named by a benchmark parameter: "map" for the seeded map, "gridN" for a square
+     * grid of about N territories.
+     */
+    public static List<Territory> territories(String name) {
+        if ("map".equals(name)) {
+            return seedTerritories();
+        }
+        if (name.startsWith("grid")) {
+            int side = (int) Math.sqrt(Integer.parseInt(name.substring("grid".length())));
+            return gridTerritories(side, side);
+        }
+        throw new IllegalArgumentException("Unknown board " + name);
+    }
+
+    /**
+     * The in-memory state of a started game on the named board, with every territory claimed.
+     */
+    public static GameState gameState(String name) {
+        Game game = Game.builder().gameName(GAME_NAME).started(true).turnNumber(1).build();
+        List<Territory> territories = territories(name);
+        return GameState.of(game, players(), claim(territories), MapTopology.of(territories).graph());
+    }
+
+    /**
+     * A registry serving the given map without a database.
+     */
+    public static MapTopologyRegistry registry(List<Territory> territories) {
+        MapTopology topology = MapTopology.of(territories);
+        return new MapTopologyRegistry(null) {
+            @Override
+            public MapTopology getTopology() {
+                return topology;
+            }
+        };
+    }
+
+    public static List<Territory> seedTerritories() {
+        Map<String, Integer> supplyByName = new HashMap<>();
+        Matcher supply = SUPPLY_ROW.matcher(read("db/migration/V8__assign_supply_depots.sql"));
+        while (supply.find()) {
+            for (String quoted : supply.group(2).split(",")) {
+                supplyByName.put(quoted.trim().replace("'", ""), Integer.parseInt(supply.group(1)));
+            }
+        }
+
+        List<Territory> territories = new ArrayList<>();
+        Matcher row = TERRITORY_ROW.matcher(read("db/migration/V6__add_territory_neighbors.sql"));
+        while (row.find()) {
+            territories.add(Territory.builder()
+                    .territoryId(Long.parseLong(row.group(1)))
+                    .name(row.group(2))
+                    .supply(supplyByName.getOrDefault(row.group(2), 0))
+                    .north(parseId(row.group(3)))
+                    .east(parseId(row.group(4)))
+                    .south(parseId(row.group(5)))
+                    .west(parseId(row.group(6)))
+                    .build());
+        }
+        return territories;
+    }
+
+    public static List<PlayerTerritory> seedMap() {
+        return claim(seedTerritories());
+    }
+
+    public static List<Territory> gridTerritories(int rows, int columns) {
+        List<Territory> territories = new ArrayList<>(rows * columns);
+        int spacing = Math.max(2, Math.min(rows, columns) / 4);
+        int depots = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                boolean depot = row % spacing == spacing / 2 && column % spacing == spacing / 2;
+                territories.add(Territory.builder()
+                        .territoryId(gridId(row, column, columns))
+                        .name("Grid " + row + "-" + column)
+                        .supply(depot ? depots++ % PLAYERS + 1 : 0)
+                        .north(row == 0 ? null : gridId(row - 1, column, columns))
+                        .east(column == columns - 1 ? null : gridId(row, column + 1, columns))
+                        .south(row == rows - 1 ? null : gridId(row + 1, column, columns))
+                        .west(column == 0 ? null : gridId(row, column - 1, columns))
+                        .build());
+            }
+        }
+        return territories;
+    }
+
+    public static List<PlayerTerritory> grid(int rows, int columns) {
+        return claim(gridTerritories(rows, columns));
+    }
+
+    public static List<PlayerTerritory> supplyDepots(List<PlayerTerritory> playerTerritories) {
+        return playerTerritories.stream()
+                .filter(PlayerTerritory::isSupplyDepotTerritory)
+                .collect(Collectors.toList());
+    }
+
+    private static List<PlayerTerritory> claim(List<Territory> territories) {
+        List<Player> players = players();
+        Map<Long, Integer> indexes = new HashMap<>();
+        for (int index = 0; index < territories.size(); index++) {
+            indexes.put(territories.get(index).getTerritoryId(), index);
+        }
+
+        int[] owners = new int[territories.size()];
+        int[] queue = new int[territories.size()];
+        int tail = 0;
+        int depotCount = 0;
+        for (int index = 0; index < territories.size(); index++) {
+            int supply = territories.get(index).getSupply();
+            if (supply > 0 && supply <= PLAYERS) {
+                owners[index] = depotCount++ % PLAYERS + 1;
+                queue[tail++] = index;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            Territory territory = territories.get(queue[head]);
+            for (Long neighborId : Arrays.asList(territory.getNorth(), territory.getEast(), territory.getSouth(), territory.getWest())) {
+                Integer neighbor = neighborId == null ? null : indexes.get(neighborId);
+                if (neighbor != null && owners[neighbor] == 0) {
+                    owners[neighbor] = owners[queue[head]];
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+
+        List<PlayerTerritory> playerTerritories = new ArrayList<>(territories.size());
+        for (int index = 0; index < territories.size(); index++) {
+            Territory territory = territories.get(index);
+            Player owner = owners[index] == 0 ? null : players.get(owners[index] - 1);
+            int supply = territory.getSupply();
+            playerTerritories.add(PlayerTerritory.builder()
+                    .id((long) index + 1)
+                    .territoryId(territory.getTerritoryId())
+                    .territoryName(territory.getName())
+                    .gameName(GAME_NAME)
+                    .troops(supply > 0 && supply <= PLAYERS ? 8 : 12)
+                    .supplyDepotTerritory(supply > 0 && supply <= PLAYERS)
+                    .player(owner)
+                    .playerId(owner == null ? null : owner.getPlayerId())
+                    .territory(territory)
+                    .build());
+        }
+        return playerTerritories;
+    }
+
+    private static Long parseId(String value) {
+        return "null".equals(value) ? null : Long.valueOf(value);
+    }
+
+    private static Long gridId(int row, int column, int columns) {
+        return (long) row * columns + column + 1;
+    }
+
+    private static String read(String resource) {
+        InputStream stream = BenchmarkBoards.class.getClassLoader().getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IllegalStateException("Missing " + resource);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
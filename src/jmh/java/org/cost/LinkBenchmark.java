@@ -0,0 +1,85 @@
+package org.cost;
+
+import org.cost.territory.Territory;
+import org.cost.territory.TerritoryController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+
+/**
+ * Builds one self link per territory on the seeded map, as a board or territory list response
+ * does, once through {@code linkTo(methodOn(...))} and once through {@link LinkFactory}. Every
+ * invocation binds a fresh request so the factory's per-request base URI is paid each time.
+ * Run with {@code ./gradlew jmh -PjmhInclude=LinkBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkBenchmark {
+
+    private long[] territoryIds;
+    private LinkFactory linkFactory;
+
+    @Setup
+    public void setup() {
+        List<Territory> territories = BenchmarkBoards.seedTerritories();
+        territoryIds = new long[territories.size()];
+        for (int index = 0; index < territoryIds.length; index++) {
+            territoryIds[index] = territories.get(index).getTerritoryId();
+        }
+        linkFactory = new LinkFactory();
+    }
+
+    @Setup(Level.Invocation)
+    public void bindRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/board");
+        request.setServerName("localhost");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @TearDown(Level.Invocation)
+    public void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public List<Link> controllerLinkBuilder() {
+        List<Link> links = new ArrayList<>(territoryIds.length);
+        for (long territoryId : territoryIds) {
+            links.add(linkTo(methodOn(TerritoryController.class).getTerritory(territoryId, null)).withSelfRel());
+        }
+        return links;
+    }
+
+    @Benchmark
+    public List<Link> linkFactory() {
+        List<Link> links = new ArrayList<>(territoryIds.length);
+        for (long territoryId : territoryIds) {
+            links.add(linkFactory.territory(territoryId));
+        }
+        return links;
+    }
+}
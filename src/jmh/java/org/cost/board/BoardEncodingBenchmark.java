@@ -0,0 +1,78 @@
+package org.cost.board;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cost.BenchmarkBoards;
+import org.cost.LinkFactory;
+import org.cost.game.GameState;
+import org.cost.game.GameStateService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the same board response as JSON (the default representation) and as
+ * application/x-supplyraid-board. Payload sizes are printed once per trial; the gc profiler
+ * reports allocation next to the encode time. Run with
+ * {@code ./gradlew jmh -PjmhInclude=BoardEncodingBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardEncodingBenchmark {
+
+    @Param({"map", "grid2500"})
+    public String board;
+
+    private ObjectMapper objectMapper;
+    private BoardController.BoardResponse boardResponse;
+    private ByteArrayOutputStream buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        GameState gameState = BenchmarkBoards.gameState(board);
+        GameStateService gameStateService = new GameStateService(null, null, null, null, null, null) {
+            @Override
+            public GameState getGameState(String gameName) {
+                return gameState;
+            }
+        };
+        objectMapper = new ObjectMapper();
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/board")));
+        boardResponse = new BoardController(gameStateService, new LinkFactory(), objectMapper, 0).board(gameState, 1);
+        RequestContextHolder.resetRequestAttributes();
+
+        buffer = new ByteArrayOutputStream(64 * 1024);
+        System.out.printf("%n%s: json %d bytes, binary %d bytes%n", board, json().length, binary().length);
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        return objectMapper.writeValueAsBytes(boardResponse);
+    }
+
+    @Benchmark
+    public byte[] binary() throws IOException {
+        buffer.reset();
+        BoardMessageConverter.write(boardResponse, buffer);
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,94 @@
+package org.cost.board;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cost.BenchmarkBoards;
+import org.cost.LinkFactory;
+import org.cost.game.GameState;
+import org.cost.game.GameStateService;
+import org.cost.player.PlayerController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the /board response through BoardController: once for a poll that finds the game
+ * unchanged and is served the bytes encoded for its version, and once after a change forces the
+ * territory and player lists to be rebuilt and encoded again. Run with
+ * {@code ./gradlew jmh -PjmhInclude=BoardResponseBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardResponseBenchmark {
+
+    @Param({"map", "grid2500"})
+    public String board;
+
+    private GameState gameState;
+    private BoardController boardController;
+    private MockHttpSession session;
+    private ServletWebRequest webRequest;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private boolean supplied;
+
+    @Setup
+    public void setup() {
+        gameState = BenchmarkBoards.gameState(board);
+        GameStateService gameStateService = new GameStateService(null, null, null, null, null, null) {
+            @Override
+            public GameState getGameState(String gameName) {
+                return gameState;
+            }
+        };
+        boardController = new BoardController(gameStateService, new LinkFactory(), new ObjectMapper(), 0);
+
+        request = new MockHttpServletRequest("GET", "/board");
+        response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        webRequest = new ServletWebRequest(request, response);
+        session = new MockHttpSession();
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, BenchmarkBoards.GAME_NAME);
+        session.setAttribute(PlayerController.SESSION_PLAYER_NUMBER_FIELD, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> pollUnchanged() {
+        return boardController.getBoard(session, webRequest, request, response);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> pollAfterChange() {
+        synchronized (gameState) {
+            supplied = !supplied;
+            gameState.setSupplied(0, supplied);
+        }
+        return boardController.getBoard(session, webRequest, request, response);
+    }
+}
@@ -0,0 +1,194 @@
+package org.cost.game;
+
+import org.cost.BenchmarkBoards;
+import org.cost.player.SuppliedStatusService;
+import org.cost.territory.PredicateFlood;
+import org.cost.territory.TerritoryGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the bitboard paths of {@link GameState} against the owner-array scans and predicate
+ * flood they replaced: the per-player counts on /board, the adjacency check of a move and the
+ * supply recompute after a capture. The seeded map fits one word; grid2500 exercises the
+ * multi-word boards. Run with {@code ./gradlew jmh -PjmhInclude=BitboardBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitboardBenchmark {
+
+    @Param({"map", "grid2500"})
+    public String board;
+
+    private GameState gameState;
+    private SuppliedStatusService suppliedStatusService;
+    private PredicateFlood predicateFlood;
+    private int captured;
+    private int[] moveFrom;
+    private int[] moveTo;
+
+    @Setup
+    public void setup() {
+        gameState = BenchmarkBoards.gameState(board);
+        suppliedStatusService = new SuppliedStatusService(null, null, null, null);
+        suppliedStatusService.recomputeSupplied(gameState, 0);
+        captured = gameState.territoryCount() / 2;
+
+        TerritoryGraph graph = gameState.graph();
+        predicateFlood = new PredicateFlood(graph);
+        moveFrom = new int[graph.size() * TerritoryGraph.DIRECTIONS];
+        moveTo = new int[moveFrom.length];
+        for (int index = 0; index < graph.size(); index++) {
+            for (int direction = 0; direction < TerritoryGraph.DIRECTIONS; direction++) {
+                int move = index * TerritoryGraph.DIRECTIONS + direction;
+                moveFrom[move] = index;
+                moveTo[move] = direction % 2 == 0 ? graph.neighbor(index, direction) : (index * 7 + 3) % graph.size();
+            }
+        }
+    }
+
+    @Benchmark
+    public void playerCountsBitboard(Blackhole blackhole) {
+        for (int slot = 0; slot < gameState.playerCount(); slot++) {
+            int playerNumber = gameState.playerNumber(slot);
+            blackhole.consume(gameState.troopsOwnedBy(playerNumber));
+            blackhole.consume(gameState.territoriesOwnedBy(playerNumber));
+            blackhole.consume(gameState.supplyDepotsOwnedBy(playerNumber));
+        }
+    }
+
+    @Benchmark
+    public void playerCountsArrayScan(Blackhole blackhole) {
+        for (int slot = 0; slot < gameState.playerCount(); slot++) {
+            int playerNumber = gameState.playerNumber(slot);
+            blackhole.consume(ArrayScan.troopsOwnedBy(gameState, playerNumber));
+            blackhole.consume(ArrayScan.territoriesOwnedBy(gameState, playerNumber));
+            blackhole.consume(ArrayScan.supplyDepotsOwnedBy(gameState, playerNumber));
+        }
+    }
+
+    @Benchmark
+    public int adjacencyBitboard() {
+        int neighbors = 0;
+        for (int move = 0; move < moveFrom.length; move++) {
+            neighbors += gameState.areNeighbors(moveFrom[move], moveTo[move]) ? 1 : 0;
+        }
+        return neighbors;
+    }
+
+    @Benchmark
+    public int adjacencyArrayScan() {
+        int neighbors = 0;
+        for (int move = 0; move < moveFrom.length; move++) {
+            neighbors += ArrayScan.areNeighbors(gameState.graph(), moveFrom[move], moveTo[move]) ? 1 : 0;
+        }
+        return neighbors;
+    }
+
+    @Benchmark
+    public BitSet recomputeSuppliedBitboard() {
+        return suppliedStatusService.recomputeSupplied(gameState, captured);
+    }
+
+    @Benchmark
+    public BitSet recomputeSuppliedPredicateFlood() {
+        return ArrayScan.recomputeSupplied(gameState, predicateFlood, captured);
+    }
+
+    /**
+     * The owner-array scans and predicate flood GameState and SuppliedStatusService ran before
+     * the bitboards, kept verbatim as the baseline.
+     */
+    static final class ArrayScan {
+
+        static int troopsOwnedBy(GameState gameState, int playerNumber) {
+            int total = 0;
+            for (int index = 0; index < gameState.territoryCount(); index++) {
+                if (gameState.owner(index) == playerNumber) {
+                    total += gameState.troops(index);
+                }
+            }
+            return total;
+        }
+
+        static int territoriesOwnedBy(GameState gameState, int playerNumber) {
+            int total = 0;
+            for (int index = 0; index < gameState.territoryCount(); index++) {
+                if (gameState.owner(index) == playerNumber) {
+                    total++;
+                }
+            }
+            return total;
+        }
+
+        static int supplyDepotsOwnedBy(GameState gameState, int playerNumber) {
+            int total = 0;
+            for (int index = 0; index < gameState.territoryCount(); index++) {
+                if (gameState.owner(index) == playerNumber && gameState.isSupplyDepot(index)) {
+                    total++;
+                }
+            }
+            return total;
+        }
+
+        static boolean areNeighbors(TerritoryGraph graph, int index, int otherIndex) {
+            for (int direction = 0; direction < TerritoryGraph.DIRECTIONS; direction++) {
+                if (graph.neighbor(index, direction) == otherIndex) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static BitSet recomputeSupplied(GameState gameState, PredicateFlood floodFill, int... changedIndices) {
+            TerritoryGraph graph = gameState.graph();
+            BitSet seeds = new BitSet(graph.size());
+            for (int changedIndex : changedIndices) {
+                seeds.set(changedIndex);
+                for (int direction = 0; direction < TerritoryGraph.DIRECTIONS; direction++) {
+                    int neighbor = graph.neighbor(changedIndex, direction);
+                    if (neighbor != TerritoryGraph.NO_NEIGHBOR) {
+                        seeds.set(neighbor);
+                    }
+                }
+            }
+
+            BitSet flipped = new BitSet(graph.size());
+            for (int seed = seeds.nextSetBit(0); seed >= 0; seed = seeds.nextSetBit(seed + 1)) {
+                int owner = gameState.owner(seed);
+                int size = owner == GameState.UNOWNED ? 1 : floodFill.component(seed,
+                        (from, to) -> gameState.owner(to) == owner);
+                boolean hasSupplyDepot = false;
+                for (int i = 0; i < size && owner != GameState.UNOWNED; i++) {
+                    hasSupplyDepot |= gameState.isSupplyDepot(floodFill.reached(i));
+                }
+                for (int i = 0; i < size; i++) {
+                    int index = owner == GameState.UNOWNED ? seed : floodFill.reached(i);
+                    seeds.clear(index);
+                    if (gameState.isSupplied(index) != hasSupplyDepot) {
+                        gameState.setSupplied(index, hasSupplyDepot);
+                        flipped.set(index);
+                    }
+                }
+            }
+            return flipped;
+        }
+    }
+}
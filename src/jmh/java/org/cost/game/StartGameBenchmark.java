@@ -0,0 +1,126 @@
+package org.cost.game;
+
+import org.cost.BenchmarkBoards;
+import org.cost.player.PlayerController;
+import org.cost.player.PlayerTerritory;
+import org.cost.player.PlayerTerritoryDataService;
+import org.cost.player.SuppliedStatusService;
+import org.cost.territory.Territory;
+import org.cost.territory.TerritoryDataService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs GameService.startGame against in-memory data services, so what is measured is the
+ * starting-location assembly, troop placement and supply flood rather than the database. Every
+ * invocation starts a fresh, unowned copy of the board. Run with
+ * {@code ./gradlew jmh -PjmhInclude=StartGameBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StartGameBenchmark {
+
+    @Param({"map", "grid2500"})
+    public String board;
+
+    private List<Territory> territories;
+    private GameService gameService;
+    private MockHttpSession session;
+    private Game game;
+    private List<PlayerTerritory> playerTerritories;
+
+    @Setup
+    public void setup() {
+        territories = BenchmarkBoards.territories(board);
+        session = new MockHttpSession();
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, BenchmarkBoards.GAME_NAME);
+
+        GameDataService gameDataService = new GameDataService(null) {
+            @Override
+            public Game findGameByName(String gameName) {
+                return game;
+            }
+
+            @Override
+            public void saveGame(Game game) {
+            }
+        };
+        TerritoryDataService territoryDataService = new TerritoryDataService(null) {
+            @Override
+            public List<Territory> getListOfTerritoriesOnMap() {
+                return territories;
+            }
+        };
+        PlayerTerritoryDataService playerTerritoryDataService = new PlayerTerritoryDataService(null) {
+            @Override
+            public List<PlayerTerritory> getTerritoriesInGame(String gameName) {
+                return playerTerritories;
+            }
+
+            @Override
+            public List<PlayerTerritory> findByGameName(String gameName) {
+                return playerTerritories;
+            }
+        };
+        SuppliedStatusService suppliedStatusService =
+                new SuppliedStatusService(null, null, new WriteBehindService(null, 0),
+                        BenchmarkBoards.registry(territories)) {
+                    @Override
+                    public void markUnsupplied(String gameName) {
+                        playerTerritories.forEach(playerTerritory -> playerTerritory.setSupplied(false));
+                    }
+                };
+        GameStateService gameStateService = new GameStateService(null, null, null, null, null, null) {
+            @Override
+            public GameState started(String gameName) {
+                return null;
+            }
+        };
+        gameService = new GameService(gameDataService, null, territoryDataService, playerTerritoryDataService,
+                suppliedStatusService, gameStateService, null, null);
+    }
+
+    @Setup(Level.Invocation)
+    public void freshGame() {
+        playerTerritories = new ArrayList<>(territories.size());
+        for (Territory territory : territories) {
+            playerTerritories.add(PlayerTerritory.builder()
+                    .territoryId(territory.getTerritoryId())
+                    .territoryName(territory.getName())
+                    .gameName(BenchmarkBoards.GAME_NAME)
+                    .territory(territory)
+                    .build());
+        }
+        game = Game.builder()
+                .gameName(BenchmarkBoards.GAME_NAME)
+                .players(BenchmarkBoards.players())
+                .playerTerritories(playerTerritories)
+                .turnNumber(1)
+                .build();
+    }
+
+    @Benchmark
+    public Game startGame() {
+        gameService.startGame(session);
+        return game;
+    }
+}
@@ -0,0 +1,54 @@
+package org.cost.metrics;
+
+import org.cost.board.BoardController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost RequestMetrics adds to every request, with four threads recording into the same
+ * handler. Run with {@code ./gradlew jmh -PjmhInclude=RequestMetricsBenchmark}; the gc profiler
+ * should report no allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RequestMetricsBenchmark {
+
+    private RequestMetrics requestMetrics;
+    private HandlerMethod handler;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setup() {
+        requestMetrics = new RequestMetrics();
+        handler = new HandlerMethod(new Object(), ReflectionUtils.findMethod(BoardController.class, "getBoard", null));
+        request = new MockHttpServletRequest("GET", "/board");
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public void recordRequest() {
+        requestMetrics.preHandle(request, response, handler);
+        requestMetrics.afterCompletion(request, response, handler, null);
+    }
+}
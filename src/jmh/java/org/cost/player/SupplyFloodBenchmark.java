@@ -0,0 +1,153 @@
+package org.cost.player;
+
+import org.cost.BenchmarkBoards;
+import org.cost.game.WriteBehindService;
+import org.cost.territory.FloodFill;
+import org.cost.territory.PredicateFlood;
+import org.cost.territory.TerritoryGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the recursive, stream-based supply flood that markSupplied used to run against the
+ * iterative {@link FloodFill}, and the {@link PredicateFlood} in between on a prebuilt graph. Run with {@code ./gradlew jmh -PjmhInclude=SupplyFloodBenchmark};
+ * the gc profiler reports the allocation rate next to the time per call. The recursive flood
+ * needs a large thread stack to survive the 10k grid, hence the forked -Xss.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss256m")
+public class SupplyFloodBenchmark {
+
+    @Param({"map", "grid10000"})
+    public String board;
+
+    private List<PlayerTerritory> playerTerritories;
+    private List<PlayerTerritory> supplyDepots;
+    private SuppliedStatusService suppliedStatusService;
+    private PredicateFlood predicateFlood;
+    private int[] owners;
+    private int[] seeds;
+
+    @Setup
+    public void setup() {
+        playerTerritories = BenchmarkBoards.board(board);
+        playerTerritories.forEach(playerTerritory -> playerTerritory.setId(null));
+        supplyDepots = BenchmarkBoards.supplyDepots(playerTerritories);
+        suppliedStatusService = new SuppliedStatusService(null, null, new WriteBehindService(null, 0),
+                BenchmarkBoards.registry(BenchmarkBoards.territories(board)));
+
+        TerritoryGraph.Builder builder = TerritoryGraph.builder(playerTerritories.size());
+        owners = new int[playerTerritories.size()];
+        for (int index = 0; index < playerTerritories.size(); index++) {
+            PlayerTerritory playerTerritory = playerTerritories.get(index);
+            builder.add(playerTerritory.getTerritoryId(), playerTerritory.getTerritory());
+            owners[index] = playerTerritory.getPlayer() == null ? 0 : playerTerritory.getPlayer().getPlayerNumber();
+        }
+        TerritoryGraph graph = builder.build();
+        predicateFlood = new PredicateFlood(graph);
+        seeds = supplyDepots.stream().mapToInt(depot -> graph.indexOf(depot.getTerritoryId())).toArray();
+    }
+
+    @Benchmark
+    public List<PlayerTerritory> recursiveMarkSupplied() {
+        resetSupplied();
+        RecursiveFlood.markSupplied(supplyDepots, playerTerritories);
+        return playerTerritories;
+    }
+
+    @Benchmark
+    public List<PlayerTerritory> floodFillMarkSupplied() {
+        resetSupplied();
+        suppliedStatusService.markSupplied(supplyDepots, playerTerritories);
+        return playerTerritories;
+    }
+
+    @Benchmark
+    public BitSet predicateFloodPrebuiltGraph() {
+        return predicateFlood.fill(seeds, seeds.length, (from, to) -> owners[to] != 0 && owners[to] == owners[from]);
+    }
+
+    private void resetSupplied() {
+        for (PlayerTerritory playerTerritory : playerTerritories) {
+            playerTerritory.setSupplied(false);
+        }
+    }
+
+    /**
+     * The flood markSupplied ran before it moved onto {@link FloodFill}, kept verbatim as the
+     * baseline.
+     */
+    static final class RecursiveFlood {
+
+        static void markSupplied(List<PlayerTerritory> supplyDepots, List<PlayerTerritory> allPlayerTerritories) {
+            HashMap<Long, MappedTerritory> nodes = new HashMap<>();
+            allPlayerTerritories
+                    .forEach(pt -> {
+                        MappedTerritory mappedTerritory = new MappedTerritory();
+                        mappedTerritory.playerTerritory = pt;
+                        nodes.put(pt.getTerritoryId(), mappedTerritory);
+                    });
+
+            allPlayerTerritories
+                    .forEach(pt -> {
+                        MappedTerritory mappedTerritory = nodes.get(pt.getTerritoryId());
+                        Arrays.asList(
+                                pt.getTerritory().getEast(),
+                                pt.getTerritory().getWest(),
+                                pt.getTerritory().getNorth(),
+                                pt.getTerritory().getSouth())
+                                .stream()
+                                .filter(id -> id != null)
+                                .forEach(each -> mappedTerritory.neighboringTerritories.add(nodes.get(each)));
+                    });
+
+            markAllNeighbors(supplyDepots
+                    .stream()
+                    .map(sd -> nodes.get(sd.getTerritoryId()))
+                    .collect(Collectors.toList()));
+        }
+
+        private static void markAllNeighbors(List<MappedTerritory> currentNodes) {
+            currentNodes
+                    .forEach(currentNode -> {
+                        currentNode.playerTerritory.setSupplied(true);
+
+                        List<MappedTerritory> viableNeighbors = currentNode.neighboringTerritories
+                                .stream()
+                                .filter(mt -> !mt.playerTerritory.isSupplied())
+                                .filter(mt -> mt.playerTerritory.getPlayer() != null &&
+                                        currentNode.playerTerritory.getPlayer().getPlayerNumber() ==
+                                                mt.playerTerritory.getPlayer().getPlayerNumber())
+                                .collect(Collectors.toList());
+
+                        markAllNeighbors(viableNeighbors);
+                    });
+        }
+
+        private static final class MappedTerritory {
+            private final List<MappedTerritory> neighboringTerritories = new ArrayList<>();
+            private PlayerTerritory playerTerritory;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.cost.territory;
+
+import java.util.BitSet;
+
+/**
+ * The predicate-driven breadth-first flood {@link FloodFill} ran before it moved onto bitboards,
+ * kept verbatim as the baseline for the flood benchmarks. The visited set and queue are reused
+ * by every call, so an instance must not be shared between threads.
+ */
+public final class PredicateFlood {
+
+    private final TerritoryGraph graph;
+    private final BitSet visited;
+    private final int[] queue;
+    private int reached;
+
+    public PredicateFlood(TerritoryGraph graph) {
+        this.graph = graph;
+        this.visited = new BitSet(graph.size());
+        this.queue = new int[graph.size()];
+    }
+
+    @FunctionalInterface
+    public interface Step {
+        boolean canEnter(int from, int to);
+    }
+
+    /**
+     * Floods from every seed and returns the territories reached, including the seeds. The
+     * returned set is owned by this instance and is only valid until the next call.
+     */
+    public BitSet fill(int[] seeds, int seedCount, Step step) {
+        visited.clear();
+        reached = 0;
+        for (int i = 0; i < seedCount; i++) {
+            enqueue(seeds[i]);
+        }
+        drain(step);
+        return visited;
+    }
+
+    /**
+     * Floods from a single seed and returns how many territories were reached; they are
+     * available through {@link #reached(int)} until the next call.
+     */
+    public int component(int seed, Step step) {
+        visited.clear();
+        reached = 0;
+        enqueue(seed);
+        drain(step);
+        return reached;
+    }
+
+    public int reached(int position) {
+        return queue[position];
+    }
+
+    private void drain(Step step) {
+        for (int head = 0; head < reached; head++) {
+            int current = queue[head];
+            for (int direction = 0; direction < TerritoryGraph.DIRECTIONS; direction++) {
+                int next = graph.neighbor(current, direction);
+                if (next != TerritoryGraph.NO_NEIGHBOR && !visited.get(next) && step.canEnter(current, next)) {
+                    enqueue(next);
+                }
+            }
+        }
+    }
+
+    private void enqueue(int index) {
+        if (!visited.get(index)) {
+            visited.set(index);
+            queue[reached++] = index;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.cost.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collections;
+
+/**
+ * Sends paced requests to the server and records how long each took under the endpoint's
+ * template name. A failed request, including any non-2xx response, is recorded as an error and
+ * returned as null so a game can carry on.
+ */
+final class ApiClient {
+
+    static final String AUTH_TOKEN_HEADER = "x-auth-token";
+
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final String baseUrl;
+    private final RateLimiter rateLimiter;
+    private final LatencyRecorder recorder;
+    private final long recordFrom;
+
+    /**
+     * @param recordFrom {@link System#nanoTime()} before which requests are sent but not recorded,
+     *                   so the server can warm up
+     */
+    ApiClient(String baseUrl, RateLimiter rateLimiter, LatencyRecorder recorder, long recordFrom) {
+        this.baseUrl = baseUrl;
+        this.rateLimiter = rateLimiter;
+        this.recorder = recorder;
+        this.recordFrom = recordFrom;
+    }
+
+    JsonNode get(String endpoint, String path, String authToken) {
+        ResponseEntity<JsonNode> response = exchange(endpoint, HttpMethod.GET, path, null, authToken);
+        return response == null ? null : response.getBody();
+    }
+
+    ResponseEntity<JsonNode> post(String endpoint, String path, Object body, String authToken) {
+        return exchange(endpoint, HttpMethod.POST, path, body, authToken);
+    }
+
+    private ResponseEntity<JsonNode> exchange(String endpoint, HttpMethod method, String path, Object body, String authToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        if (body != null) {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+        if (authToken != null) {
+            headers.set(AUTH_TOKEN_HEADER, authToken);
+        }
+        HttpEntity<Object> request = new HttpEntity<>(body, headers);
+
+        long slot = rateLimiter.acquire();
+        ResponseEntity<JsonNode> response = null;
+        try {
+            response = restTemplate.exchange(baseUrl + path, method, request, JsonNode.class);
+        } catch (RestClientException e) {
+            // Recorded as an error below.
+        }
+        long latency = System.nanoTime() - slot;
+        if (slot >= recordFrom) {
+            recorder.record(endpoint, latency, response == null);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,58 @@
+package org.cost.loadgen;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.cost.SupplyRaidServerApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The server started in this JVM against an embedded MariaDB, migrated by Flyway from the same
+ * scripts as production. The scripts are written for MySQL, which is why this is not H2.
+ */
+final class EmbeddedServer implements AutoCloseable {
+
+    private static final String DATABASE = "sadb_loadgen";
+
+    private final DB db;
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedServer(DB db, ConfigurableApplicationContext context) {
+        this.db = db;
+        this.context = context;
+    }
+
+    static EmbeddedServer start() throws ManagedProcessException {
+        DBConfigurationBuilder configuration = DBConfigurationBuilder.newBuilder();
+        configuration.setPort(0);
+        // The migrations mix the case of table names (Game, game, TERRITORY).
+        configuration.addArg("--lower-case-table-names=1");
+        DB db = DB.newEmbeddedDB(configuration.build());
+        db.start();
+        db.createDB(DATABASE);
+
+        int dbPort = db.getConfiguration().getPort();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SupplyRaidServerApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:mysql://localhost:" + dbPort + "/" + DATABASE
+                                + "?useSSL=false&rewriteBatchedStatements=true",
+                        "spring.datasource.username=root",
+                        "spring.datasource.password=")
+                .run();
+        return new EmbeddedServer(db, context);
+    }
+
+    String baseUrl() {
+        int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+        return "http://localhost:" + port;
+    }
+
+    @Override
+    public void close() throws ManagedProcessException {
+        context.close();
+        db.stop();
+    }
+}
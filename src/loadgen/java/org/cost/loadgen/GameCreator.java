@@ -0,0 +1,30 @@
+package org.cost.loadgen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates games back to back until the deadline, so the POST /game throughput in the report is
+ * the number of games created per second.
+ */
+final class GameCreator implements Runnable {
+
+    private final ApiClient client;
+    private final String namePrefix;
+    private final long deadline;
+
+    GameCreator(ApiClient client, String namePrefix, long deadline) {
+        this.client = client;
+        this.namePrefix = namePrefix;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+        for (int game = 0; System.nanoTime() < deadline; game++) {
+            Map<String, Object> createGame = new HashMap<>();
+            createGame.put("gameName", namePrefix + "-" + game);
+            client.post("POST /game", "/game", createGame, null);
+        }
+    }
+}
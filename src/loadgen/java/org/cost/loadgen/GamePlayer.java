@@ -0,0 +1,173 @@
+package org.cost.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Plays one game the way the web client does: creates it, joins every player, starts it, reads
+ * the map once, and then keeps polling /board for each player while the active player makes a
+ * random legal move or skips an action.
+ */
+final class GamePlayer implements Runnable {
+
+    private static final String[] DIRECTIONS = {"north", "east", "south", "west"};
+
+    private final ApiClient client;
+    private final String gameName;
+    private final int playerCount;
+    private final double moveProbability;
+    private final long deadline;
+
+    private final List<String> authTokens = new ArrayList<>();
+    private final Map<Integer, String> authTokenByPlayerNumber = new HashMap<>();
+    private final Map<Long, List<Long>> neighbors = new LinkedHashMap<>();
+
+    GamePlayer(ApiClient client, String gameName, int playerCount, double moveProbability, long deadline) {
+        this.client = client;
+        this.gameName = gameName;
+        this.playerCount = playerCount;
+        this.moveProbability = moveProbability;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+        if (!setUp()) {
+            return;
+        }
+        while (System.nanoTime() < deadline) {
+            JsonNode board = null;
+            for (String authToken : authTokens) {
+                JsonNode playerBoard = client.get("GET /board", "/board", authToken);
+                if (playerBoard != null) {
+                    board = playerBoard;
+                    authTokenByPlayerNumber.put(playerBoard.path("playerNumber").asInt(), authToken);
+                }
+            }
+            if (board != null) {
+                act(board);
+            }
+        }
+    }
+
+    private boolean setUp() {
+        Map<String, Object> createGame = new HashMap<>();
+        createGame.put("gameName", gameName);
+        if (client.post("POST /game", "/game", createGame, null) == null) {
+            return false;
+        }
+
+        for (int player = 1; player <= playerCount; player++) {
+            Map<String, Object> createPlayer = new HashMap<>();
+            createPlayer.put("gameName", gameName);
+            createPlayer.put("playerName", "player" + player);
+            ResponseEntity<JsonNode> response = client.post("POST /players", "/players", createPlayer, null);
+            String authToken = response == null ? null : response.getHeaders().getFirst(ApiClient.AUTH_TOKEN_HEADER);
+            if (authToken == null) {
+                return false;
+            }
+            authTokens.add(authToken);
+        }
+
+        String authToken = authTokens.get(0);
+        if (client.post("POST /game/start", "/game/start", null, authToken) == null) {
+            return false;
+        }
+
+        JsonNode territories = client.get("GET /territories", "/territories", authToken);
+        if (territories == null) {
+            return false;
+        }
+        for (JsonNode territory : territories) {
+            long territoryId = territory.path("territoryId").asLong();
+            JsonNode detail = client.get("GET /territories/{id}", "/territories/" + territoryId, authToken);
+            if (detail == null) {
+                return false;
+            }
+            List<Long> adjacent = new ArrayList<>(DIRECTIONS.length);
+            for (String direction : DIRECTIONS) {
+                String href = selfHref(detail.path(direction));
+                if (href != null) {
+                    adjacent.add(Long.parseLong(href.substring(href.lastIndexOf('/') + 1)));
+                }
+            }
+            neighbors.put(territoryId, adjacent);
+        }
+        return true;
+    }
+
+    private void act(JsonNode board) {
+        int activePlayer = board.path("activePlayer").asInt();
+        String authToken = authTokenByPlayerNumber.get(activePlayer);
+        if (authToken == null) {
+            return;
+        }
+
+        Map<String, Object> move = ThreadLocalRandom.current().nextDouble() < moveProbability
+                ? randomMove(board.path("territories"), activePlayer)
+                : null;
+        if (move != null) {
+            client.post("POST /actions/move-troops", "/actions/move-troops", move, authToken);
+        } else {
+            client.post("POST /actions/skip-action", "/actions/skip-action", null, authToken);
+        }
+    }
+
+    /**
+     * Picks a territory of the player with troops to spare and one of its neighbors the player
+     * also owns, or returns null when the player has no such pair.
+     */
+    private Map<String, Object> randomMove(JsonNode territories, int playerNumber) {
+        Map<Long, Integer> troopsByOwnedTerritory = new HashMap<>();
+        for (JsonNode territory : territories) {
+            if (territory.path("playerNumber").asInt() == playerNumber) {
+                troopsByOwnedTerritory.put(territory.path("territoryId").asLong(), territory.path("troops").asInt());
+            }
+        }
+
+        List<long[]> candidates = new ArrayList<>();
+        troopsByOwnedTerritory.forEach((territoryId, troops) -> {
+            if (troops > 1) {
+                for (Long neighbor : neighbors.getOrDefault(territoryId, new ArrayList<>())) {
+                    if (troopsByOwnedTerritory.containsKey(neighbor)) {
+                        candidates.add(new long[]{territoryId, neighbor, troops});
+                    }
+                }
+            }
+        });
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] candidate = candidates.get(random.nextInt(candidates.size()));
+        Map<String, Object> move = new HashMap<>();
+        move.put("moveFrom", candidate[0]);
+        move.put("moveTo", candidate[1]);
+        move.put("numberOfTroops", 1 + random.nextInt((int) candidate[2] - 1));
+        return move;
+    }
+
+    /**
+     * The self link of a resource, whether it was rendered as HAL or as a plain links array.
+     */
+    private static String selfHref(JsonNode resource) {
+        JsonNode hal = resource.path("_links").path("self").path("href");
+        if (hal.isTextual()) {
+            return hal.asText();
+        }
+        for (JsonNode link : resource.path("links")) {
+            if ("self".equals(link.path("rel").asText())) {
+                return link.path("href").asText();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+package org.cost.loadgen;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps every latency sample per endpoint, so percentiles are exact rather than bucketed. A
+ * sample is eight bytes; a ten-minute run at a few thousand requests a second stays in the tens
+ * of megabytes.
+ */
+final class LatencyRecorder {
+
+    private final ConcurrentMap<String, Samples> samplesByEndpoint = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long latencyNanos, boolean error) {
+        samplesByEndpoint.computeIfAbsent(endpoint, key -> new Samples()).add(latencyNanos, error);
+    }
+
+    /**
+     * A summary per endpoint, ordered by endpoint name.
+     */
+    Map<String, Summary> summarize(double elapsedSeconds) {
+        Map<String, Summary> summaries = new TreeMap<>();
+        samplesByEndpoint.forEach((endpoint, samples) -> summaries.put(endpoint, samples.summarize(elapsedSeconds)));
+        return summaries;
+    }
+
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        synchronized void add(long latencyNanos, boolean error) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (error) {
+                errors++;
+            }
+        }
+
+        synchronized Summary summarize(double elapsedSeconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new Summary(count, errors, count / elapsedSeconds,
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                    count == 0 ? 0 : millis(sorted[count - 1]));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return millis(sorted[Math.max(rank, 1) - 1]);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    static final class Summary {
+        public final int requests;
+        public final int errors;
+        public final double throughput;
+        public final double p50Millis;
+        public final double p95Millis;
+        public final double p99Millis;
+        public final double maxMillis;
+
+        Summary(int requests, int errors, double throughput, double p50Millis, double p95Millis, double p99Millis,
+                double maxMillis) {
+            this.requests = requests;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+    }
+}
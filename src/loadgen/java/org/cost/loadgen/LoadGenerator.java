@@ -0,0 +1,123 @@
+package org.cost.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays concurrent games against a server at a target request rate and reports throughput and
+ * latency percentiles per endpoint. Without --target it starts the server itself on an embedded
+ * database. Run with, for example,
+ * {@code ./gradlew loadgen -PloadgenArgs="--games=16 --rate=400 --duration=120"}.
+ *
+ * <pre>
+ *   --target=URL            server to load, e.g. http://localhost:8080 (default: start one)
+ *   --scenario=NAME         play: play full games; create-games: only create games, so the
+ *                           POST /game rate is games created per second (default play)
+ *   --games=N               concurrent games, or concurrent creators (default 8)
+ *   --players=N             players per game, 2 to 4 (default 4)
+ *   --rate=N                requests per second across all games, 0 for unthrottled (default 200)
+ *   --warmup=SECONDS        load applied before recording starts (default 10)
+ *   --duration=SECONDS      recorded load (default 60)
+ *   --move-probability=P    chance the active player moves rather than skips (default 0.75)
+ *   --report=FILE           JSON summary (default build/reports/loadgen/results.json)
+ * </pre>
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int games = Integer.parseInt(options.getOrDefault("games", "8"));
+        int players = Integer.parseInt(options.getOrDefault("players", "4"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "10"));
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "60"));
+        double moveProbability = Double.parseDouble(options.getOrDefault("move-probability", "0.75"));
+        File report = new File(options.getOrDefault("report", "build/reports/loadgen/results.json"));
+        String scenario = options.getOrDefault("scenario", "play");
+        if (!"play".equals(scenario) && !"create-games".equals(scenario)) {
+            throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+
+        EmbeddedServer server = null;
+        String target = options.get("target");
+        if (target == null) {
+            server = EmbeddedServer.start();
+            target = server.baseUrl();
+        }
+
+        try {
+            LatencyRecorder recorder = new LatencyRecorder();
+            long start = System.nanoTime();
+            long recordFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long deadline = recordFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+            ApiClient client = new ApiClient(target, new RateLimiter(rate), recorder, recordFrom);
+
+            if ("play".equals(scenario)) {
+                System.out.printf("Playing %d games of %d players against %s at %s requests/s for %ds after %ds of warmup%n",
+                        games, players, target, rate > 0 ? rate : "unthrottled", durationSeconds, warmupSeconds);
+            } else {
+                System.out.printf("Creating games from %d threads against %s at %s requests/s for %ds after %ds of warmup%n",
+                        games, target, rate > 0 ? rate : "unthrottled", durationSeconds, warmupSeconds);
+            }
+            String runId = Long.toString(System.currentTimeMillis(), 36);
+            ExecutorService executor = Executors.newFixedThreadPool(games);
+            for (int game = 0; game < games; game++) {
+                String gameName = "loadgen-" + runId + "-" + game;
+                executor.submit("play".equals(scenario)
+                        ? new GamePlayer(client, gameName, players, moveProbability, deadline)
+                        : new GameCreator(client, gameName, deadline));
+            }
+            executor.shutdown();
+            executor.awaitTermination(warmupSeconds + durationSeconds + 60, TimeUnit.SECONDS);
+
+            double elapsedSeconds = (Math.min(System.nanoTime(), deadline) - recordFrom) / 1e9;
+            Map<String, LatencyRecorder.Summary> summaries = recorder.summarize(Math.max(elapsedSeconds, 1e-9));
+            print(summaries);
+            write(report, options, summaries);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --option=value but got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static void print(Map<String, LatencyRecorder.Summary> summaries) {
+        System.out.printf("%n%-30s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        summaries.forEach((endpoint, summary) -> System.out.printf("%-30s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                endpoint, summary.requests, summary.errors, summary.throughput,
+                summary.p50Millis, summary.p95Millis, summary.p99Millis, summary.maxMillis));
+    }
+
+    private static void write(File report, Map<String, String> options, Map<String, LatencyRecorder.Summary> summaries)
+            throws Exception {
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("options", options);
+        results.put("endpoints", summaries);
+        File directory = report.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + directory);
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report, results);
+        System.out.printf("%nWrote %s%n", report);
+    }
+}
@@ -0,0 +1,39 @@
+package org.cost.loadgen;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands out evenly spaced send slots shared by every game. The schedule does not wait for the
+ * server: when responses are slow, slots fall into the past and requests go out back to back.
+ * Latency is measured from the slot, so time a request spent queued behind a slow one counts.
+ */
+final class RateLimiter {
+
+    private final long intervalNanos;
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param requestsPerSecond target rate across all games, or 0 to send as fast as responses allow
+     */
+    RateLimiter(double requestsPerSecond) {
+        this.intervalNanos = requestsPerSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+    }
+
+    /**
+     * Waits for the next slot and returns the time, in {@link System#nanoTime()} terms, the
+     * request was meant to be sent.
+     */
+    long acquire() {
+        if (intervalNanos == 0) {
+            return System.nanoTime();
+        }
+        long slot = nextSlot.getAndAdd(intervalNanos);
+        long wait;
+        while ((wait = slot - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+        return slot;
+    }
+}
@@ -1,7 +1,11 @@
 package org.cost;
 
+import org.cost.board.BoardMessageConverter;
+import org.cost.metrics.RequestMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.session.MapSessionRepository;
 import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
@@ -9,14 +13,24 @@ import org.springframework.session.web.http.HeaderHttpSessionStrategy;
 import org.springframework.session.web.http.HttpSessionStrategy;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
+import java.util.List;
+
 @Configuration
 @EnableWebMvc
 @EnableSpringHttpSession
 public class CORSConfig extends WebMvcConfigurerAdapter {
 
+    private final RequestMetrics requestMetrics;
+
+    @Autowired
+    public CORSConfig(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -32,6 +46,16 @@ public class CORSConfig extends WebMvcConfigurerAdapter {
         registry.addResourceHandler("**/**").addResourceLocations("classpath:/META-INF/resources/");
     }
 
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestMetrics);
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new BoardMessageConverter());
+    }
+
     @Bean
     MapSessionRepository sessionRepository() {
         return new MapSessionRepository();
@@ -12,10 +12,24 @@ public class Exceptions {
         }
     }
 
+    @ResponseStatus(value = HttpStatus.FORBIDDEN)
+    public static class ForbiddenException extends RuntimeException {
+        public ForbiddenException(String message) {
+            super(message);
+        }
+    }
+
     @ResponseStatus(value = HttpStatus.CONFLICT)
     public static class ConflictException extends RuntimeException {
         public ConflictException(String message) {
             super(message);
         }
     }
+
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+    public static class BadRequestException extends RuntimeException {
+        public BadRequestException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package org.cost;
+
+import org.cost.player.PlayerController;
+import org.cost.territory.TerritoryController;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.core.AnnotationMappingDiscoverer;
+import org.springframework.hateoas.core.MappingDiscoverer;
+import org.springframework.hateoas.mvc.ControllerLinkBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.servlet.http.HttpSession;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the self links that responses attach to every territory and player. The controller
+ * mappings are resolved into templates once, and the base URI is computed once per request the
+ * same way {@link ControllerLinkBuilder} does, so each link is plain string concatenation.
+ */
+@Component
+public class LinkFactory {
+
+    private static final String BASE_URI_ATTRIBUTE = LinkFactory.class.getName() + ".baseUri";
+    private static final MappingDiscoverer DISCOVERER = new AnnotationMappingDiscoverer(RequestMapping.class);
+
+    private final LinkTemplate territoryTemplate =
+            LinkTemplate.of(TerritoryController.class, "getTerritory", Long.class, HttpSession.class);
+    private final LinkTemplate playerTemplate =
+            LinkTemplate.of(PlayerController.class, "getPlayer", int.class, HttpSession.class);
+
+    public Link territory(long territoryId) {
+        return territory(baseUri(), territoryId);
+    }
+
+    public Link player(int playerNumber) {
+        return player(baseUri(), playerNumber);
+    }
+
+    /**
+     * Builds the link against a base URI captured earlier, for responses completed outside the
+     * request that asked for them.
+     */
+    public Link territory(String baseUri, long territoryId) {
+        return new Link(territoryTemplate.expand(baseUri, Long.toString(territoryId)));
+    }
+
+    public Link player(String baseUri, int playerNumber) {
+        return new Link(playerTemplate.expand(baseUri, Integer.toString(playerNumber)));
+    }
+
+    /**
+     * The scheme, host and context path links are built against for the current request.
+     */
+    public String baseUri() {
+        RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
+        String baseUri = (String) requestAttributes.getAttribute(BASE_URI_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (baseUri == null) {
+            baseUri = ControllerLinkBuilder.linkTo(LinkFactory.class).toUri().toString();
+            requestAttributes.setAttribute(BASE_URI_ATTRIBUTE, baseUri, RequestAttributes.SCOPE_REQUEST);
+        }
+        return baseUri;
+    }
+
+    /**
+     * A request mapping split into its literal parts, with one path variable between each pair.
+     */
+    static final class LinkTemplate {
+        private final String[] literals;
+
+        private LinkTemplate(String[] literals) {
+            this.literals = literals;
+        }
+
+        static LinkTemplate of(Class<?> controller, String methodName, Class<?>... parameterTypes) {
+            Method method = ReflectionUtils.findMethod(controller, methodName, parameterTypes);
+            if (method == null) {
+                throw new IllegalStateException("No handler " + controller.getSimpleName() + "." + methodName);
+            }
+            return parse(DISCOVERER.getMapping(controller, method));
+        }
+
+        static LinkTemplate parse(String mapping) {
+            String path = mapping.startsWith("/") ? mapping : "/" + mapping;
+            List<String> literals = new ArrayList<>();
+            int start = 0;
+            int open = path.indexOf('{');
+            while (open >= 0) {
+                literals.add(path.substring(start, open));
+                start = path.indexOf('}', open) + 1;
+                open = path.indexOf('{', start);
+            }
+            literals.add(path.substring(start));
+            return new LinkTemplate(literals.toArray(new String[literals.size()]));
+        }
+
+        String expand(String baseUri, String... values) {
+            StringBuilder href = new StringBuilder(baseUri.length() + 32).append(baseUri).append(literals[0]);
+            for (int i = 1; i < literals.length; i++) {
+                href.append(values[i - 1]).append(literals[i]);
+            }
+            return href.toString();
+        }
+    }
+}
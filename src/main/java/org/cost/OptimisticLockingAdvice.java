@@ -0,0 +1,20 @@
+package org.cost;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Answers a save that lost a version check with 409, like any other conflict, so the client
+ * re-reads and tries again instead of seeing a server error.
+ */
+@ControllerAdvice
+public class OptimisticLockingAdvice {
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public void conflict() {
+    }
+}
@@ -0,0 +1,43 @@
+package org.cost;
+
+import org.cost.game.GameTopicChannelInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.SessionRepository;
+import org.springframework.web.socket.config.annotation.AbstractWebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+
+/**
+ * STOMP over WebSocket at /ws. Clients connect with the x-auth-token of their HTTP session as a
+ * CONNECT header and subscribe to their game's topic; nothing is accepted from clients beyond that.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig extends AbstractWebSocketMessageBrokerConfigurer {
+
+    private final SessionRepository<? extends ExpiringSession> sessionRepository;
+
+    @Autowired
+    public WebSocketConfig(SessionRepository<? extends ExpiringSession> sessionRepository) {
+        this.sessionRepository = sessionRepository;
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws").setAllowedOrigins("*");
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/topic");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.setInterceptors(new GameTopicChannelInterceptor(sessionRepository));
+    }
+}
@@ -1,11 +1,10 @@
 package org.cost.actions;
 
 import lombok.*;
-import org.cost.game.Game;
-import org.cost.game.GameRepository;
-import org.cost.player.Player;
-import org.cost.player.PlayerController;
-import org.cost.player.PlayerTerritory;
+import org.cost.LinkFactory;
+import org.cost.game.GameShards;
+import org.cost.game.GameState;
+import org.cost.game.GameStateService;
 import org.cost.territory.TerritoryController;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -13,165 +12,176 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Optional;
 
 import static org.cost.player.PlayerController.SESSION_GAME_NAME_FIELD;
 import static org.cost.player.PlayerController.SESSION_PLAYER_NUMBER_FIELD;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
+/**
+ * Applies players' actions. Each action runs on its game's shard, so actions on one game are
+ * applied one at a time in arrival order; the game state's monitor is still taken because board
+ * and territory reads happen on request threads.
+ */
 @RestController
 public class ActionsController {
 
-    private GameRepository gameRepository;
+    private GameStateService gameStateService;
+    private LinkFactory linkFactory;
+    private GameShards gameShards;
 
     @Autowired
-    public ActionsController(GameRepository gameRepository) {
-        this.gameRepository = gameRepository;
+    public ActionsController(GameStateService gameStateService, LinkFactory linkFactory, GameShards gameShards) {
+        this.gameStateService = gameStateService;
+        this.linkFactory = linkFactory;
+        this.gameShards = gameShards;
     }
 
     @RequestMapping(value = "/actions/skip-action", method = RequestMethod.POST)
-    ResponseEntity skipAction(HttpSession session) {
-        Game game = gameRepository.findOne((String) session.getAttribute(SESSION_GAME_NAME_FIELD));
+    DeferredResult<ResponseEntity<?>> skipAction(@RequestParam(value = "expectedVersion", required = false) Long expectedVersion,
+                                                 HttpSession session, HttpServletRequest request) {
+        String gameName = (String) session.getAttribute(SESSION_GAME_NAME_FIELD);
+        Integer playerNumber = (Integer) session.getAttribute(SESSION_PLAYER_NUMBER_FIELD);
+        return gameShards.respond(gameName, request, () -> skipAction(gameName, playerNumber, expectedVersion));
+    }
+
+    private ResponseEntity<?> skipAction(String gameName, Integer playerNumber, Long expectedVersion) {
+        GameState game = gameStateService.getGameState(gameName);
 
         if (game == null) {
             return new ResponseEntity(HttpStatus.NOT_FOUND);
         }
 
-        Integer playerNumber = (Integer) session.getAttribute(PlayerController.SESSION_PLAYER_NUMBER_FIELD);
-
-        if (isInactivePlayer(game, playerNumber)) {
-            return new ResponseEntity(HttpStatus.FORBIDDEN);
-        }
-
-        Player currentPlayer = game.getPlayers().stream()
-                .filter(player -> player.getPlayerNumber() == playerNumber)
-                .findFirst()
-                .get();
-
-        int remainingActions = setRemainingActions(game, currentPlayer);
-
-        gameRepository.save(game);
+        SkipActionResponse.SkipActionResponseBuilder builder = SkipActionResponse.builder();
+        synchronized (game) {
+            if (!game.isActivePlayer(playerNumber)) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
 
-        return ResponseEntity.ok(SkipActionResponse.builder().actionsRemaining(remainingActions).build());
-    }
+            if (isStale(game, expectedVersion)) {
+                return versionConflict(game);
+            }
 
-    private boolean isInactivePlayer(Game game, Integer playerNumber) {
-        int turnNumber = game.getTurnNumber();
-        int currentTurnPlayerNumber = turnNumber % game.getPlayers().size() == 0 ? game.getPlayers().size() : game.getTurnNumber() % game.getPlayers().size();
-        if (currentTurnPlayerNumber != playerNumber) {
-            return true;
+            builder.actionsRemaining(game.spendAction(game.slotOf(playerNumber)));
+            builder.version(game.version());
         }
-        return false;
-    }
 
-    private int setRemainingActions(Game game, Player currentPlayer) {
-        int remainingActions = currentPlayer.getRemainingActions() - 1;
-        if (remainingActions == 0) {
-            currentPlayer.setRemainingActions(3);
-            game.setTurnNumber(game.getTurnNumber() + 1);
-        } else {
-            currentPlayer.setRemainingActions(remainingActions);
-        }
-        return remainingActions;
+        gameStateService.persist(game);
+
+        return ResponseEntity.ok(builder.build());
     }
 
     @RequestMapping(value = "/actions/move-troops", method = RequestMethod.POST)
-    ResponseEntity moveTroops(@RequestBody MoveRequest moveRequest, HttpSession session) {
-        Game game = gameRepository.findOne((String) session.getAttribute(SESSION_GAME_NAME_FIELD));
+    DeferredResult<ResponseEntity<?>> moveTroops(@RequestBody MoveRequest moveRequest,
+                                                 @RequestParam(value = "full", defaultValue = "false") boolean full,
+                                                 HttpSession session, HttpServletRequest request) {
+        String gameName = (String) session.getAttribute(SESSION_GAME_NAME_FIELD);
         Integer playerNumber = (Integer) session.getAttribute(SESSION_PLAYER_NUMBER_FIELD);
+        String baseUri = linkFactory.baseUri();
+        return gameShards.respond(gameName, request, () -> moveTroops(gameName, playerNumber, moveRequest, full, baseUri));
+    }
 
-        if (isInactivePlayer(game, playerNumber)) {
-            return new ResponseEntity(HttpStatus.FORBIDDEN);
+    private ResponseEntity<?> moveTroops(String gameName, Integer playerNumber, MoveRequest moveRequest, boolean full,
+                                         String baseUri) {
+        GameState game = gameStateService.getGameState(gameName);
+
+        if (game == null) {
+            return new ResponseEntity(HttpStatus.NOT_FOUND);
         }
 
-        Optional<Player> playerOptional = game.getPlayers()
-                .stream()
-                .filter(p -> p.getPlayerNumber() == playerNumber)
-                .findFirst();
-        Optional<List<PlayerTerritory>> playerTerritoriesOptional = playerOptional
-                .map(Player::getPlayerTerritoriesList);
-
-        if (playerTerritoriesOptional.isPresent()) {
-            List<PlayerTerritory> playerTerritories = playerTerritoriesOptional.get();
-            Optional<PlayerTerritory> moveFromOptional = playerTerritories.stream()
-                    .filter(playerTerritory -> playerTerritory.getTerritoryId().equals(moveRequest.getMoveFrom()))
-                    .findFirst();
-            Optional<PlayerTerritory> moveToOptional = playerTerritories.stream()
-                    .filter(playerTerritory -> playerTerritory.getTerritoryId().equals(moveRequest.getMoveTo()))
-                    .findFirst();
-
-            if (!moveFromOptional.isPresent() || !moveToOptional.isPresent()) {
+        MoveActionResponse.MoveActionResponseBuilder builder = MoveActionResponse.builder();
+        List<TerritoryController.AllTerritoriesResponse> territoriesResponse = new ArrayList<>();
+        synchronized (game) {
+            if (!game.isActivePlayer(playerNumber)) {
                 return new ResponseEntity(HttpStatus.FORBIDDEN);
             }
-            PlayerTerritory moveFrom = moveFromOptional.get();
-            PlayerTerritory moveTo = moveToOptional.get();
 
-            if (moveFrom.getTerritory().getEast() != moveRequest.getMoveTo() &&
-                    moveFrom.getTerritory().getWest() != moveRequest.getMoveTo() &&
-                    moveFrom.getTerritory().getSouth() != moveRequest.getMoveTo() &&
-                    moveFrom.getTerritory().getNorth() != moveRequest.getMoveTo()) {
+            if (isStale(game, moveRequest.getExpectedVersion())) {
+                return versionConflict(game);
+            }
+
+            int moveFrom = game.indexOf(moveRequest.getMoveFrom());
+            int moveTo = game.indexOf(moveRequest.getMoveTo());
+
+            if (moveFrom < 0 || moveTo < 0 || game.owner(moveFrom) != playerNumber || game.owner(moveTo) != playerNumber) {
                 return new ResponseEntity(HttpStatus.FORBIDDEN);
             }
 
-            if (moveFrom.getTroops() <= moveRequest.getNumberOfTroops()) {
+            if (!game.areNeighbors(moveFrom, moveTo)) {
                 return new ResponseEntity(HttpStatus.FORBIDDEN);
             }
 
-            moveFrom.setTroops(moveFrom.getTroops() - moveRequest.getNumberOfTroops());
-            moveTo.setTroops(moveTo.getTroops() + moveRequest.getNumberOfTroops());
+            if (game.troops(moveFrom) <= moveRequest.getNumberOfTroops()) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
 
-        }
+            game.moveTroops(moveFrom, moveTo, moveRequest.getNumberOfTroops());
+            builder.actionsRemaining(game.spendAction(game.slotOf(playerNumber)));
+            builder.version(game.version());
 
-        MoveActionResponse.MoveActionResponseBuilder builder = MoveActionResponse.builder();
-        int remainingActions = 0;
-        if (playerOptional.isPresent()) {
-            Player currentPlayer = playerOptional.get();
-            remainingActions = setRemainingActions(game, currentPlayer);
+            // Until persist below, the dirty set holds exactly the territories this move changed.
+            BitSet included = game.dirtyTerritories();
+            if (full) {
+                included = new BitSet();
+                included.set(0, game.territoryCount());
+            }
+            for (int index = included.nextSetBit(0); index >= 0; index = included.nextSetBit(index + 1)) {
+                TerritoryController.AllTerritoriesResponse terrritoryResponse = TerritoryController.AllTerritoriesResponse.builder()
+                        .name(game.territoryName(index))
+                        .territoryId((int) game.territoryId(index))
+                        .supplyDepot(game.isSupplyDepot(index))
+                        .supplied(game.isSupplied(index))
+                        .troops(game.troops(index))
+                        .playerNumber(game.owner(index))
+                        .build();
+                terrritoryResponse.add(linkFactory.territory(baseUri, game.territoryId(index)));
+                territoriesResponse.add(terrritoryResponse);
+            }
         }
-        builder.actionsRemaining(remainingActions);
-
-        game = gameRepository.save(game);
-
-        List<TerritoryController.AllTerritoriesResponse> territoriesResponse = new ArrayList<>();
-        game.getPlayerTerritories()
-                .forEach(territory -> {
-                    TerritoryController.AllTerritoriesResponse terrritoryResponse = TerritoryController.AllTerritoriesResponse.builder()
-                            .name(territory.getTerritoryName())
-                            .territoryId((territory.getTerritoryId().intValue()))
-                            .supplyDepot((territory.isSupplyDepotTerritory()))
-                            .supplied(territory.isSupplied())
-                            .troops(territory.getTroops())
-                            .playerNumber(
-                                    (territory.getPlayer() == null) ? 0 :
-                                            territory.getPlayer().getPlayerNumber())
-                            .build();
-                    terrritoryResponse
-                            .add(
-                                    linkTo(
-                                            methodOn(TerritoryController.class).getTerritory(
-                                                    territory.getTerritoryId(), session))
-                                            .withSelfRel());
-                    territoriesResponse.add(terrritoryResponse);
-                });
 
+        gameStateService.persist(game);
 
         MoveActionResponse moveActionResponse = builder.territories(territoriesResponse).build();
         return ResponseEntity.ok(moveActionResponse);
     }
 
+    /**
+     * Whether the client asked for compare-and-set and the game has changed since the version it
+     * saw. Callers must hold the monitor of the game state.
+     */
+    private static boolean isStale(GameState game, Long expectedVersion) {
+        return expectedVersion != null && expectedVersion != game.version();
+    }
+
+    private static ResponseEntity<VersionConflictResponse> versionConflict(GameState game) {
+        return new ResponseEntity<>(new VersionConflictResponse(game.version()), HttpStatus.CONFLICT);
+    }
+
     @Getter
     @Setter
     @AllArgsConstructor
     @Builder
     public static class SkipActionResponse {
         private int actionsRemaining;
+        private long version;
+    }
+
+    /**
+     * Returned with 409 when an action's expectedVersion is no longer current. The client can
+     * retry against this version once it has checked the move still makes sense.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class VersionConflictResponse {
+        private long version;
     }
 
     @Getter
@@ -180,6 +190,10 @@ public class ActionsController {
     @Builder
     public static class MoveActionResponse {
         private int actionsRemaining;
+        private long version;
+        /**
+         * The territories the move changed, or every territory when requested with full=true.
+         */
         private List<TerritoryController.AllTerritoriesResponse> territories;
     }
 
@@ -194,5 +208,9 @@ public class ActionsController {
         private Long moveFrom;
         private Long moveTo;
         private int numberOfTroops;
+        /**
+         * When set, the move is only made if the game is still at this version.
+         */
+        private Long expectedVersion;
     }
 }
@@ -1,104 +1,350 @@
 package org.cost.board;
 
-
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import org.cost.Exceptions;
-import org.cost.game.Game;
-import org.cost.game.GameRepository;
-import org.cost.player.*;
+import org.cost.LinkFactory;
+import org.cost.game.GameState;
+import org.cost.game.GameStateChangedEvent;
+import org.cost.game.GameStateService;
+import org.cost.player.PlayerController;
 import org.cost.territory.TerritoryController;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.HandlerMapping;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.cost.player.PlayerController.SESSION_GAME_NAME_FIELD;
 import static org.cost.player.PlayerController.SESSION_PLAYER_NUMBER_FIELD;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
 @RestController
 public class BoardController {
-    private final PlayerTerritoryRepository playerTerritoryRepository;
-    private final PlayerRepository playerRepository;
-    private final GameRepository gameRepository;
+    private final GameStateService gameStateService;
+    private final LinkFactory linkFactory;
+    private final ObjectMapper objectMapper;
+    private final long longPollTimeoutMs;
+    private final Map<GameState, BoardSnapshot> snapshots = Collections.synchronizedMap(new WeakHashMap<>());
+    private final ConcurrentMap<String, Set<BoardWaiter>> waiters = new ConcurrentHashMap<>();
 
     @Autowired
-    public BoardController(PlayerTerritoryRepository playerTerritoryRepository, PlayerRepository playerRepository, GameRepository gameRepository) {
-        this.playerTerritoryRepository = playerTerritoryRepository;
-        this.playerRepository = playerRepository;
-        this.gameRepository = gameRepository;
+    public BoardController(GameStateService gameStateService, LinkFactory linkFactory, ObjectMapper objectMapper,
+                           @Value("${supplyraid.board.long-poll-timeout-ms:30000}") long longPollTimeoutMs) {
+        this.gameStateService = gameStateService;
+        this.linkFactory = linkFactory;
+        this.objectMapper = objectMapper;
+        this.longPollTimeoutMs = longPollTimeoutMs;
     }
 
+    /**
+     * Writes the board as it was encoded for the first request to ask for this player's view of
+     * this version in this representation; later polls only copy the bytes.
+     */
     @RequestMapping(path = "/board", method = RequestMethod.GET)
-    public BoardResponse getBoard(HttpSession session) {
+    public ResponseEntity<byte[]> getBoard(HttpSession session, WebRequest webRequest, HttpServletRequest request,
+                                           HttpServletResponse response) {
+        GameState game = sessionGame(session);
+        Integer playerNumber = (Integer) session.getAttribute(SESSION_PLAYER_NUMBER_FIELD);
+        MediaType preferred = preferredRepresentation(request, response);
+
+        BoardSnapshot snapshot;
+        synchronized (game) {
+            snapshot = snapshotAtCurrentVersion(game, linkFactory.baseUri());
+        }
+        EncodedBoard board = encoded(snapshot, playerNumber, preferred);
+        produce(request, board.representation);
+        if (webRequest.checkNotModified(board.eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().contentType(board.representation).body(board.bytes);
+    }
+
+    /**
+     * Long-polls for a board newer than {@code since}. The request is parked without a servlet
+     * thread until the game is persisted at another version, and answers 304 if the timeout
+     * elapses first. A game's waiter set is dropped as soon as its last waiter completes; adding
+     * and dropping both go through the map's compute methods so a waiter is never parked in a
+     * set that has already been dropped.
+     */
+    @RequestMapping(path = "/board/changes", method = RequestMethod.GET)
+    public DeferredResult<ResponseEntity<byte[]>> getBoardChanges(@RequestParam("since") long since, HttpSession session,
+                                                                         HttpServletRequest request, HttpServletResponse response) {
+        GameState game = sessionGame(session);
+        MediaType preferred = preferredRepresentation(request, response);
+        DeferredResult<ResponseEntity<byte[]>> result =
+                new DeferredResult<>(longPollTimeoutMs, ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+        BoardWaiter waiter = new BoardWaiter(since, (Integer) session.getAttribute(SESSION_PLAYER_NUMBER_FIELD),
+                request, preferred, linkFactory.baseUri(), result);
+
+        Set<BoardWaiter> gameWaiters = waiters.compute(game.getGameName(), (gameName, parked) -> {
+            Set<BoardWaiter> waiting = parked == null ? ConcurrentHashMap.newKeySet() : parked;
+            waiting.add(waiter);
+            return waiting;
+        });
+        result.onCompletion(() -> {
+            gameWaiters.remove(waiter);
+            waiters.computeIfPresent(game.getGameName(), (gameName, parked) -> parked.isEmpty() ? null : parked);
+        });
+        offer(game, waiter, gameWaiters);
+        return result;
+    }
+
+    int gamesWithWaiters() {
+        return waiters.size();
+    }
+
+    @EventListener
+    public void onGameStateChanged(GameStateChangedEvent event) {
+        Set<BoardWaiter> gameWaiters = waiters.get(event.getGameName());
+        if (gameWaiters == null || gameWaiters.isEmpty()) {
+            return;
+        }
+        GameState game = gameStateService.getActiveGameState(event.getGameName());
+        if (game == null) {
+            return;
+        }
+        for (BoardWaiter waiter : gameWaiters) {
+            offer(game, waiter, gameWaiters);
+        }
+    }
+
+    /**
+     * Completes the waiter if the game has moved past the version it holds. The removal decides
+     * which of the parking request and a concurrent change event gets to complete it.
+     */
+    private void offer(GameState game, BoardWaiter waiter, Set<BoardWaiter> gameWaiters) {
+        BoardSnapshot snapshot;
+        synchronized (game) {
+            if (game.version() == waiter.since) {
+                return;
+            }
+            snapshot = snapshotAtCurrentVersion(game, waiter.baseUri);
+        }
+        if (gameWaiters.remove(waiter)) {
+            EncodedBoard board = encoded(snapshot, waiter.playerNumber, waiter.preferred);
+            produce(waiter.request, board.representation);
+            waiter.result.setResult(ResponseEntity.ok()
+                    .eTag(board.eTag)
+                    .contentType(board.representation)
+                    .body(board.bytes));
+        }
+    }
+
+    /**
+     * The board as it stands, for callers that encode it themselves.
+     */
+    BoardResponse board(GameState game, Integer playerNumber) {
+        BoardSnapshot snapshot;
+        synchronized (game) {
+            snapshot = snapshotAtCurrentVersion(game, linkFactory.baseUri());
+        }
+        return boardResponse(snapshot, playerNumber);
+    }
+
+    private GameState sessionGame(HttpSession session) {
         String gamename = (String) session.getAttribute(SESSION_GAME_NAME_FIELD);
         if (gamename == null) {
             throw new Exceptions.ResourceNotFoundException(null);
         }
-        List<Player> players = playerRepository.findPlayersByGameName(gamename);
-        List<PlayerTerritory> territories = playerTerritoryRepository.findByGameName(gamename);
-        BoardResponse.BoardResponseBuilder builder = BoardResponse.builder();
+        GameState game = gameStateService.getGameState(gamename);
+        if (game == null) {
+            throw new Exceptions.ResourceNotFoundException(null);
+        }
+        return game;
+    }
 
+    /**
+     * Tags one player's view of one version in one representation, so a cache holding the JSON
+     * board is never told the binary one is unchanged, or the other way round.
+     */
+    private static String eTag(long version, Integer playerNumber, MediaType representation) {
+        return "\"" + version + "-" + playerNumber + "-" + representation.getSubtype() + "\"";
+    }
+
+    /**
+     * The representation the Accept header asks for: the binary board when it is named and ranked
+     * above JSON, otherwise JSON. Either way the response varies by Accept.
+     */
+    private static MediaType preferredRepresentation(HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        try {
+            List<MediaType> accepted = MediaType.parseMediaTypes(request.getHeader(HttpHeaders.ACCEPT));
+            MediaType.sortBySpecificityAndQuality(accepted);
+            for (MediaType mediaType : accepted) {
+                if (mediaType.getQualityValue() == 0) {
+                    continue;
+                }
+                if (mediaType.getType().equals(BoardMessageConverter.BOARD_MEDIA_TYPE.getType())
+                        && mediaType.getSubtype().equals(BoardMessageConverter.BOARD_MEDIA_TYPE.getSubtype())) {
+                    return BoardMessageConverter.BOARD_MEDIA_TYPE;
+                }
+                if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    break;
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            // content negotiation rejects the header itself
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Limits content negotiation to the representation that was encoded, so the ETag always
+     * describes what is written.
+     */
+    private static void produce(HttpServletRequest request, MediaType representation) {
+        request.setAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, Collections.singleton(representation));
+    }
+
+    /**
+     * The snapshot's bytes for one player in the preferred representation, encoding them on
+     * first use. Boards that do not fit the binary layout are encoded as JSON instead.
+     */
+    private EncodedBoard encoded(BoardSnapshot snapshot, Integer playerNumber, MediaType preferred) {
+        return snapshot.encoded.computeIfAbsent(playerNumber + "-" + preferred.getSubtype(), key -> {
+            BoardResponse board = boardResponse(snapshot, playerNumber);
+            try {
+                if (BoardMessageConverter.BOARD_MEDIA_TYPE.equals(preferred) && BoardMessageConverter.fits(board)) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    BoardMessageConverter.write(board, bytes);
+                    return new EncodedBoard(BoardMessageConverter.BOARD_MEDIA_TYPE, bytes.toByteArray(),
+                            eTag(snapshot.version, playerNumber, BoardMessageConverter.BOARD_MEDIA_TYPE));
+                }
+                return new EncodedBoard(MediaType.APPLICATION_JSON_UTF8, objectMapper.writeValueAsBytes(board),
+                        eTag(snapshot.version, playerNumber, MediaType.APPLICATION_JSON_UTF8));
+            } catch (IOException e) {
+                throw new HttpMessageNotWritableException("Could not write board", e);
+            }
+        });
+    }
+
+    private BoardSnapshot snapshotAtCurrentVersion(GameState game, String baseUri) {
+        BoardSnapshot snapshot = snapshots.get(game);
+        if (snapshot == null || snapshot.version != game.version() || !snapshot.baseUri.equals(baseUri)) {
+            snapshot = snapshot(game, baseUri);
+            snapshots.put(game, snapshot);
+        }
+        return snapshot;
+    }
+
+    private static BoardResponse boardResponse(BoardSnapshot snapshot, Integer playerNumber) {
+        return BoardResponse.builder()
+                .playerNumber(playerNumber)
+                .territories(snapshot.territories)
+                .players(snapshot.players)
+                .turnNumber(snapshot.turnNumber)
+                .activePlayer(snapshot.activePlayer)
+                .remainingActions(snapshot.remainingActions)
+                .build();
+    }
+
+    private BoardSnapshot snapshot(GameState game, String baseUri) {
         List<PlayerController.AllPlayersPlayerResponse> playersResponse = new ArrayList<>();
-        players
-                .forEach(p -> {
-                            PlayerController.AllPlayersPlayerResponse playerResponse = PlayerController.AllPlayersPlayerResponse.builder()
-                                    .name(p.getName())
-                                    .playerNumber(p.getPlayerNumber())
-                                    .troops(p.getPlayerTerritoriesList().stream().mapToInt(PlayerTerritory::getTroops).sum())
-                                    .territories((int) p.getPlayerTerritoriesList().stream().count())
-                                    .supplyDepots((int) p.getPlayerTerritoriesList()
-                                            .stream().filter(pt -> pt.isSupplyDepotTerritory()).count())
-                                    .build();
-                            playerResponse
-                                    .add(
-                                            linkTo(
-                                                    methodOn(PlayerController.class).getPlayer(p.getPlayerNumber(), session))
-                                                    .withSelfRel());
-                            playersResponse.add(playerResponse);
-                        }
-                );
-        builder.players(playersResponse);
+        for (int slot = 0; slot < game.playerCount(); slot++) {
+            int playerNumber = game.playerNumber(slot);
+            PlayerController.AllPlayersPlayerResponse playerResponse = PlayerController.AllPlayersPlayerResponse.builder()
+                    .name(game.playerName(slot))
+                    .playerNumber(playerNumber)
+                    .troops(game.troopsOwnedBy(playerNumber))
+                    .territories(game.territoriesOwnedBy(playerNumber))
+                    .supplyDepots(game.supplyDepotsOwnedBy(playerNumber))
+                    .build();
+            playerResponse.add(linkFactory.player(baseUri, playerNumber));
+            playersResponse.add(playerResponse);
+        }
 
         List<TerritoryController.AllTerritoriesResponse> territoriesResponse = new ArrayList<>();
-        territories
-                .forEach(territory -> {
-                    TerritoryController.AllTerritoriesResponse terrritoryResponse = TerritoryController.AllTerritoriesResponse.builder()
-                            .name(territory.getTerritoryName())
-                            .territoryId((territory.getTerritoryId().intValue()))
-                            .supplyDepot((territory.isSupplyDepotTerritory()))
-                            .supplied(territory.isSupplied())
-                            .troops(territory.getTroops())
-                            .playerNumber(
-                                    (territory.getPlayer() == null) ? 0 :
-                                            territory.getPlayer().getPlayerNumber())
-                            .build();
-                    terrritoryResponse
-                            .add(
-                                    linkTo(
-                                            methodOn(TerritoryController.class).getTerritory(
-                                                    territory.getTerritoryId(), session))
-                                            .withSelfRel());
-                    territoriesResponse.add(terrritoryResponse);
-                });
-
-        builder.territories(territoriesResponse);
-        builder.playerNumber((Integer) session.getAttribute(SESSION_PLAYER_NUMBER_FIELD));
-        int turnNumber = gameRepository.findOne((String) session.getAttribute(SESSION_GAME_NAME_FIELD)).getTurnNumber();
-        builder.turnNumber(turnNumber);
-        int activePlayer = turnNumber % players.size() == 0 ? players.size() : turnNumber % players.size();
-        builder.activePlayer(activePlayer);
-        builder.remainingActions(players.stream().filter(player -> player.getPlayerNumber() == activePlayer).findFirst().get().getRemainingActions());
-
-        return builder.build();
+        for (int index = 0; index < game.territoryCount(); index++) {
+            TerritoryController.AllTerritoriesResponse terrritoryResponse = TerritoryController.AllTerritoriesResponse.builder()
+                    .name(game.territoryName(index))
+                    .territoryId((int) game.territoryId(index))
+                    .supplyDepot(game.isSupplyDepot(index))
+                    .supplied(game.isSupplied(index))
+                    .troops(game.troops(index))
+                    .playerNumber(game.owner(index))
+                    .build();
+            terrritoryResponse.add(linkFactory.territory(baseUri, game.territoryId(index)));
+            territoriesResponse.add(terrritoryResponse);
+        }
+
+        int activePlayer = game.activePlayerNumber();
+        int activeSlot = game.slotOf(activePlayer);
+        return new BoardSnapshot(game.version(), baseUri,
+                Collections.unmodifiableList(territoriesResponse), Collections.unmodifiableList(playersResponse),
+                game.getTurnNumber(), activePlayer, activeSlot < 0 ? 0 : game.remainingActions(activeSlot));
+    }
+
+    @AllArgsConstructor
+    private static class BoardWaiter {
+        private final long since;
+        private final Integer playerNumber;
+        private final HttpServletRequest request;
+        private final MediaType preferred;
+        private final String baseUri;
+        private final DeferredResult<ResponseEntity<byte[]>> result;
+    }
+
+    /**
+     * The player-independent part of a board response at one version of a game, and every
+     * encoding of it served so far, by player number and requested subtype. Entries are weakly
+     * keyed by the game state, so they go away once the game is evicted.
+     */
+    private static class BoardSnapshot {
+        private final long version;
+        private final String baseUri;
+        private final List<TerritoryController.AllTerritoriesResponse> territories;
+        private final List<PlayerController.AllPlayersPlayerResponse> players;
+        private final int turnNumber;
+        private final int activePlayer;
+        private final int remainingActions;
+        private final ConcurrentMap<String, EncodedBoard> encoded = new ConcurrentHashMap<>();
+
+        private BoardSnapshot(long version, String baseUri, List<TerritoryController.AllTerritoriesResponse> territories,
+                              List<PlayerController.AllPlayersPlayerResponse> players, int turnNumber, int activePlayer,
+                              int remainingActions) {
+            this.version = version;
+            this.baseUri = baseUri;
+            this.territories = territories;
+            this.players = players;
+            this.turnNumber = turnNumber;
+            this.activePlayer = activePlayer;
+            this.remainingActions = remainingActions;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class EncodedBoard {
+        private final MediaType representation;
+        private final byte[] bytes;
+        private final String eTag;
     }
 
     @Getter
@@ -0,0 +1,159 @@
+package org.cost.board;
+
+import org.cost.player.PlayerController;
+import org.cost.territory.TerritoryController;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes a {@link BoardController.BoardResponse} as {@code application/x-supplyraid-board}, a
+ * big-endian binary layout for clients that poll the board over slow links:
+ *
+ * <pre>
+ * header      u8 format (1), i32 playerNumber (0 if none), i32 turnNumber, u8 activePlayer,
+ *             u8 remainingActions, u8 playerCount, u16 territoryCount
+ * player      u8 playerNumber, u16 name length, UTF-8 name, u16 troops, u16 territories,
+ *             u8 supplyDepots
+ * territory   u16 territoryId, u8 owner (0 = unowned), u8 flags (1 = supplied, 2 = supply depot),
+ *             u16 troops
+ * </pre>
+ *
+ * Territory records are six bytes each and come in territory index order, the same order as
+ * the JSON list. Names and links are left out; clients already have them from the map.
+ */
+public class BoardMessageConverter extends AbstractHttpMessageConverter<BoardController.BoardResponse> {
+
+    public static final MediaType BOARD_MEDIA_TYPE = new MediaType("application", "x-supplyraid-board");
+
+    static final int FORMAT = 1;
+    static final int SUPPLIED = 1;
+    static final int SUPPLY_DEPOT = 2;
+
+    private static final int HEADER_BYTES = 14;
+    private static final int PLAYER_BYTES = 8;
+    private static final int TERRITORY_BYTES = 6;
+
+    public BoardMessageConverter() {
+        super(BOARD_MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return BoardController.BoardResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected BoardController.BoardResponse readInternal(Class<? extends BoardController.BoardResponse> clazz,
+                                                         HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Boards are only written as " + BOARD_MEDIA_TYPE);
+    }
+
+    @Override
+    protected void writeInternal(BoardController.BoardResponse board, HttpOutputMessage outputMessage) throws IOException {
+        write(board, outputMessage.getBody());
+    }
+
+    /**
+     * Whether every field of the board is within the width the layout gives it. Boards that are
+     * not are served as JSON instead.
+     */
+    public static boolean fits(BoardController.BoardResponse board) {
+        if (!isU8(board.getActivePlayer()) || !isU8(board.getRemainingActions()) || !isU8(board.getPlayers().size())
+                || !isU16(board.getTerritories().size())) {
+            return false;
+        }
+        for (PlayerController.AllPlayersPlayerResponse player : board.getPlayers()) {
+            String name = player.getName();
+            if (!isU8(player.getPlayerNumber()) || !isU16(name == null ? 0 : name.getBytes(StandardCharsets.UTF_8).length)
+                    || !isU16(player.getTroops()) || !isU16(player.getTerritories()) || !isU8(player.getSupplyDepots())) {
+                return false;
+            }
+        }
+        for (TerritoryController.AllTerritoriesResponse territory : board.getTerritories()) {
+            if (!isU16(territory.getTerritoryId()) || !isU16(territory.getTroops())
+                    || !isU8(territory.getPlayerNumber() == null ? 0 : territory.getPlayerNumber())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws HttpMessageNotWritableException when a field does not fit its width; see {@link #fits}
+     */
+    public static void write(BoardController.BoardResponse board, OutputStream outputStream) throws IOException {
+        List<PlayerController.AllPlayersPlayerResponse> players = board.getPlayers();
+        List<TerritoryController.AllTerritoriesResponse> territories = board.getTerritories();
+        byte[][] names = new byte[players.size()][];
+        int size = HEADER_BYTES + territories.size() * TERRITORY_BYTES;
+        for (int slot = 0; slot < names.length; slot++) {
+            String name = players.get(slot).getName();
+            names[slot] = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+            size += PLAYER_BYTES + names[slot].length;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put((byte) FORMAT);
+        out.putInt(board.getPlayerNumber() == null ? 0 : board.getPlayerNumber());
+        out.putInt(board.getTurnNumber());
+        out.put(u8(board.getActivePlayer(), "activePlayer"));
+        out.put(u8(board.getRemainingActions(), "remainingActions"));
+        out.put(u8(players.size(), "playerCount"));
+        out.putShort(u16(territories.size(), "territoryCount"));
+
+        for (int slot = 0; slot < names.length; slot++) {
+            PlayerController.AllPlayersPlayerResponse player = players.get(slot);
+            out.put(u8(player.getPlayerNumber(), "playerNumber"));
+            out.putShort(u16(names[slot].length, "name length"));
+            out.put(names[slot]);
+            out.putShort(u16(player.getTroops(), "player troops"));
+            out.putShort(u16(player.getTerritories(), "player territories"));
+            out.put(u8(player.getSupplyDepots(), "supplyDepots"));
+        }
+
+        for (TerritoryController.AllTerritoriesResponse territory : territories) {
+            out.putShort(u16(territory.getTerritoryId(), "territoryId"));
+            out.put(u8(territory.getPlayerNumber() == null ? 0 : territory.getPlayerNumber(), "owner"));
+            out.put((byte) ((territory.isSupplied() ? SUPPLIED : 0) | (territory.isSupplyDepot() ? SUPPLY_DEPOT : 0)));
+            out.putShort(u16(territory.getTroops(), "territory troops"));
+        }
+        outputStream.write(out.array(), 0, out.position());
+    }
+
+    private static boolean isU8(int value) {
+        return value >= 0 && value <= 0xFF;
+    }
+
+    private static boolean isU16(int value) {
+        return value >= 0 && value <= 0xFFFF;
+    }
+
+    private static byte u8(int value, String field) {
+        if (!isU8(value)) {
+            throw new HttpMessageNotWritableException(field + " " + value + " does not fit " + BOARD_MEDIA_TYPE);
+        }
+        return (byte) value;
+    }
+
+    private static short u16(int value, String field) {
+        if (!isU16(value)) {
+            throw new HttpMessageNotWritableException(field + " " + value + " does not fit " + BOARD_MEDIA_TYPE);
+        }
+        return (short) value;
+    }
+}
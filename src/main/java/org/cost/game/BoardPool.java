@@ -0,0 +1,160 @@
+package org.cost.game;
+
+import org.cost.player.PlayerTerritoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a pool of boards whose Player_territory rows already exist, parked under placeholder
+ * games, so creating a game only has to move one board's rows to the new name instead of
+ * materializing them. A background thread tops the pool up to supplyraid.board-pool.size after
+ * every claim and every supplyraid.board-pool.refill-interval-ms; boards left over from a
+ * previous run are adopted on start.
+ */
+@Service
+public class BoardPool {
+
+    static final String NAME_PREFIX = "~board-pool-";
+
+    private static final Logger log = LoggerFactory.getLogger(BoardPool.class);
+
+    private final GameRepository gameRepository;
+    private final PlayerTerritoryRepository playerTerritoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int targetSize;
+    private final long refillIntervalMillis;
+    private final Queue<String> boards = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private ScheduledExecutorService provisioner;
+
+    @Autowired
+    public BoardPool(GameRepository gameRepository, PlayerTerritoryRepository playerTerritoryRepository,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${supplyraid.board-pool.size:8}") int targetSize,
+                     @Value("${supplyraid.board-pool.refill-interval-ms:1000}") long refillIntervalMillis) {
+        this.gameRepository = gameRepository;
+        this.playerTerritoryRepository = playerTerritoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.targetSize = targetSize;
+        this.refillIntervalMillis = refillIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (targetSize <= 0) {
+            return;
+        }
+        provisioner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "board-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        provisioner.execute(this::adoptQuietly);
+        provisioner.scheduleWithFixedDelay(this::refillQuietly, 0, refillIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (provisioner != null) {
+            provisioner.shutdownNow();
+            provisioner.awaitTermination(refillIntervalMillis * 10, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hands a pooled board to the game, whose row must already exist. Returns false when the
+     * pool was empty, in which case the caller has to create the game's territories itself. The
+     * rows move and the placeholder is dropped in one transaction, so a failure between the two
+     * leaves neither a board shared by two games nor a placeholder still holding it.
+     */
+    public boolean claim(String gameName) {
+        String board = boards.poll();
+        if (board == null) {
+            misses.incrementAndGet();
+            refillSoon();
+            return false;
+        }
+        size.decrementAndGet();
+        Integer moved = transactionTemplate.execute(status -> {
+            int rows = playerTerritoryRepository.moveToGame(board, gameName);
+            gameRepository.markDeleted(board);
+            return rows;
+        });
+        refillSoon();
+        if (moved == null || moved == 0) {
+            misses.incrementAndGet();
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    void adopt() {
+        for (String board : gameRepository.findGameNamesStartingWith(NAME_PREFIX)) {
+            boards.add(board);
+            size.incrementAndGet();
+        }
+    }
+
+    void refill() {
+        while (size.get() < targetSize && !Thread.currentThread().isInterrupted()) {
+            String board = NAME_PREFIX + UUID.randomUUID();
+            gameRepository.save(Game.builder().gameName(board).turnNumber(1).build());
+            playerTerritoryRepository.createForGame(board);
+            boards.add(board);
+            size.incrementAndGet();
+        }
+    }
+
+    private void refillSoon() {
+        if (provisioner != null && !provisioner.isShutdown()) {
+            provisioner.execute(this::refillQuietly);
+        }
+    }
+
+    private void adoptQuietly() {
+        try {
+            adopt();
+        } catch (RuntimeException e) {
+            log.warn("Could not adopt pooled boards", e);
+        }
+    }
+
+    private void refillQuietly() {
+        try {
+            refill();
+        } catch (RuntimeException e) {
+            log.warn("Board pool refill failed; will retry", e);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import javax.validation.groups.ConvertGroup;
 import java.util.ArrayList;
@@ -37,4 +38,17 @@ public class Game {
     private boolean started;
 
     private int turnNumber;
+
+    /**
+     * Set when the game is deleted; its rows stay until {@link GamePurger} removes them.
+     */
+    @Type(type = "org.hibernate.type.NumericBooleanType")
+    private boolean deleted;
+
+    /**
+     * Checked by JPA on every save, so a write based on a stale read fails instead of silently
+     * overwriting. The write-behind updates bump it too.
+     */
+    @Version
+    private long version;
 }
\ No newline at end of file
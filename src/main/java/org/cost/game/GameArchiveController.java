@@ -0,0 +1,29 @@
+package org.cost.game;
+
+import org.cost.Exceptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class GameArchiveController {
+
+    private GameArchiver gameArchiver;
+
+    @Autowired
+    public GameArchiveController(GameArchiver gameArchiver) {
+        this.gameArchiver = gameArchiver;
+    }
+
+    @RequestMapping(path = "/game/{gameName}/restore", method = RequestMethod.POST)
+    public ResponseEntity restoreGame(@PathVariable String gameName) {
+        if (!gameArchiver.restore(gameName)) {
+            throw new Exceptions.ResourceNotFoundException("Game Is Not Archived");
+        }
+        return new ResponseEntity(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,395 @@
+package org.cost.game;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.cost.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.ResultSetMetaData;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves games nobody will play again out of the live tables. Every
+ * supplyraid.archive.interval-ms it picks games that are finished (one player owns every owned
+ * territory) and untouched for supplyraid.archive.finished-after-minutes, or untouched at all
+ * for supplyraid.archive.idle-after-minutes, and replaces their Game, Player and
+ * Player_territory rows with one gzipped row in Game_archive. {@link #restore(String)} puts an
+ * archived game back exactly as it was, ids included. Each column's SQL type is archived with it,
+ * so values JSON has no exact form for, such as timestamps, decimals and unsigned BIGINTs, come
+ * back as the same value.
+ */
+@Service
+public class GameArchiver {
+
+    /**
+     * In insert order; rows are deleted in the reverse order so no foreign key is left dangling.
+     */
+    static final String[] TABLES = {"Game", "Player", "Player_territory"};
+
+    static final String FIND_FINISHED_GAMES = "SELECT game.game_name FROM Game game " +
+            "JOIN Player_territory pt ON pt.game_name = game.game_name " +
+            "WHERE game.started = 1 AND game.deleted = 0 AND game.updated_at < NOW() - INTERVAL ? MINUTE " +
+            "GROUP BY game.game_name HAVING COUNT(DISTINCT pt.player_id) = 1 LIMIT ?";
+    static final String FIND_IDLE_GAMES = "SELECT game_name FROM Game " +
+            "WHERE deleted = 0 AND game_name NOT LIKE ? AND updated_at < NOW() - INTERVAL ? MINUTE LIMIT ?";
+    static final String INSERT_ARCHIVE = "INSERT INTO Game_archive (game_name, rows_gzip) VALUES (?, ?)";
+    static final String SELECT_ARCHIVE = "SELECT rows_gzip FROM Game_archive WHERE game_name = ? FOR UPDATE";
+    static final String DELETE_ARCHIVE = "DELETE FROM Game_archive WHERE game_name = ?";
+    static final String COUNT_LIVE_GAME = "SELECT COUNT(*) FROM Game WHERE game_name = ?";
+    static final String COUNT_ARCHIVE = "SELECT COUNT(*) FROM Game_archive WHERE game_name = ?";
+
+    /**
+     * Maintained by the database; a restored game starts its idle clock afresh.
+     */
+    private static final Set<String> SKIPPED_COLUMNS = Collections.singleton("updated_at");
+
+    private static final TypeReference<LinkedHashMap<String, ArchivedTable>> ARCHIVE_TYPE =
+            new TypeReference<LinkedHashMap<String, ArchivedTable>>() {
+            };
+
+    private static final Logger log = LoggerFactory.getLogger(GameArchiver.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final GameStateService gameStateService;
+    private final GameShards gameShards;
+    private final ObjectMapper objectMapper;
+    private final long intervalMillis;
+    private final long finishedAfterMinutes;
+    private final long idleAfterMinutes;
+    private final int batchSize;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public GameArchiver(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        GameStateService gameStateService, GameShards gameShards, ObjectMapper objectMapper,
+                        @Value("${supplyraid.archive.interval-ms:600000}") long intervalMillis,
+                        @Value("${supplyraid.archive.finished-after-minutes:60}") long finishedAfterMinutes,
+                        @Value("${supplyraid.archive.idle-after-minutes:10080}") long idleAfterMinutes,
+                        @Value("${supplyraid.archive.batch-size:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.gameStateService = gameStateService;
+        this.gameShards = gameShards;
+        this.objectMapper = objectMapper;
+        this.intervalMillis = intervalMillis;
+        this.finishedAfterMinutes = finishedAfterMinutes;
+        this.idleAfterMinutes = idleAfterMinutes;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::archiveQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Archives up to one batch each of finished and idle games and returns how many were archived.
+     * A game whose shard is full, or that fails to archive, is left for the next pass; the rest of
+     * the batch goes ahead.
+     */
+    public int archiveDue() {
+        Set<String> gameNames = new LinkedHashSet<>();
+        gameNames.addAll(jdbcTemplate.queryForList(FIND_FINISHED_GAMES, String.class, finishedAfterMinutes, batchSize));
+        gameNames.addAll(jdbcTemplate.queryForList(FIND_IDLE_GAMES, String.class,
+                BoardPool.NAME_PREFIX + "%", idleAfterMinutes, batchSize));
+        int archived = 0;
+        for (String gameName : gameNames) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            try {
+                if (archive(gameName)) {
+                    archived++;
+                }
+            } catch (RejectedExecutionException e) {
+                log.debug("Shard of {} is full; archiving it later", gameName);
+            } catch (RuntimeException e) {
+                log.warn("Could not archive {}; trying again next pass", gameName, e);
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Writes the game's pending changes, then swaps its live rows for an archive row in one
+     * transaction. This runs on the game's shard and waits for it there, so no action can change
+     * the game between the flush and the swap; it must not be called from a shard thread. Returns
+     * false when there is no such game.
+     *
+     * @throws RejectedExecutionException when the game's shard is full
+     */
+    public boolean archive(String gameName) {
+        FutureTask<Boolean> task = new FutureTask<>(() -> archiveOnShard(gameName));
+        gameShards.execute(gameName, task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private boolean archiveOnShard(String gameName) {
+        gameStateService.evict(gameName);
+        Boolean archived = transactionTemplate.execute(status -> {
+            Map<String, ArchivedTable> tables = new LinkedHashMap<>();
+            for (String table : TABLES) {
+                tables.put(table, select(table, gameName));
+            }
+            if (tables.get(TABLES[0]).getRows().isEmpty()) {
+                return false;
+            }
+            jdbcTemplate.update(INSERT_ARCHIVE, gameName, compress(tables));
+            for (int table = TABLES.length - 1; table >= 0; table--) {
+                jdbcTemplate.update("DELETE FROM " + TABLES[table] + " WHERE game_name = ?", gameName);
+            }
+            return true;
+        });
+        gameStateService.deleted(gameName);
+        return Boolean.TRUE.equals(archived);
+    }
+
+    /**
+     * Whether the game is archived. Its name stays taken until it is restored, so a new game
+     * cannot claim it and collide with the archive row when it is archived in turn.
+     */
+    public boolean isArchived(String gameName) {
+        return jdbcTemplate.queryForObject(COUNT_ARCHIVE, Integer.class, gameName) > 0;
+    }
+
+    /**
+     * Puts an archived game back into the live tables. Returns false when it is not archived.
+     *
+     * @throws Exceptions.ConflictException when a live game has taken the name since
+     */
+    public boolean restore(String gameName) {
+        Boolean restored = transactionTemplate.execute(status -> {
+            List<byte[]> archives = jdbcTemplate.query(SELECT_ARCHIVE, (resultSet, row) -> resultSet.getBytes(1), gameName);
+            if (archives.isEmpty()) {
+                return false;
+            }
+            if (jdbcTemplate.queryForObject(COUNT_LIVE_GAME, Integer.class, gameName) > 0) {
+                throw new Exceptions.ConflictException("Game Name Taken");
+            }
+            Map<String, ArchivedTable> tables = decompress(archives.get(0));
+            for (String table : TABLES) {
+                insert(table, tables.get(table));
+            }
+            jdbcTemplate.update(DELETE_ARCHIVE, gameName);
+            return true;
+        });
+        return Boolean.TRUE.equals(restored);
+    }
+
+    private ArchivedTable select(String table, String gameName) {
+        return jdbcTemplate.query("SELECT * FROM " + table + " WHERE game_name = ?", resultSet -> {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<String> columns = new ArrayList<>();
+            List<Integer> types = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                String name = metaData.getColumnLabel(column);
+                if (!SKIPPED_COLUMNS.contains(name.toLowerCase())) {
+                    columns.add(name);
+                    types.add(metaData.getColumnType(column));
+                    positions.add(column);
+                }
+            }
+            List<List<Object>> rows = new ArrayList<>();
+            while (resultSet.next()) {
+                List<Object> row = new ArrayList<>(positions.size());
+                for (int column = 0; column < positions.size(); column++) {
+                    row.add(archivedValue(resultSet.getObject(positions.get(column)), types.get(column)));
+                }
+                rows.add(row);
+            }
+            return new ArchivedTable(columns, types, rows);
+        }, gameName);
+    }
+
+    private void insert(String table, ArchivedTable archivedTable) {
+        if (archivedTable == null || archivedTable.getRows().isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", archivedTable.getColumns()) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(archivedTable.getColumns().size(), "?")) + ")";
+        List<Integer> types = archivedTable.getTypes();
+        List<Object[]> arguments = new ArrayList<>(archivedTable.getRows().size());
+        for (List<Object> row : archivedTable.getRows()) {
+            Object[] values = new Object[row.size()];
+            for (int column = 0; column < values.length; column++) {
+                values[column] = restoredValue(row.get(column), types.get(column));
+            }
+            arguments.add(values);
+        }
+        jdbcTemplate.batchUpdate(sql, arguments, types.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * The form a column's value is archived in: text for the values JSON would round or read back
+     * as something else, the driver's own value for everything else.
+     */
+    static Object archivedValue(Object value, int type) {
+        if (value == null) {
+            return null;
+        }
+        switch (type) {
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return value.toString();
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return Base64.getEncoder().encodeToString((byte[]) value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Turns an archived value back into the Java type the driver reads the column as. JSON
+     * numbers come back as the smallest of Integer, Long and BigInteger that holds them, so an
+     * unsigned column's value outside the signed range keeps the wider type it was read as.
+     */
+    static Object restoredValue(Object value, int type) {
+        if (value == null) {
+            return null;
+        }
+        switch (type) {
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return new BigDecimal((String) value);
+            case Types.DATE:
+                return Date.valueOf((String) value);
+            case Types.TIME:
+                return Time.valueOf((String) value);
+            case Types.TIMESTAMP:
+                return Timestamp.valueOf((String) value);
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return Base64.getDecoder().decode((String) value);
+            case Types.BIGINT:
+                return value instanceof BigInteger ? value : ((Number) value).longValue();
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return value instanceof Integer ? value : ((Number) value).longValue();
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return ((Number) value).doubleValue();
+            default:
+                return value;
+        }
+    }
+
+    byte[] compress(Map<String, ArchivedTable> tables) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(objectMapper.writeValueAsBytes(tables));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    Map<String, ArchivedTable> decompress(byte[] archive) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(archive))) {
+            return objectMapper.readValue(gzip, ARCHIVE_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void archiveQuietly() {
+        try {
+            int archived;
+            do {
+                archived = archiveDue();
+            } while (archived > 0 && !Thread.currentThread().isInterrupted());
+        } catch (RuntimeException e) {
+            log.warn("Archiving games failed; will retry", e);
+        }
+    }
+
+    /**
+     * One table's rows of an archived game, column names and their {@link Types} first so the
+     * values stay positional.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class ArchivedTable {
+        private List<String> columns;
+        private List<Integer> types;
+        private List<List<Object>> rows;
+    }
+}
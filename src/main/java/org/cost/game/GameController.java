@@ -6,7 +6,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import java.util.*;
 
@@ -18,14 +20,16 @@ public class GameController {
     private PlayerTerritoryRepository playerTerritoryRepository;
     private SuppliedStatusService suppliedStatusService;
     private GameService gameService;
+    private GameShards gameShards;
 
     @Autowired
-    public GameController(GameRepository gameRepository, TerritoryRepository territoryRepository, PlayerTerritoryRepository playerTerritoryRepository, SuppliedStatusService suppliedStatusService, GameService gameService ) {
+    public GameController(GameRepository gameRepository, TerritoryRepository territoryRepository, PlayerTerritoryRepository playerTerritoryRepository, SuppliedStatusService suppliedStatusService, GameService gameService, GameShards gameShards) {
         this.gameRepository = gameRepository;
         this.territoryRepository = territoryRepository;
         this.playerTerritoryRepository = playerTerritoryRepository;
         this.suppliedStatusService = suppliedStatusService;
         this.gameService = gameService;
+        this.gameShards = gameShards;
     }
 
     @RequestMapping(path = "/game", method = RequestMethod.GET)
@@ -49,10 +53,17 @@ public class GameController {
 
 
 
+    /**
+     * Starts the game on its shard, so the game state it takes into memory is never changed by
+     * an action running at the same time.
+     */
     @RequestMapping(path = "/game/start", method = RequestMethod.POST)
-    public ResponseEntity startGame(HttpSession httpSession) throws Exception{
-        gameService.startGame(httpSession);
-        return new ResponseEntity(HttpStatus.OK);
+    public DeferredResult<ResponseEntity<?>> startGame(HttpSession httpSession, HttpServletRequest request) {
+        String gameName = (String) httpSession.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD);
+        return gameShards.respond(gameName, request, () -> {
+            gameService.startGame(httpSession);
+            return new ResponseEntity(HttpStatus.OK);
+        });
     }
 
 
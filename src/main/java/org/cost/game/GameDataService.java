@@ -18,14 +18,30 @@ public class GameDataService {
         return gameRepository.getOne(gameName);
     }
 
-    public boolean gameExistsWithName(String s) {
-        return false;
+    /**
+     * Whether a game by that name is live. A deleted game waiting for {@link GamePurger} does not
+     * count.
+     */
+    public boolean gameExistsWithName(String gameName) {
+        return gameRepository.existsLive(gameName);
     }
 
-    public void saveGame(Game expectedGame) {
+    /**
+     * Whether a new game may not take the name. A deleted game keeps its name until
+     * {@link GamePurger} has removed its rows, which it finds by name.
+     */
+    public boolean gameNameTaken(String gameName) {
+        return gameRepository.exists(gameName);
     }
 
-    public void deleteGame(String gameName) {
+    public void saveGame(Game game) {
+        gameRepository.save(game);
+    }
 
+    /**
+     * Marks the game deleted; {@link GamePurger} removes its rows later in the background.
+     */
+    public void deleteGame(String gameName) {
+        gameRepository.markDeleted(gameName);
     }
 }
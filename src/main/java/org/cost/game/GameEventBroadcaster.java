@@ -0,0 +1,31 @@
+package org.cost.game;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pushes every {@link GameStateChangedEvent} to the STOMP topic of its game.
+ */
+@Component
+public class GameEventBroadcaster {
+
+    private static final String GAME_TOPIC_PREFIX = "/topic/games/";
+
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    @Autowired
+    public GameEventBroadcaster(SimpMessageSendingOperations messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public static String topic(String gameName) {
+        return GAME_TOPIC_PREFIX + gameName;
+    }
+
+    @EventListener
+    public void onGameStateChanged(GameStateChangedEvent event) {
+        messagingTemplate.convertAndSend(topic(event.getGameName()), event);
+    }
+}
@@ -0,0 +1,349 @@
+package org.cost.game;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-Sent Events fan-out of {@link GameStateChangedEvent}s, one stream per game. Each event
+ * is serialized and framed once, then written unchanged to every subscriber. The last events of
+ * each game are kept so a client reconnecting with Last-Event-ID is sent only what it missed, or
+ * told to resync when that has already been dropped.
+ * <p>
+ * Events are published on the game's shard thread, so nothing here writes to a client on the
+ * publisher's thread. Each subscriber has its own bounded backlog that a delivery thread drains;
+ * a subscriber that falls supplyraid.events.subscriber-backlog frames behind is disconnected and
+ * can resume with Last-Event-ID. There are at most supplyraid.events.delivery-threads delivery
+ * threads with supplyraid.events.delivery-queue drains waiting for them; a subscriber whose drain
+ * does not fit is disconnected the same way, so slow clients cannot grow the pool. A game's channel is dropped once its last subscriber leaves while
+ * the game is not in memory, or as soon as the game is deleted or archived.
+ */
+@Component
+public class GameEventStream {
+
+    static final String GAME_STATE_EVENT = "game-state";
+    static final String RESYNC_EVENT = "resync";
+
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+    private static final MediaType TEXT_EVENT_STREAM_UTF8 = new MediaType("text", "event-stream", StandardCharsets.UTF_8);
+    private static final String RESYNC_FRAME = frame(SseEmitter.event().name(RESYNC_EVENT).data(RESYNC_EVENT));
+
+    private final ObjectMapper objectMapper;
+    private final GameStateService gameStateService;
+    private final Executor delivery;
+    private final long emitterTimeoutMs;
+    private final int replayCapacity;
+    private final int subscriberBacklog;
+    private final ConcurrentMap<String, GameChannel> channels = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GameEventStream(ObjectMapper objectMapper, GameStateService gameStateService,
+                           @Value("${supplyraid.events.timeout-ms:300000}") long emitterTimeoutMs,
+                           @Value("${supplyraid.events.replay-capacity:256}") int replayCapacity,
+                           @Value("${supplyraid.events.subscriber-backlog:64}") int subscriberBacklog,
+                           @Value("${supplyraid.events.delivery-threads:32}") int deliveryThreads,
+                           @Value("${supplyraid.events.delivery-queue:1024}") int deliveryQueue) {
+        this(objectMapper, gameStateService, deliveryPool(deliveryThreads, deliveryQueue),
+                emitterTimeoutMs, replayCapacity, subscriberBacklog);
+    }
+
+    GameEventStream(ObjectMapper objectMapper, GameStateService gameStateService, Executor delivery,
+                    long emitterTimeoutMs, int replayCapacity, int subscriberBacklog) {
+        this.objectMapper = objectMapper;
+        this.gameStateService = gameStateService;
+        this.delivery = delivery;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.replayCapacity = replayCapacity;
+        this.subscriberBacklog = subscriberBacklog;
+    }
+
+    private static ThreadPoolExecutor deliveryPool(int threads, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "game-events");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (delivery instanceof ExecutorService) {
+            ((ExecutorService) delivery).shutdownNow();
+            ((ExecutorService) delivery).awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Opens a stream for the game, first replaying every buffered event newer than lastEventId.
+     * The subscriber joins its channel inside the map's compute, so it can never join a channel
+     * that is being dropped.
+     */
+    public ResponseBodyEmitter subscribe(String gameName, Long lastEventId) {
+        Subscriber subscriber = new Subscriber(new EventStreamEmitter(emitterTimeoutMs), replayCapacity + subscriberBacklog);
+        subscriber.emitter.onCompletion(() -> unsubscribe(gameName, subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(gameName, subscriber));
+
+        channels.compute(gameName, (name, existing) -> {
+            GameChannel channel = existing == null ? newChannel(name) : existing;
+            synchronized (channel) {
+                if (lastEventId != null) {
+                    if (lastEventId < channel.replayableAfter) {
+                        subscriber.offer(RESYNC_FRAME);
+                    } else {
+                        for (BufferedEvent buffered : channel.buffer) {
+                            if (buffered.version > lastEventId) {
+                                subscriber.offer(buffered.frame);
+                            }
+                        }
+                    }
+                }
+                channel.subscribers.add(subscriber);
+            }
+            return channel;
+        });
+        return subscriber.emitter;
+    }
+
+    @EventListener
+    public void onGameStateChanged(GameStateChangedEvent event) throws JsonProcessingException {
+        GameChannel channel = channels.get(event.getGameName());
+        if (channel == null) {
+            return;
+        }
+        String frame = frame(SseEmitter.event()
+                .id(Long.toString(event.getVersion()))
+                .name(GAME_STATE_EVENT)
+                .data(objectMapper.writeValueAsString(event)));
+
+        synchronized (channel) {
+            if (channel.replayableAfter == Long.MAX_VALUE) {
+                channel.replayableAfter = event.getVersion();
+            }
+            if (channel.buffer.size() == replayCapacity) {
+                channel.replayableAfter = channel.buffer.removeFirst().version;
+            }
+            channel.buffer.addLast(new BufferedEvent(event.getVersion(), frame));
+            channel.subscribers.removeIf(subscriber -> !subscriber.offer(frame));
+        }
+    }
+
+    @EventListener
+    public void onGameUnloaded(GameUnloadedEvent event) {
+        GameChannel channel = channels.remove(event.getGameName());
+        if (channel == null) {
+            return;
+        }
+        synchronized (channel) {
+            channel.subscribers.forEach(Subscriber::close);
+            channel.subscribers.clear();
+        }
+    }
+
+    int channelCount() {
+        return channels.size();
+    }
+
+    private void unsubscribe(String gameName, Subscriber subscriber) {
+        subscriber.close();
+        channels.computeIfPresent(gameName, (name, channel) -> {
+            channel.subscribers.remove(subscriber);
+            return channel.subscribers.isEmpty() && gameStateService.getActiveGameState(name) == null ? null : channel;
+        });
+    }
+
+    /**
+     * A channel can only replay events it has seen. Clients resume only from the game's version
+     * when the channel was opened or later; if the game was not in memory, only from the first
+     * event the channel buffers.
+     */
+    private GameChannel newChannel(String gameName) {
+        GameState gameState = gameStateService.getActiveGameState(gameName);
+        long replayableAfter;
+        if (gameState == null) {
+            replayableAfter = Long.MAX_VALUE;
+        } else {
+            synchronized (gameState) {
+                replayableAfter = gameState.version();
+            }
+        }
+        return new GameChannel(replayableAfter);
+    }
+
+    /**
+     * Renders an event with Spring's own builder into the text of one frame. Every part is text,
+     * since the data is serialized before it is framed.
+     */
+    private static String frame(SseEmitter.SseEventBuilder event) {
+        StringBuilder frame = new StringBuilder();
+        event.build().forEach(part -> frame.append(part.getData()));
+        return frame.toString();
+    }
+
+    private static class GameChannel {
+        private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+        private final Deque<BufferedEvent> buffer = new ArrayDeque<>();
+        private long replayableAfter;
+
+        private GameChannel(long replayableAfter) {
+            this.replayableAfter = replayableAfter;
+        }
+    }
+
+    private static class BufferedEvent {
+        private final long version;
+        private final String frame;
+
+        private BufferedEvent(long version, String frame) {
+            this.version = version;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * One client's stream and the frames queued for it. At most one delivery task drains a
+     * subscriber at a time, so its frames are written in the order they were offered.
+     */
+    private class Subscriber {
+        private final EventStreamEmitter emitter;
+        private final int capacity;
+        private final Deque<String> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        private Subscriber(EventStreamEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Queues the frame without blocking. Returns false, and closes the subscriber, when it
+         * is already closed or its backlog is full.
+         */
+        private boolean offer(String frame) {
+            boolean full;
+            boolean startDrain = false;
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                full = pending.size() == capacity;
+                if (!full) {
+                    pending.addLast(frame);
+                    startDrain = !draining;
+                    draining = true;
+                }
+            }
+            if (full) {
+                close();
+                return false;
+            }
+            if (startDrain) {
+                try {
+                    delivery.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    close();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                String frame;
+                synchronized (this) {
+                    frame = closed ? null : pending.pollFirst();
+                    if (frame == null) {
+                        draining = false;
+                        if (!closed) {
+                            return;
+                        }
+                    }
+                }
+                if (frame == null) {
+                    emitter.complete();
+                    return;
+                }
+                try {
+                    emitter.send(frame, TEXT_PLAIN_UTF8);
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    close();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Ends the stream. Completing takes the emitter's monitor, which a blocked write holds,
+         * so while a drain is under way it completes the stream once its write returns; otherwise
+         * nothing is writing and the caller completes it.
+         */
+        private void close() {
+            boolean writing;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending.clear();
+                writing = draining;
+            }
+            if (!writing) {
+                emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * An event stream whose frames are written as they are given. {@link SseEmitter} would frame
+     * them again.
+     */
+    static class EventStreamEmitter extends ResponseBodyEmitter {
+
+        EventStreamEmitter(long timeout) {
+            super(timeout);
+        }
+
+        @Override
+        protected void extendResponse(ServerHttpResponse outputMessage) {
+            super.extendResponse(outputMessage);
+            HttpHeaders headers = outputMessage.getHeaders();
+            if (headers.getContentType() == null) {
+                headers.setContentType(TEXT_EVENT_STREAM_UTF8);
+            }
+        }
+    }
+}
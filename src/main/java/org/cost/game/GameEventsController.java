@@ -0,0 +1,34 @@
+package org.cost.game;
+
+import org.cost.Exceptions;
+import org.cost.player.PlayerController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.servlet.http.HttpSession;
+
+@RestController
+public class GameEventsController {
+
+    private final GameEventStream gameEventStream;
+
+    @Autowired
+    public GameEventsController(GameEventStream gameEventStream) {
+        this.gameEventStream = gameEventStream;
+    }
+
+    @RequestMapping(path = "/games/{gameName}/events", method = RequestMethod.GET, produces = "text/event-stream")
+    public ResponseBodyEmitter getGameEvents(@PathVariable String gameName,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                    HttpSession session) {
+        if (!gameName.equals(session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD))) {
+            throw new Exceptions.ForbiddenException("Not a player in this game");
+        }
+        return gameEventStream.subscribe(gameName, lastEventId);
+    }
+}
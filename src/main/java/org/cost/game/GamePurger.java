@@ -0,0 +1,99 @@
+package org.cost.game;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes the rows of deleted games off the request thread. Player_territory and Player rows go
+ * first, in bulk DELETEs of at most supplyraid.purge.chunk-size rows, each committed on its own
+ * so no statement holds its locks for long; the Game row goes last, once nothing refers to it.
+ */
+@Service
+public class GamePurger {
+
+    static final String FIND_DELETED_GAMES = "SELECT game_name FROM Game WHERE deleted = 1 LIMIT ?";
+    static final String DELETE_PLAYER_TERRITORIES = "DELETE FROM Player_territory WHERE game_name = ? LIMIT ?";
+    static final String DELETE_PLAYERS = "DELETE FROM Player WHERE game_name = ? LIMIT ?";
+    static final String DELETE_GAME = "DELETE FROM Game WHERE game_name = ? AND deleted = 1";
+
+    private static final Logger log = LoggerFactory.getLogger(GamePurger.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long intervalMillis;
+    private final int chunkSize;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public GamePurger(JdbcTemplate jdbcTemplate,
+                      @Value("${supplyraid.purge.interval-ms:5000}") long intervalMillis,
+                      @Value("${supplyraid.purge.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.intervalMillis = intervalMillis;
+        this.chunkSize = chunkSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Purges up to one chunk of deleted games and returns how many were removed.
+     */
+    public int purge() {
+        List<String> gameNames = jdbcTemplate.queryForList(FIND_DELETED_GAMES, String.class, chunkSize);
+        int purged = 0;
+        for (String gameName : gameNames) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            deleteInChunks(DELETE_PLAYER_TERRITORIES, gameName);
+            deleteInChunks(DELETE_PLAYERS, gameName);
+            purged += jdbcTemplate.update(DELETE_GAME, gameName);
+        }
+        return purged;
+    }
+
+    private void deleteInChunks(String sql, String gameName) {
+        while (jdbcTemplate.update(sql, gameName, chunkSize) >= chunkSize) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            int purged;
+            do {
+                purged = purge();
+            } while (purged >= chunkSize);
+        } catch (RuntimeException e) {
+            log.warn("Purging deleted games failed; will retry", e);
+        }
+    }
+}
@@ -1,8 +1,26 @@
 package org.cost.game;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 @Repository
 public interface GameRepository extends JpaRepository<Game, String> {
+
+    @Query("SELECT game.gameName FROM Game game WHERE game.gameName LIKE CONCAT(:prefix, '%') AND game.deleted = false")
+    List<String> findGameNamesStartingWith(@Param("prefix") String prefix);
+
+    @Query("SELECT CASE WHEN COUNT(game) > 0 THEN true ELSE false END FROM Game game "
+            + "WHERE game.gameName = :gameName AND game.deleted = false")
+    boolean existsLive(@Param("gameName") String gameName);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Game game SET game.deleted = true, game.version = game.version + 1 WHERE game.gameName = :gameName")
+    int markDeleted(@Param("gameName") String gameName);
 }
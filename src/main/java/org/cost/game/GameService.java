@@ -6,50 +6,62 @@ import org.cost.territory.TerritoryDataService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpSession;
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 
+@Service
 public class GameService {
 
+    /**
+     * Game names end up in STOMP destinations, where the broker reads * and ? as wildcards, and
+     * must fit the game_name columns. Pooled boards use a prefix outside this set.
+     */
+    static final Pattern GAME_NAME = Pattern.compile("[A-Za-z0-9 _-]{1,64}");
+
     GameDataService gameDataService;
     PlayerDataService playerDataService;
     TerritoryDataService territoryDataService;
     PlayerTerritoryDataService playerTerritoryDataService;
     SuppliedStatusService suppliedStatusService;
+    GameStateService gameStateService;
+    BoardPool boardPool;
+    GameArchiver gameArchiver;
 
 
     @Autowired
-    public GameService(GameDataService gameDataService, PlayerDataService playerDataService, TerritoryDataService territoryDataService, PlayerTerritoryDataService playerTerritoryDataService) {
+    public GameService(GameDataService gameDataService, PlayerDataService playerDataService, TerritoryDataService territoryDataService,
+                       PlayerTerritoryDataService playerTerritoryDataService, SuppliedStatusService suppliedStatusService,
+                       GameStateService gameStateService, BoardPool boardPool, GameArchiver gameArchiver) {
         this.gameDataService = gameDataService;
         this.playerDataService = playerDataService;
         this.territoryDataService = territoryDataService;
         this.playerTerritoryDataService = playerTerritoryDataService;
+        this.suppliedStatusService = suppliedStatusService;
+        this.gameStateService = gameStateService;
+        this.boardPool = boardPool;
+        this.gameArchiver = gameArchiver;
     }
 
     public void createGame(CreateGameRequest gameRequest) throws Exception {
-
-        if (gameDataService.gameExistsWithName(gameRequest.getGameName())) {
+        if (gameRequest.getGameName() == null || !GAME_NAME.matcher(gameRequest.getGameName()).matches()) {
+            throw new Exceptions.BadRequestException("Game names are 1 to 64 letters, digits, spaces, _ or -");
+        }
+        if (gameDataService.gameNameTaken(gameRequest.getGameName()) || gameArchiver.isArchived(gameRequest.getGameName())) {
             throw new Exceptions.ConflictException("Game Name Taken");
         }
-        final ArrayList<PlayerTerritory> playerTerritories = new ArrayList<>();
-        territoryDataService.getListOfTerritoriesOnMap()
-                .forEach(territory -> {
-                    PlayerTerritory playerTerritory = PlayerTerritory.builder()
-                            .territoryId(territory.getTerritoryId())
-                            .gameName(gameRequest.getGameName())
-                            .territoryName(territory.getName())
-                            .playerId(null).build();
-                    playerTerritories.add(playerTerritory);
-                });
         Game game = Game.builder()
                 .gameName(gameRequest.getGameName())
-                .playerTerritories(playerTerritories)
                 .turnNumber(1)
                 .build();
         gameDataService.saveGame(game);
+        if (!boardPool.claim(gameRequest.getGameName())) {
+            playerTerritoryDataService.createPlayerTerritories(gameRequest.getGameName());
+        }
     }
 
 
@@ -59,6 +71,7 @@ public class GameService {
             throw new Exceptions.ResourceNotFoundException("Game Does Not Exist");
         }
         gameDataService.deleteGame(gameName);
+        gameStateService.deleted(gameName);
     }
 
     /// should method be written for unrealistic scenarios, such as nonexistent session and game? //
@@ -73,6 +86,10 @@ public class GameService {
 
     }
 
+    /**
+     * Deals out the starting territories and takes the game into memory. This changes the game's
+     * state, so it must run on the game's shard.
+     */
     public void startGame(HttpSession httpSession) throws Exceptions.ResourceNotFoundException{
 
         String gameName = (String) httpSession.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD);
@@ -153,7 +170,7 @@ public class GameService {
                     startingLocation, troopsPerSurroundingTerritory);
         }
         playerTerritoryDataService.saveTerritory(savedPlayerTerritories);
-        suppliedStatusService.markUnsupplied();
+        suppliedStatusService.markUnsupplied(gameName);
         suppliedStatusService.markSupplied(
                 territoryDataService.getListOfTerritoriesOnMap()
                         .stream()
@@ -168,6 +185,7 @@ public class GameService {
 
         game.setStarted(true);
         gameDataService.saveGame(game);
+        gameStateService.started(gameName);
     }
 
 
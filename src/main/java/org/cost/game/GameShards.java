@@ -0,0 +1,161 @@
+package org.cost.game;
+
+import org.cost.metrics.LatencyHistogram;
+import org.cost.metrics.RequestMetrics;
+import org.cost.metrics.SqlCounters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A fixed set of single-threaded executors that games are assigned to by the hash of their name.
+ * Every mutation of a game runs on its shard's thread in the order it was submitted, so actions
+ * on one game never race while different games spread across the shards. Each shard's queue is
+ * bounded; when it is full the work is refused rather than queued without limit.
+ */
+@Component
+public class GameShards {
+
+    private final Shard[] shards;
+
+    @Autowired
+    public GameShards(@Value("${supplyraid.actions.shards:0}") int shardCount,
+                      @Value("${supplyraid.actions.shard-queue-capacity:1024}") int queueCapacity) {
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        shards = new Shard[count];
+        for (int index = 0; index < count; index++) {
+            shards[index] = new Shard(index, queueCapacity);
+        }
+    }
+
+    /**
+     * Queues the task on the game's shard.
+     *
+     * @throws RejectedExecutionException when the shard's queue is full
+     */
+    public void execute(String gameName, Runnable task) {
+        shards[shardOf(gameName)].execute(task);
+    }
+
+    /**
+     * Runs a request's work on the game's shard. When the shard is already holding as much work
+     * as it may queue, the request is refused with 503 so the client backs off instead of piling
+     * on. The SQL the work runs is added to the request's counts before its result is set, and
+     * anything it throws is made the request's result so the client is never left waiting.
+     */
+    public DeferredResult<ResponseEntity<?>> respond(String gameName, HttpServletRequest request,
+                                                     Supplier<ResponseEntity<?>> action) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        SqlCounters requestSqlCounters = RequestMetrics.asyncSqlCounters(request);
+        try {
+            execute(gameName, () -> {
+                SqlCounters shardSqlCounters = SqlCounters.current();
+                shardSqlCounters.reset();
+                ResponseEntity<?> response;
+                try {
+                    response = action.get();
+                } catch (Throwable e) {
+                    addTo(requestSqlCounters, shardSqlCounters);
+                    result.setErrorResult(e);
+                    if (e instanceof Error) {
+                        throw (Error) e;
+                    }
+                    return;
+                }
+                addTo(requestSqlCounters, shardSqlCounters);
+                result.setResult(response);
+            });
+        } catch (RejectedExecutionException e) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, "1");
+            result.setResult(new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        return result;
+    }
+
+    private static void addTo(SqlCounters requestSqlCounters, SqlCounters shardSqlCounters) {
+        synchronized (requestSqlCounters) {
+            requestSqlCounters.add(shardSqlCounters);
+        }
+    }
+
+    int shardOf(String gameName) {
+        return gameName == null ? 0 : Math.floorMod(gameName.hashCode(), shards.length);
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public Shard shard(int index) {
+        return shards[index];
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            shard.executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class Shard implements Executor {
+        private final ThreadPoolExecutor executor;
+        private final LatencyHistogram waitMicros = new LatencyHistogram();
+        private final AtomicLong rejected = new AtomicLong();
+
+        Shard(int index, int queueCapacity) {
+            executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "game-shard-" + index);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            long queuedAt = System.nanoTime();
+            try {
+                executor.execute(() -> {
+                    waitMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - queuedAt));
+                    task.run();
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw e;
+            }
+        }
+
+        public int queueDepth() {
+            return executor.getQueue().size();
+        }
+
+        /**
+         * How long tasks waited in the queue before their shard ran them.
+         */
+        public LatencyHistogram.Snapshot waitTime() {
+            return waitMicros.snapshot();
+        }
+
+        public long rejected() {
+            return rejected.get();
+        }
+    }
+}
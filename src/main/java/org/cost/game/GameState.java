@@ -0,0 +1,360 @@
+package org.cost.game;
+
+import org.cost.player.Player;
+import org.cost.player.PlayerTerritory;
+import org.cost.territory.Bitboards;
+import org.cost.territory.FloodFill;
+import org.cost.territory.TerritoryGraph;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Authoritative in-memory state of a single game. Territories and players are addressed by
+ * their position in compact parallel arrays; callers must hold the monitor of the instance
+ * while reading or mutating it. The supplied and supply-depot flags and each player's
+ * territories are also kept as {@link Bitboards bitboards}, so per-player counts and supply
+ * floods are word operations rather than scans of the owner array.
+ */
+public class GameState {
+
+    public static final int UNOWNED = 0;
+    public static final int ACTIONS_PER_TURN = 3;
+
+    /**
+     * Versions are drawn from one clock-seeded sequence rather than counted per game, so a game
+     * that is evicted and loaded again never reuses a version a client may still hold.
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private final String gameName;
+    private final boolean started;
+    private int turnNumber;
+
+    private final TerritoryGraph graph;
+    private final FloodFill floodFill;
+    private final Long[] playerTerritoryIds;
+    private final String[] territoryNames;
+    private final int[] owners;
+    private final int[] troops;
+    private final long[] supplied;
+    private final long[] supplyDepots;
+    private final long[][] territoriesBySlot;
+
+    private final int[] playerNumbers;
+    private final String[] playerNames;
+    private final Long[] playerIds;
+    private final int[] remainingActions;
+
+    private final BitSet dirtyTerritories = new BitSet();
+    private final BitSet dirtyPlayers = new BitSet();
+    private boolean dirtyTurn;
+    private long version = VERSIONS.incrementAndGet();
+
+    private GameState(String gameName, boolean started, int turnNumber, TerritoryGraph graph, int playerCount) {
+        this.gameName = gameName;
+        this.started = started;
+        this.turnNumber = turnNumber;
+        this.graph = graph;
+        this.floodFill = new FloodFill(graph);
+        int territoryCount = graph.size();
+        this.playerTerritoryIds = new Long[territoryCount];
+        this.territoryNames = new String[territoryCount];
+        this.owners = new int[territoryCount];
+        this.troops = new int[territoryCount];
+        this.supplied = Bitboards.create(territoryCount);
+        this.supplyDepots = Bitboards.create(territoryCount);
+        this.territoriesBySlot = new long[playerCount][];
+        for (int slot = 0; slot < playerCount; slot++) {
+            territoriesBySlot[slot] = Bitboards.create(territoryCount);
+        }
+        this.playerNumbers = new int[playerCount];
+        this.playerNames = new String[playerCount];
+        this.playerIds = new Long[playerCount];
+        this.remainingActions = new int[playerCount];
+    }
+
+    /**
+     * Builds the state on a shared map graph; territories are addressed by their index in it.
+     */
+    public static GameState of(Game game, List<Player> players, List<PlayerTerritory> playerTerritories,
+                               TerritoryGraph graph) {
+        List<Player> joinedPlayers = players.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        GameState state = new GameState(game.getGameName(), game.isStarted(), game.getTurnNumber(),
+                graph, joinedPlayers.size());
+        if (!game.isStarted()) {
+            state.version = lobbyVersion(game, joinedPlayers.size());
+        }
+
+        Map<Long, Integer> playerNumbersById = new HashMap<>();
+        for (int slot = 0; slot < joinedPlayers.size(); slot++) {
+            Player player = joinedPlayers.get(slot);
+            state.playerNumbers[slot] = player.getPlayerNumber();
+            state.playerNames[slot] = player.getName();
+            state.playerIds[slot] = player.getPlayerId();
+            state.remainingActions[slot] = player.getRemainingActions();
+            if (player.getPlayerId() != null) {
+                playerNumbersById.put(player.getPlayerId(), player.getPlayerNumber());
+            }
+        }
+
+        for (PlayerTerritory playerTerritory : playerTerritories) {
+            int index = graph.indexOf(playerTerritory.getTerritoryId());
+            if (index == TerritoryGraph.NO_NEIGHBOR) {
+                continue;
+            }
+            state.playerTerritoryIds[index] = playerTerritory.getId();
+            state.territoryNames[index] = playerTerritory.getTerritoryName();
+            state.troops[index] = playerTerritory.getTroops();
+            Bitboards.set(state.supplied, index, playerTerritory.isSupplied());
+            Bitboards.set(state.supplyDepots, index, playerTerritory.isSupplyDepotTerritory());
+            if (playerTerritory.getPlayerId() != null) {
+                state.owners[index] = playerNumbersById.getOrDefault(playerTerritory.getPlayerId(), UNOWNED);
+            } else if (playerTerritory.getPlayer() != null) {
+                state.owners[index] = playerTerritory.getPlayer().getPlayerNumber();
+            }
+            int slot = state.slotOf(state.owners[index]);
+            if (state.owners[index] != UNOWNED && slot >= 0) {
+                Bitboards.set(state.territoriesBySlot[slot], index);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Unstarted games are not kept in memory, so every request loads a new state. Their version
+     * is derived from what can change in a lobby, the Game row's version and the number of
+     * players who have joined, so two loads of an unchanged lobby agree. It stays far below the
+     * clock-seeded versions a started game is given.
+     */
+    private static long lobbyVersion(Game game, int joinedPlayers) {
+        return game.getVersion() << 3 | joinedPlayers;
+    }
+
+    public String getGameName() {
+        return gameName;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public int getTurnNumber() {
+        return turnNumber;
+    }
+
+    public TerritoryGraph graph() {
+        return graph;
+    }
+
+    public FloodFill floodFill() {
+        return floodFill;
+    }
+
+    public int territoryCount() {
+        return graph.size();
+    }
+
+    public int indexOf(Long territoryId) {
+        return graph.indexOf(territoryId);
+    }
+
+    public long territoryId(int index) {
+        return graph.territoryId(index);
+    }
+
+    public Long playerTerritoryId(int index) {
+        return playerTerritoryIds[index];
+    }
+
+    public String territoryName(int index) {
+        return territoryNames[index];
+    }
+
+    public boolean areNeighbors(int index, int otherIndex) {
+        return graph.areNeighbors(index, otherIndex);
+    }
+
+    public int owner(int index) {
+        return owners[index];
+    }
+
+    public int troops(int index) {
+        return troops[index];
+    }
+
+    public boolean isSupplied(int index) {
+        return Bitboards.get(supplied, index);
+    }
+
+    public boolean isSupplyDepot(int index) {
+        return Bitboards.get(supplyDepots, index);
+    }
+
+    /**
+     * The supply depots as a bitboard. Owned by this instance; callers must not modify it.
+     */
+    public long[] supplyDepots() {
+        return supplyDepots;
+    }
+
+    /**
+     * The territories a player owns as a bitboard. For a player in the game this is owned by the
+     * instance and callers must not modify it; for any other number it is built from the owners.
+     */
+    public long[] territoriesOf(int playerNumber) {
+        int slot = slotOf(playerNumber);
+        if (playerNumber != UNOWNED && slot >= 0) {
+            return territoriesBySlot[slot];
+        }
+        long[] territories = Bitboards.create(owners.length);
+        for (int index = 0; index < owners.length; index++) {
+            if (owners[index] == playerNumber) {
+                Bitboards.set(territories, index);
+            }
+        }
+        return territories;
+    }
+
+    public void setOwner(int index, int playerNumber) {
+        int previousSlot = slotOf(owners[index]);
+        if (owners[index] != UNOWNED && previousSlot >= 0) {
+            Bitboards.clear(territoriesBySlot[previousSlot], index);
+        }
+        int slot = slotOf(playerNumber);
+        if (playerNumber != UNOWNED && slot >= 0) {
+            Bitboards.set(territoriesBySlot[slot], index);
+        }
+        owners[index] = playerNumber;
+        dirtyTerritories.set(index);
+        changed();
+    }
+
+    public void setSupplied(int index, boolean isSupplied) {
+        Bitboards.set(supplied, index, isSupplied);
+        dirtyTerritories.set(index);
+        changed();
+    }
+
+    public void moveTroops(int fromIndex, int toIndex, int numberOfTroops) {
+        troops[fromIndex] -= numberOfTroops;
+        troops[toIndex] += numberOfTroops;
+        dirtyTerritories.set(fromIndex);
+        dirtyTerritories.set(toIndex);
+        changed();
+    }
+
+    public int playerCount() {
+        return playerNumbers.length;
+    }
+
+    public int playerNumber(int slot) {
+        return playerNumbers[slot];
+    }
+
+    public String playerName(int slot) {
+        return playerNames[slot];
+    }
+
+    public Long playerId(int slot) {
+        return playerIds[slot];
+    }
+
+    public int remainingActions(int slot) {
+        return remainingActions[slot];
+    }
+
+    public int slotOf(int playerNumber) {
+        for (int slot = 0; slot < playerNumbers.length; slot++) {
+            if (playerNumbers[slot] == playerNumber) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    public int activePlayerNumber() {
+        int numberOfPlayers = playerNumbers.length;
+        if (numberOfPlayers == 0) {
+            return UNOWNED;
+        }
+        return turnNumber % numberOfPlayers == 0 ? numberOfPlayers : turnNumber % numberOfPlayers;
+    }
+
+    public boolean isActivePlayer(Integer playerNumber) {
+        return playerNumber != null && playerNumbers.length > 0 && activePlayerNumber() == playerNumber;
+    }
+
+    public int spendAction(int slot) {
+        int actionsLeft = remainingActions[slot] - 1;
+        if (actionsLeft == 0) {
+            remainingActions[slot] = ACTIONS_PER_TURN;
+            turnNumber++;
+            dirtyTurn = true;
+        } else {
+            remainingActions[slot] = actionsLeft;
+        }
+        dirtyPlayers.set(slot);
+        changed();
+        return actionsLeft;
+    }
+
+    public int troopsOwnedBy(int playerNumber) {
+        long[] territories = territoriesOf(playerNumber);
+        int total = 0;
+        for (int index = Bitboards.nextSetBit(territories, 0); index >= 0;
+             index = Bitboards.nextSetBit(territories, index + 1)) {
+            total += troops[index];
+        }
+        return total;
+    }
+
+    public int territoriesOwnedBy(int playerNumber) {
+        return Bitboards.count(territoriesOf(playerNumber));
+    }
+
+    public int supplyDepotsOwnedBy(int playerNumber) {
+        return Bitboards.countBoth(territoriesOf(playerNumber), supplyDepots);
+    }
+
+    public Long ownerPlayerId(int index) {
+        int slot = slotOf(owners[index]);
+        return owners[index] == UNOWNED || slot < 0 ? null : playerIds[slot];
+    }
+
+    /**
+     * Increases with every mutation; two reads that see the same version see the same state.
+     */
+    public long version() {
+        return version;
+    }
+
+    private void changed() {
+        version = VERSIONS.incrementAndGet();
+    }
+
+    public BitSet dirtyTerritories() {
+        return dirtyTerritories;
+    }
+
+    public BitSet dirtyPlayers() {
+        return dirtyPlayers;
+    }
+
+    public boolean isTurnDirty() {
+        return dirtyTurn;
+    }
+
+    public void clearDirty() {
+        dirtyTerritories.clear();
+        dirtyPlayers.clear();
+        dirtyTurn = false;
+    }
+}
@@ -0,0 +1,31 @@
+package org.cost.game;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Published once the changes made to an in-memory game have been handed to the write-behind
+ * queue. It carries the version the game reached, the turn, and every territory whose owner,
+ * troops or supply changed since the previous event, so listeners never need to re-read the game.
+ */
+@Getter
+@AllArgsConstructor
+public class GameStateChangedEvent {
+    private final String gameName;
+    private final long version;
+    private final int turnNumber;
+    private final int activePlayer;
+    private final int remainingActions;
+    private final List<TerritoryChange> territories;
+
+    @Getter
+    @AllArgsConstructor
+    public static class TerritoryChange {
+        private final long territoryId;
+        private final int playerNumber;
+        private final int troops;
+        private final boolean supplied;
+    }
+}
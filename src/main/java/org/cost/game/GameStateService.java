@@ -0,0 +1,165 @@
+package org.cost.game;
+
+import org.cost.player.Player;
+import org.cost.player.PlayerRepository;
+import org.cost.player.PlayerTerritory;
+import org.cost.player.PlayerTerritoryRepository;
+import org.cost.territory.MapTopologyRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Service
+public class GameStateService {
+
+    private final GameRepository gameRepository;
+    private final PlayerRepository playerRepository;
+    private final PlayerTerritoryRepository playerTerritoryRepository;
+    private final WriteBehindService writeBehindService;
+    private final MapTopologyRegistry mapTopologyRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConcurrentMap<String, GameState> activeGames = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GameStateService(GameRepository gameRepository, PlayerRepository playerRepository,
+                            PlayerTerritoryRepository playerTerritoryRepository, WriteBehindService writeBehindService,
+                            MapTopologyRegistry mapTopologyRegistry, ApplicationEventPublisher eventPublisher) {
+        this.gameRepository = gameRepository;
+        this.playerRepository = playerRepository;
+        this.playerTerritoryRepository = playerTerritoryRepository;
+        this.writeBehindService = writeBehindService;
+        this.mapTopologyRegistry = mapTopologyRegistry;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public GameState getGameState(String gameName) {
+        if (gameName == null) {
+            return null;
+        }
+        GameState gameState = activeGames.get(gameName);
+        if (gameState != null) {
+            return gameState;
+        }
+
+        gameState = load(gameName);
+        if (gameState == null || !gameState.isStarted()) {
+            return gameState;
+        }
+        GameState existing = activeGames.putIfAbsent(gameName, gameState);
+        return existing == null ? gameState : existing;
+    }
+
+    /**
+     * Returns the state only if the game is already held in memory, without touching the database.
+     */
+    public GameState getActiveGameState(String gameName) {
+        return gameName == null ? null : activeGames.get(gameName);
+    }
+
+    /**
+     * Writes the game's pending changes and only then drops it from memory, so a load that races
+     * the eviction is served the held state instead of rows the writes have not reached yet. Run
+     * it on the game's shard so no action changes the game after it has been written.
+     */
+    public void evict(String gameName) {
+        GameState gameState = activeGames.get(gameName);
+        if (gameState != null) {
+            persist(gameState);
+            writeBehindService.flush();
+            activeGames.remove(gameName, gameState);
+        }
+        eventPublisher.publishEvent(new GameUnloadedEvent(gameName));
+    }
+
+    /**
+     * Drops a deleted game from memory without writing it back.
+     */
+    public void deleted(String gameName) {
+        activeGames.remove(gameName);
+        eventPublisher.publishEvent(new GameUnloadedEvent(gameName));
+    }
+
+    public void persist(GameState gameState) {
+        GameStateChangedEvent event = null;
+        synchronized (gameState) {
+            BitSet dirtyTerritories = gameState.dirtyTerritories();
+            List<GameStateChangedEvent.TerritoryChange> territoryChanges = new ArrayList<>(dirtyTerritories.cardinality());
+            for (int index = dirtyTerritories.nextSetBit(0); index >= 0; index = dirtyTerritories.nextSetBit(index + 1)) {
+                Long playerTerritoryId = gameState.playerTerritoryId(index);
+                if (playerTerritoryId != null) {
+                    writeBehindService.updatePlayerTerritory(playerTerritoryId, gameState.troops(index),
+                            gameState.isSupplied(index), gameState.ownerPlayerId(index));
+                }
+                territoryChanges.add(territoryChange(gameState, index));
+            }
+            BitSet dirtyPlayers = gameState.dirtyPlayers();
+            for (int slot = dirtyPlayers.nextSetBit(0); slot >= 0; slot = dirtyPlayers.nextSetBit(slot + 1)) {
+                Long playerId = gameState.playerId(slot);
+                if (playerId != null) {
+                    writeBehindService.updatePlayer(playerId, gameState.remainingActions(slot));
+                }
+            }
+            if (gameState.isTurnDirty()) {
+                writeBehindService.updateGame(gameState.getGameName(), gameState.getTurnNumber());
+            }
+            if (!territoryChanges.isEmpty() || !dirtyPlayers.isEmpty() || gameState.isTurnDirty()) {
+                event = changedEvent(gameState, territoryChanges);
+            }
+            gameState.clearDirty();
+        }
+        if (event != null) {
+            eventPublisher.publishEvent(event);
+        }
+    }
+
+    /**
+     * Takes a game that has just been started into memory and announces its whole starting
+     * position. Pending supply writes from the start are flushed first so the load sees them.
+     */
+    public GameState started(String gameName) {
+        writeBehindService.flush();
+        activeGames.remove(gameName);
+        GameState gameState = getGameState(gameName);
+        if (gameState == null) {
+            return null;
+        }
+        GameStateChangedEvent event;
+        synchronized (gameState) {
+            List<GameStateChangedEvent.TerritoryChange> territories = new ArrayList<>(gameState.territoryCount());
+            for (int index = 0; index < gameState.territoryCount(); index++) {
+                territories.add(territoryChange(gameState, index));
+            }
+            event = changedEvent(gameState, territories);
+        }
+        eventPublisher.publishEvent(event);
+        return gameState;
+    }
+
+    private static GameStateChangedEvent.TerritoryChange territoryChange(GameState gameState, int index) {
+        return new GameStateChangedEvent.TerritoryChange(gameState.territoryId(index),
+                gameState.owner(index), gameState.troops(index), gameState.isSupplied(index));
+    }
+
+    private static GameStateChangedEvent changedEvent(GameState gameState, List<GameStateChangedEvent.TerritoryChange> territories) {
+        int activePlayer = gameState.activePlayerNumber();
+        int activeSlot = gameState.slotOf(activePlayer);
+        return new GameStateChangedEvent(gameState.getGameName(), gameState.version(), gameState.getTurnNumber(),
+                activePlayer, activeSlot < 0 ? 0 : gameState.remainingActions(activeSlot), territories);
+    }
+
+    private GameState load(String gameName) {
+        Game game = gameRepository.findOne(gameName);
+        if (game == null || game.isDeleted()) {
+            return null;
+        }
+        List<Player> players = playerRepository.findPlayersByGameName(gameName);
+        List<PlayerTerritory> playerTerritories = playerTerritoryRepository.findByGameName(gameName);
+        return GameState.of(game, players, playerTerritories, mapTopologyRegistry.getTopology().graph());
+    }
+}
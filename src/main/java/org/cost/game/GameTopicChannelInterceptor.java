@@ -0,0 +1,67 @@
+package org.cost.game;
+
+import org.cost.player.PlayerController;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.SessionRepository;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Authenticates STOMP clients against the HTTP session named by the x-auth-token CONNECT header,
+ * and only lets them subscribe to the topic of the game that session belongs to. The simple broker
+ * matches subscriptions as Ant patterns, so a destination with wildcards is refused outright.
+ */
+public class GameTopicChannelInterceptor extends ChannelInterceptorAdapter {
+
+    public static final String AUTH_TOKEN_HEADER = "x-auth-token";
+    private static final String HTTP_SESSION_ID_ATTRIBUTE = "httpSessionId";
+    private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final SessionRepository<? extends ExpiringSession> sessionRepository;
+
+    public GameTopicChannelInterceptor(SessionRepository<? extends ExpiringSession> sessionRepository) {
+        this.sessionRepository = sessionRepository;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        switch (accessor.getCommand()) {
+            case CONNECT:
+                ExpiringSession session = httpSession(message, accessor.getFirstNativeHeader(AUTH_TOKEN_HEADER));
+                accessor.getSessionAttributes().put(HTTP_SESSION_ID_ATTRIBUTE, session.getId());
+                break;
+            case SUBSCRIBE:
+                String gameName = httpSession(message, (String) accessor.getSessionAttributes().get(HTTP_SESSION_ID_ATTRIBUTE))
+                        .getAttribute(PlayerController.SESSION_GAME_NAME_FIELD);
+                String destination = accessor.getDestination();
+                if (gameName == null || destination == null || PATH_MATCHER.isPattern(destination)
+                        || !GameEventBroadcaster.topic(gameName).equals(destination)) {
+                    throw new MessageDeliveryException(message, "Only the topic of your own game can be subscribed to");
+                }
+                break;
+            case SEND:
+                throw new MessageDeliveryException(message, "Game events are only pushed by the server");
+            default:
+                break;
+        }
+        return message;
+    }
+
+    private ExpiringSession httpSession(Message<?> message, String sessionId) {
+        ExpiringSession session = sessionId == null ? null : sessionRepository.getSession(sessionId);
+        if (session == null) {
+            throw new MessageDeliveryException(message, "No session for " + AUTH_TOKEN_HEADER);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,14 @@
+package org.cost.game;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a game leaves memory because it was deleted or archived. Nothing more is
+ * published for it unless it is loaded again, so listeners can let go of whatever they keep for it.
+ */
+@Getter
+@AllArgsConstructor
+public class GameUnloadedEvent {
+    private final String gameName;
+}
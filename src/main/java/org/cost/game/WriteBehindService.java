@@ -0,0 +1,155 @@
+package org.cost.game;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects dirty Player_territory, Player and Game rows and writes them in JDBC batches off the
+ * request thread. Repeated updates to the same row between flushes are coalesced into the latest
+ * value, and flushes are serialized so an older value can never overwrite a newer one.
+ */
+@Service
+public class WriteBehindService {
+
+    static final String UPDATE_PLAYER_TERRITORY =
+            "UPDATE Player_territory SET troops = ?, supplied = ?, player_id = ? WHERE id = ?";
+    static final String UPDATE_PLAYER = "UPDATE Player SET remaining_actions = ? WHERE player_id = ?";
+    static final String UPDATE_GAME = "UPDATE Game SET turn_number = ?, version = version + 1 WHERE game_name = ?";
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long flushIntervalMillis;
+    private final ConcurrentMap<Long, PlayerTerritoryRow> playerTerritoryRows = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, PlayerRow> playerRows = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, GameRow> gameRows = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public WriteBehindService(JdbcTemplate jdbcTemplate,
+                              @Value("${supplyraid.write-behind.flush-interval-ms:200}") long flushIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(flushIntervalMillis * 10, TimeUnit.MILLISECONDS);
+        }
+        flush();
+    }
+
+    public void updatePlayerTerritory(long id, int troops, boolean supplied, Long playerId) {
+        playerTerritoryRows.put(id, new PlayerTerritoryRow(id, troops, supplied, playerId));
+    }
+
+    public void updatePlayer(long playerId, int remainingActions) {
+        playerRows.put(playerId, new PlayerRow(playerId, remainingActions));
+    }
+
+    public void updateGame(String gameName, int turnNumber) {
+        gameRows.put(gameName, new GameRow(gameName, turnNumber));
+    }
+
+    public int pendingCount() {
+        return playerTerritoryRows.size() + playerRows.size() + gameRows.size();
+    }
+
+    public synchronized void flush() {
+        List<PlayerTerritoryRow> playerTerritories = drain(playerTerritoryRows);
+        List<PlayerRow> players = drain(playerRows);
+        List<GameRow> games = drain(gameRows);
+        try {
+            batchUpdate(UPDATE_PLAYER_TERRITORY, playerTerritories, row -> new Object[]{
+                    row.getTroops(), row.isSupplied() ? 1 : 0, row.getPlayerId(), row.getId()});
+            batchUpdate(UPDATE_PLAYER, players, row -> new Object[]{row.getRemainingActions(), row.getPlayerId()});
+            batchUpdate(UPDATE_GAME, games, row -> new Object[]{row.getTurnNumber(), row.getGameName()});
+        } catch (RuntimeException e) {
+            playerTerritories.forEach(row -> playerTerritoryRows.putIfAbsent(row.getId(), row));
+            players.forEach(row -> playerRows.putIfAbsent(row.getPlayerId(), row));
+            games.forEach(row -> gameRows.putIfAbsent(row.getGameName(), row));
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Write-behind flush failed, {} rows will be retried", pendingCount(), e);
+        }
+    }
+
+    private static <K, V> List<V> drain(Map<K, V> rows) {
+        List<V> drained = new ArrayList<>(rows.size());
+        for (K key : rows.keySet()) {
+            V row = rows.remove(key);
+            if (row != null) {
+                drained.add(row);
+            }
+        }
+        return drained;
+    }
+
+    private <T> void batchUpdate(String sql, List<T> rows, Function<T, Object[]> toArguments) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArguments = new ArrayList<>(rows.size());
+        rows.forEach(row -> batchArguments.add(toArguments.apply(row)));
+        jdbcTemplate.batchUpdate(sql, batchArguments);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class PlayerTerritoryRow {
+        private final long id;
+        private final int troops;
+        private final boolean supplied;
+        private final Long playerId;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class PlayerRow {
+        private final long playerId;
+        private final int remainingActions;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class GameRow {
+        private final String gameName;
+        private final int turnNumber;
+    }
+}
@@ -0,0 +1,19 @@
+package org.cost.metrics;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+
+/**
+ * Counts the entities Hibernate hydrates in {@link SqlCounters}. Registered by class name through
+ * hibernate.ejb.interceptor, so Hibernate creates it rather than Spring.
+ */
+public class EntityLoadCounter extends EmptyInterceptor {
+
+    @Override
+    public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        SqlCounters.current().entityLoaded();
+        return false;
+    }
+}
@@ -0,0 +1,153 @@
+package org.cost.metrics;
+
+import org.cost.game.BoardPool;
+import org.cost.game.GameShards;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves the request metrics in the Prometheus text format. The rate is per second since the
+ * previous scrape, so it is only meaningful with a single scraper; Prometheus itself should use
+ * rate() over the _count series.
+ */
+@RestController
+public class MetricsController {
+
+    static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final RequestMetrics requestMetrics;
+    private final GameShards gameShards;
+    private final BoardPool boardPool;
+
+    @Autowired
+    public MetricsController(RequestMetrics requestMetrics, GameShards gameShards, BoardPool boardPool) {
+        this.requestMetrics = requestMetrics;
+        this.gameShards = gameShards;
+        this.boardPool = boardPool;
+    }
+
+    @RequestMapping(path = "/metrics", method = RequestMethod.GET, produces = PROMETHEUS_TEXT)
+    public String getMetrics() {
+        Map<String, RequestMetrics.HandlerMetrics> handlers = requestMetrics.handlers();
+        StringBuilder text = new StringBuilder(256 + handlers.size() * 768);
+
+        text.append("# HELP supplyraid_http_request_duration_seconds Time spent in each handler method.\n")
+                .append("# TYPE supplyraid_http_request_duration_seconds summary\n");
+        StringBuilder max = new StringBuilder()
+                .append("# HELP supplyraid_http_request_duration_seconds_max Slowest request per handler method.\n")
+                .append("# TYPE supplyraid_http_request_duration_seconds_max gauge\n");
+        StringBuilder rate = new StringBuilder()
+                .append("# HELP supplyraid_http_requests_per_second Requests per second since the previous scrape.\n")
+                .append("# TYPE supplyraid_http_requests_per_second gauge\n");
+        StringBuilder statuses = new StringBuilder()
+                .append("# HELP supplyraid_http_responses_total Responses with a 403, 404 or 409 status.\n")
+                .append("# TYPE supplyraid_http_responses_total counter\n");
+        StringBuilder sql = new StringBuilder()
+                .append("# HELP supplyraid_sql_statements_total SQL statements executed by each handler method.\n")
+                .append("# TYPE supplyraid_sql_statements_total counter\n");
+        StringBuilder rows = new StringBuilder()
+                .append("# HELP supplyraid_sql_rows_total Result set rows read by each handler method.\n")
+                .append("# TYPE supplyraid_sql_rows_total counter\n");
+        StringBuilder entities = new StringBuilder()
+                .append("# HELP supplyraid_entities_loaded_total Entities hydrated by each handler method.\n")
+                .append("# TYPE supplyraid_entities_loaded_total counter\n");
+
+        handlers.forEach((name, metrics) -> {
+            LatencyHistogram.Snapshot latency = metrics.latency();
+            String handler = "handler=\"" + name + "\"";
+            for (double quantile : QUANTILES) {
+                sample(text, "supplyraid_http_request_duration_seconds", handler + ",quantile=\"" + quantile + "\"",
+                        seconds(latency.quantileMicros(quantile)));
+            }
+            sample(text, "supplyraid_http_request_duration_seconds_sum", handler, seconds(latency.totalMicros()));
+            text.append("supplyraid_http_request_duration_seconds_count{").append(handler).append("} ")
+                    .append(latency.count()).append('\n');
+            sample(max, "supplyraid_http_request_duration_seconds_max", handler, seconds(latency.maxMicros()));
+            sample(rate, "supplyraid_http_requests_per_second", handler, metrics.ratePerSecond(latency.count()));
+            for (int status : RequestMetrics.COUNTED_STATUSES) {
+                statuses.append("supplyraid_http_responses_total{").append(handler).append(",status=\"").append(status)
+                        .append("\"} ").append(metrics.statusCount(status)).append('\n');
+            }
+            counter(sql, "supplyraid_sql_statements_total", handler, metrics.sqlStatements());
+            counter(rows, "supplyraid_sql_rows_total", handler, metrics.sqlRows());
+            counter(entities, "supplyraid_entities_loaded_total", handler, metrics.entitiesLoaded());
+        });
+
+        text.append(max).append(rate).append(statuses).append(sql).append(rows).append(entities);
+        appendShards(text);
+        appendBoardPool(text);
+        return text.toString();
+    }
+
+    private void appendBoardPool(StringBuilder text) {
+        long hits = boardPool.hits();
+        long misses = boardPool.misses();
+        text.append("# HELP supplyraid_board_pool_size Pre-built boards ready to be claimed by a new game.\n")
+                .append("# TYPE supplyraid_board_pool_size gauge\n")
+                .append("supplyraid_board_pool_size ").append(boardPool.size()).append('\n')
+                .append("# HELP supplyraid_board_pool_claims_total New games by whether a pooled board was ready.\n")
+                .append("# TYPE supplyraid_board_pool_claims_total counter\n");
+        counter(text, "supplyraid_board_pool_claims_total", "result=\"hit\"", hits);
+        counter(text, "supplyraid_board_pool_claims_total", "result=\"miss\"", misses);
+        text.append("# HELP supplyraid_board_pool_hit_ratio Share of new games that got a pooled board.\n")
+                .append("# TYPE supplyraid_board_pool_hit_ratio gauge\n");
+        text.append("supplyraid_board_pool_hit_ratio ")
+                .append(String.format(Locale.ROOT, "%.6f", hits + misses == 0 ? 0 : (double) hits / (hits + misses)))
+                .append('\n');
+    }
+
+    private void appendShards(StringBuilder text) {
+        StringBuilder wait = new StringBuilder()
+                .append("# HELP supplyraid_shard_wait_seconds Time actions waited for their game shard.\n")
+                .append("# TYPE supplyraid_shard_wait_seconds summary\n");
+        StringBuilder depth = new StringBuilder()
+                .append("# HELP supplyraid_shard_queue_depth Actions queued on each game shard.\n")
+                .append("# TYPE supplyraid_shard_queue_depth gauge\n");
+        StringBuilder rejected = new StringBuilder()
+                .append("# HELP supplyraid_shard_rejected_total Actions refused because the shard's queue was full.\n")
+                .append("# TYPE supplyraid_shard_rejected_total counter\n");
+
+        for (int index = 0; index < gameShards.shardCount(); index++) {
+            GameShards.Shard shard = gameShards.shard(index);
+            LatencyHistogram.Snapshot waitTime = shard.waitTime();
+            String label = "shard=\"" + index + "\"";
+            for (double quantile : QUANTILES) {
+                sample(wait, "supplyraid_shard_wait_seconds", label + ",quantile=\"" + quantile + "\"",
+                        seconds(waitTime.quantileMicros(quantile)));
+            }
+            sample(wait, "supplyraid_shard_wait_seconds_sum", label, seconds(waitTime.totalMicros()));
+            counter(wait, "supplyraid_shard_wait_seconds_count", label, waitTime.count());
+            gauge(depth, "supplyraid_shard_queue_depth", label, shard.queueDepth());
+            counter(rejected, "supplyraid_shard_rejected_total", label, shard.rejected());
+        }
+
+        text.append(wait).append(depth).append(rejected);
+    }
+
+    private static void counter(StringBuilder text, String name, String labels, long value) {
+        integer(text, name, labels, value);
+    }
+
+    private static void gauge(StringBuilder text, String name, String labels, long value) {
+        integer(text, name, labels, value);
+    }
+
+    private static void integer(StringBuilder text, String name, String labels, long value) {
+        text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name).append('{').append(labels).append("} ")
+                .append(String.format(Locale.ROOT, "%.6f", value)).append('\n');
+    }
+
+    private static double seconds(long micros) {
+        return micros / 1e6;
+    }
+}
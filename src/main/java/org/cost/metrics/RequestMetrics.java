@@ -0,0 +1,176 @@
+package org.cost.metrics;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times every request per handler method, counts the 403, 404 and 409 responses and sums the
+ * SQL work in {@link SqlCounters}. The start time lives in a per-thread slot rather than a
+ * request attribute, so once a handler has been seen recording a synchronous request allocates
+ * nothing. An async request keeps its start time and SQL counts in a request attribute between
+ * its dispatches, so it is timed from its first dispatch to the end of the last and recorded once.
+ */
+@Component
+public class RequestMetrics extends HandlerInterceptorAdapter {
+
+    static final int[] COUNTED_STATUSES = {403, 404, 409};
+    static final String ASYNC_REQUEST_ATTRIBUTE = RequestMetrics.class.getName() + ".ASYNC_REQUEST";
+
+    private final ConcurrentMap<Method, HandlerMetrics> handlers = new ConcurrentHashMap<>();
+    private final ThreadLocal<long[]> startNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlCounters sqlCounters = SqlCounters.current();
+        sqlCounters.reset();
+        AsyncRequest asyncRequest = (AsyncRequest) request.getAttribute(ASYNC_REQUEST_ATTRIBUTE);
+        if (asyncRequest != null && asyncRequest.handlingStarted) {
+            startNanos.get()[0] = asyncRequest.startNanos;
+            synchronized (asyncRequest.sqlCounters) {
+                sqlCounters.add(asyncRequest.sqlCounters);
+            }
+        } else {
+            startNanos.get()[0] = System.nanoTime();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        AsyncRequest asyncRequest = asyncRequest(request);
+        asyncRequest.startNanos = startNanos.get()[0];
+        asyncRequest.handlingStarted = true;
+        synchronized (asyncRequest.sqlCounters) {
+            asyncRequest.sqlCounters.add(SqlCounters.current());
+        }
+    }
+
+    /**
+     * The counters that SQL run for this request on another thread is added to, so it is recorded
+     * with the request when it is dispatched again. Call it on the request's thread before
+     * handing the work off, and add to the counters under their monitor.
+     */
+    public static SqlCounters asyncSqlCounters(HttpServletRequest request) {
+        return asyncRequest(request).sqlCounters;
+    }
+
+    private static AsyncRequest asyncRequest(HttpServletRequest request) {
+        AsyncRequest asyncRequest = (AsyncRequest) request.getAttribute(ASYNC_REQUEST_ATTRIBUTE);
+        if (asyncRequest == null) {
+            asyncRequest = new AsyncRequest();
+            request.setAttribute(ASYNC_REQUEST_ATTRIBUTE, asyncRequest);
+        }
+        return asyncRequest;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(handler instanceof HandlerMethod)) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos.get()[0];
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        HandlerMetrics metrics = handlers.get(handlerMethod.getMethod());
+        if (metrics == null) {
+            metrics = handlers.computeIfAbsent(handlerMethod.getMethod(),
+                    method -> new HandlerMetrics(handlerMethod.getBeanType().getSimpleName() + "." + method.getName()));
+        }
+        metrics.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos), response.getStatus(), SqlCounters.current());
+    }
+
+    /**
+     * The metrics of every handler that has served a request, ordered by handler name.
+     */
+    public Map<String, HandlerMetrics> handlers() {
+        Map<String, HandlerMetrics> byName = new TreeMap<>();
+        handlers.values().forEach(metrics -> byName.put(metrics.getName(), metrics));
+        return byName;
+    }
+
+    private static class AsyncRequest {
+        private final SqlCounters sqlCounters = SqlCounters.detached();
+        private volatile long startNanos;
+        private volatile boolean handlingStarted;
+    }
+
+    public static class HandlerMetrics {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLongArray statusCounts = new AtomicLongArray(COUNTED_STATUSES.length);
+        private final AtomicLong sqlStatements = new AtomicLong();
+        private final AtomicLong sqlRows = new AtomicLong();
+        private final AtomicLong entitiesLoaded = new AtomicLong();
+
+        private long lastReadCount;
+        private long lastReadNanos = System.nanoTime();
+
+        HandlerMetrics(String name) {
+            this.name = name;
+        }
+
+        void record(long micros, int status, SqlCounters sqlCounters) {
+            latency.record(micros);
+            sqlStatements.addAndGet(sqlCounters.statements());
+            sqlRows.addAndGet(sqlCounters.rows());
+            entitiesLoaded.addAndGet(sqlCounters.entities());
+            for (int index = 0; index < COUNTED_STATUSES.length; index++) {
+                if (COUNTED_STATUSES[index] == status) {
+                    statusCounts.incrementAndGet(index);
+                }
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LatencyHistogram.Snapshot latency() {
+            return latency.snapshot();
+        }
+
+        public long statusCount(int status) {
+            for (int index = 0; index < COUNTED_STATUSES.length; index++) {
+                if (COUNTED_STATUSES[index] == status) {
+                    return statusCounts.get(index);
+                }
+            }
+            return 0;
+        }
+
+        public long sqlStatements() {
+            return sqlStatements.get();
+        }
+
+        public long sqlRows() {
+            return sqlRows.get();
+        }
+
+        public long entitiesLoaded() {
+            return entitiesLoaded.get();
+        }
+
+        /**
+         * Requests per second since the previous call, or since the handler was first seen.
+         */
+        public synchronized double ratePerSecond(long count) {
+            long now = System.nanoTime();
+            double seconds = (now - lastReadNanos) / 1e9;
+            double rate = seconds <= 0 ? 0 : (count - lastReadCount) / seconds;
+            lastReadCount = count;
+            lastReadNanos = now;
+            return rate;
+        }
+    }
+}
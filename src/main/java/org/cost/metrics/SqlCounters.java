@@ -0,0 +1,67 @@
+package org.cost.metrics;
+
+/**
+ * The SQL statements executed, rows read and entities loaded on the current thread since the
+ * last {@link #reset()}. RequestMetrics resets it as each request reaches its handler, so while
+ * a request is served it holds that request's database work. Work a request hands to another
+ * thread is added to the request's counts with {@link #add}.
+ */
+public final class SqlCounters {
+
+    private static final ThreadLocal<SqlCounters> CURRENT = ThreadLocal.withInitial(SqlCounters::new);
+
+    private long statements;
+    private long rows;
+    private long entities;
+
+    private SqlCounters() {
+    }
+
+    public static SqlCounters current() {
+        return CURRENT.get();
+    }
+
+    static SqlCounters detached() {
+        return new SqlCounters();
+    }
+
+    public void reset() {
+        statements = 0;
+        rows = 0;
+        entities = 0;
+    }
+
+    /**
+     * Adds the other counters to these. Counters shared between threads are only read and added
+     * to under their own monitor.
+     */
+    public void add(SqlCounters other) {
+        statements += other.statements;
+        rows += other.rows;
+        entities += other.entities;
+    }
+
+    public long statements() {
+        return statements;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public long entities() {
+        return entities;
+    }
+
+    void statementExecuted() {
+        statements++;
+    }
+
+    void rowRead() {
+        rows++;
+    }
+
+    void entityLoaded() {
+        entities++;
+    }
+}
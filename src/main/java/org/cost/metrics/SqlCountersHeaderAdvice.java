@@ -0,0 +1,49 @@
+package org.cost.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * When supplyraid.debug.sql-headers is set, adds the request's SQL statement, row and entity
+ * counts to each response as it is written, so the cost of a call shows up in the browser's
+ * network tab.
+ */
+@ControllerAdvice
+public class SqlCountersHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String STATEMENTS_HEADER = "X-SQL-Statements";
+    public static final String ROWS_HEADER = "X-SQL-Rows";
+    public static final String ENTITIES_HEADER = "X-SQL-Entities";
+
+    private final boolean enabled;
+
+    @Autowired
+    public SqlCountersHeaderAdvice(@Value("${supplyraid.debug.sql-headers:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return enabled;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SqlCounters counters = SqlCounters.current();
+        HttpHeaders headers = response.getHeaders();
+        headers.set(STATEMENTS_HEADER, Long.toString(counters.statements()));
+        headers.set(ROWS_HEADER, Long.toString(counters.rows()));
+        headers.set(ENTITIES_HEADER, Long.toString(counters.entities()));
+        return body;
+    }
+}
@@ -0,0 +1,76 @@
+package org.cost.metrics;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Wraps the application's DataSource so every statement executed and every row read through it
+ * is counted in {@link SqlCounters}. A batch counts as one statement, since it is one round trip.
+ */
+@Component
+public class SqlCountingDataSource implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource && !Proxy.isProxyClass(bean.getClass()) ? wrap((DataSource) bean) : bean;
+    }
+
+    public static DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource);
+    }
+
+    private static <T> T proxy(Class<T> type, Object target) {
+        return type.cast(Proxy.newProxyInstance(SqlCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, new Counting(target)));
+    }
+
+    private static final class Counting implements InvocationHandler {
+        private final Object target;
+
+        Counting(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+
+            String name = method.getName();
+            if ("unwrap".equals(name) || "isWrapperFor".equals(name)) {
+                return result;
+            }
+            if (target instanceof ResultSet) {
+                if ("next".equals(name) && Boolean.TRUE.equals(result)) {
+                    SqlCounters.current().rowRead();
+                }
+                return result;
+            }
+            if (target instanceof Statement && name.startsWith("execute")) {
+                SqlCounters.current().statementExecuted();
+            }
+            if (result instanceof Connection || result instanceof Statement || result instanceof ResultSet) {
+                return proxy(method.getReturnType(), result);
+            }
+            return result;
+        }
+    }
+}
@@ -5,8 +5,8 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import org.cost.Exceptions;
+import org.cost.LinkFactory;
 import org.cost.game.GameRepository;
-import org.cost.territory.TerritoryController;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.http.HttpStatus;
@@ -18,9 +18,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
-
 @RestController
 public class PlayerController {
 
@@ -31,13 +28,15 @@ public class PlayerController {
     private PlayerNumberService playerNumberService;
     private GameRepository gameRepository;
     private PlayerService playerService;
+    private LinkFactory linkFactory;
 
     @Autowired
-    public PlayerController(PlayerRepository playerRepository, PlayerNumberService playerNumberService, GameRepository gameRepository, PlayerService playerService) {
+    public PlayerController(PlayerRepository playerRepository, PlayerNumberService playerNumberService, GameRepository gameRepository, PlayerService playerService, LinkFactory linkFactory) {
         this.playerRepository = playerRepository;
         this.playerNumberService = playerNumberService;
         this.gameRepository = gameRepository;
         this.playerService = playerService;
+        this.linkFactory = linkFactory;
     }
 
     @RequestMapping(path = "/players", method = RequestMethod.POST)
@@ -63,11 +62,7 @@ public class PlayerController {
                                     .troops(territory.getTroops())
                                     .territoryId(territory.getTerritoryId())
                                     .build();
-                            territoryResponse
-                                    .add(
-                                            linkTo(
-                                                    methodOn(TerritoryController.class).getTerritory(territory.getTerritoryId(), session))
-                                                    .withSelfRel());
+                            territoryResponse.add(linkFactory.territory(territory.getTerritoryId()));
                             territoryResponseList.add(territoryResponse);
                         });
             }
@@ -101,11 +96,7 @@ public class PlayerController {
                                     .supplyDepots((int) p.getPlayerTerritoriesList()
                                             .stream().filter(pt -> pt.isSupplyDepotTerritory()).count())
                             .build();
-                    playerResponse
-                            .add(
-                                    linkTo(
-                                            methodOn(PlayerController.class).getPlayer(p.getPlayerNumber(), session))
-                                    .withSelfRel());
+                    playerResponse.add(linkFactory.player(p.getPlayerNumber()));
                     allPlayersPlayerResponses.add(playerResponse);
                         }
                 );
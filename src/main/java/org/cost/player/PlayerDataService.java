@@ -1,13 +1,25 @@
 package org.cost.player;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
 import java.util.List;
 
+@Service
 public class PlayerDataService {
+
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    public PlayerDataService(PlayerRepository playerRepository) {
+        this.playerRepository = playerRepository;
+    }
+
     public List<Player> findPlayersInGameByGameName(String gameName) {
-        return null;
+        return playerRepository.findPlayersByGameName(gameName);
     }
 
     public void savePlayer(Player player) {
-
+        playerRepository.save(player);
     }
 }
@@ -5,10 +5,12 @@ import org.cost.SessionFields;
 import org.cost.game.Game;
 import org.cost.game.GameDataService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpSession;
 import java.util.List;
 
+@Service
 public class PlayerService {
     private static final int MAX_PLAYERS_ALLOWED_IN_GAME = 4;
     private final PlayerDataService playerDataService;
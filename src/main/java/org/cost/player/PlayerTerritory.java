@@ -28,11 +28,11 @@ public class PlayerTerritory {
     @Type(type = "org.hibernate.type.NumericBooleanType")
     private boolean supplied;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "playerId", insertable = false, updatable = false)
     Player player;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "territoryId", insertable = false, updatable = false)
     Territory territory;
 
@@ -1,17 +1,38 @@
 package org.cost.player;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
 import java.util.ArrayList;
 import java.util.List;
 
+@Service
 public class PlayerTerritoryDataService {
+
+    private PlayerTerritoryRepository playerTerritoryRepository;
+
+    @Autowired
+    public PlayerTerritoryDataService(PlayerTerritoryRepository playerTerritoryRepository) {
+        this.playerTerritoryRepository = playerTerritoryRepository;
+    }
+
     public List<PlayerTerritory> getTerritoriesInGame(String gamename) {
-        return null;
+        return playerTerritoryRepository.findByGameName(gamename);
     }
 
     public void saveTerritory(ArrayList<PlayerTerritory> savedPlayerTerritories) {
+        playerTerritoryRepository.save(savedPlayerTerritories);
     }
 
     public List<PlayerTerritory> findByGameName(String gameName) {
-        return null;
+        return playerTerritoryRepository.findByGameName(gameName);
+    }
+
+    /**
+     * Creates an unowned territory in the game for every territory on the map and returns how
+     * many were created.
+     */
+    public int createPlayerTerritories(String gameName) {
+        return playerTerritoryRepository.createForGame(gameName);
     }
 }
@@ -0,0 +1,14 @@
+package org.cost.player;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PlayerTerritoryDetail {
+    private Long territoryId;
+    private int troops;
+    private Integer ownerPlayerNumber;
+    private String ownerName;
+    private long playersInGame;
+}
@@ -1,7 +1,10 @@
 package org.cost.player;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -9,4 +12,33 @@ public interface PlayerTerritoryRepository extends JpaRepository<PlayerTerritory
     PlayerTerritory findPlayerTerritoryByTerritoryIdAndGameName(Long territoryId, String gameName);
 
     List<PlayerTerritory> findByGameName(String gameName);
+
+    @Query("SELECT new org.cost.player.PlayerTerritoryDetail(pt.territoryId, pt.troops, owner.playerNumber, owner.name, " +
+            "(SELECT COUNT(player) FROM Player player WHERE player.gameName = pt.gameName)) " +
+            "FROM PlayerTerritory pt LEFT JOIN pt.player owner " +
+            "WHERE pt.gameName = :gameName AND pt.territoryId = :territoryId")
+    PlayerTerritoryDetail findTerritoryDetail(@Param("gameName") String gameName, @Param("territoryId") Long territoryId);
+
+    /**
+     * Creates the game's row for every territory on the map in one INSERT ... SELECT, so a new
+     * game costs the same single statement however large the map is.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO Player_territory (territory_id, game_name, territory_name) " +
+            "SELECT territory_id, :gameName, name FROM Territory", nativeQuery = true)
+    int createForGame(@Param("gameName") String gameName);
+
+    /**
+     * Moves every row of one game to another, whose Game row must already exist.
+     */
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE PlayerTerritory pt SET pt.gameName = :gameName WHERE pt.gameName = :fromGameName")
+    int moveToGame(@Param("fromGameName") String fromGameName, @Param("gameName") String gameName);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE PlayerTerritory pt SET pt.supplied = false WHERE pt.gameName = :gameName AND pt.supplied = true")
+    int markUnsuppliedByGameName(@Param("gameName") String gameName);
 }
@@ -1,100 +1,142 @@
 package org.cost.player;
 
-import lombok.EqualsAndHashCode;
-import lombok.Getter;
-import lombok.Setter;
+import org.cost.game.GameState;
+import org.cost.game.WriteBehindService;
+import org.cost.territory.Bitboards;
+import org.cost.territory.FloodFill;
+import org.cost.territory.MapTopologyRegistry;
+import org.cost.territory.TerritoryGraph;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 public class SuppliedStatusService {
 
     private PlayerRepository playerRepository;
     private PlayerTerritoryRepository playerTerritoryRepository;
+    private WriteBehindService writeBehindService;
+    private MapTopologyRegistry mapTopologyRegistry;
+    private final ThreadLocal<FloodFill> floodFills =
+            ThreadLocal.withInitial(() -> new FloodFill(mapTopologyRegistry.getTopology().graph()));
 
     @Autowired
-    public SuppliedStatusService(PlayerRepository playerRepository, PlayerTerritoryRepository playerTerritoryRepository) {
+    public SuppliedStatusService(PlayerRepository playerRepository, PlayerTerritoryRepository playerTerritoryRepository,
+                                 WriteBehindService writeBehindService, MapTopologyRegistry mapTopologyRegistry) {
 
         this.playerRepository = playerRepository;
         this.playerTerritoryRepository = playerTerritoryRepository;
+        this.writeBehindService = writeBehindService;
+        this.mapTopologyRegistry = mapTopologyRegistry;
     }
 
-    public void markUnsupplied() {
-        List<Player> players = playerRepository.findAll();
-
-        players
-                .forEach(player -> player.getPlayerTerritoriesList()
-                        .forEach(playerTerritory -> playerTerritory.setSupplied(false)));
-
-        playerRepository.save(players);
+    public void markUnsupplied(String gameName) {
+        playerTerritoryRepository.markUnsuppliedByGameName(gameName);
     }
 
+    /**
+     * Marks every territory joined to one of its owner's supply depots through that owner's
+     * territories as supplied, queueing a write for each that was not. Adjacency comes from the
+     * map topology and ownership from the playerId column, so neither lazy association is loaded.
+     */
     public void markSupplied(List<PlayerTerritory> supplyDepots, List<PlayerTerritory> allPlayerTerritories) {
-        HashMap<Long, MappedTerritory> nodes = new HashMap<>();
-
-        allPlayerTerritories
-                .forEach(pt -> {
-                    MappedTerritory mappedTerritory = new MappedTerritory();
-                    mappedTerritory.setPlayerTerritory(pt);
-                    nodes.put(pt.getTerritoryId(), mappedTerritory);
-                });
-
-        allPlayerTerritories
-                .forEach(pt -> {
-                    MappedTerritory mappedTerritory = nodes.get(pt.getTerritoryId());
-                    Arrays.asList(
-                            pt.getTerritory().getEast(),
-                            pt.getTerritory().getWest(),
-                            pt.getTerritory().getNorth(),
-                            pt.getTerritory().getSouth())
-                            .stream()
-                            .filter(id -> id != null)
-                            .forEach(
-                                    each -> mappedTerritory.getNeighboringTerritories().add(nodes.get(each)));
-
-                });
-
-
-        List<MappedTerritory> mappedSupplyDepots = supplyDepots
-                .stream()
-                .map(sd -> nodes.get(sd.getTerritoryId()))
-                .collect(Collectors.toList());
-
-        markAllNeighbors(mappedSupplyDepots);
-
-        playerTerritoryRepository.save(allPlayerTerritories);
+        TerritoryGraph graph = mapTopologyRegistry.getTopology().graph();
+        PlayerTerritory[] territoriesByIndex = new PlayerTerritory[graph.size()];
+        Map<Long, long[]> territoriesByOwner = new HashMap<>();
+        for (PlayerTerritory playerTerritory : allPlayerTerritories) {
+            int index = graph.indexOf(playerTerritory.getTerritoryId());
+            if (index == TerritoryGraph.NO_NEIGHBOR) {
+                continue;
+            }
+            territoriesByIndex[index] = playerTerritory;
+            if (playerTerritory.getPlayerId() != null) {
+                Bitboards.set(territoriesByOwner.computeIfAbsent(playerTerritory.getPlayerId(),
+                        playerId -> Bitboards.create(graph.size())), index);
+            }
+        }
+
+        long[] depots = Bitboards.create(graph.size());
+        for (PlayerTerritory supplyDepot : supplyDepots) {
+            int index = graph.indexOf(supplyDepot.getTerritoryId());
+            if (index != TerritoryGraph.NO_NEIGHBOR) {
+                Bitboards.set(depots, index);
+            }
+        }
+
+        FloodFill floodFill = floodFills.get();
+        long[] reached = depots.clone();
+        long[] seeds = Bitboards.create(graph.size());
+        territoriesByOwner.forEach((owner, territories) -> {
+            for (int word = 0; word < seeds.length; word++) {
+                seeds[word] = depots[word] & territories[word];
+            }
+            long[] supplied = floodFill.fill(seeds, territories);
+            for (int word = 0; word < reached.length; word++) {
+                reached[word] |= supplied[word];
+            }
+        });
+
+        for (int index = Bitboards.nextSetBit(reached, 0); index >= 0; index = Bitboards.nextSetBit(reached, index + 1)) {
+            PlayerTerritory playerTerritory = territoriesByIndex[index];
+            if (playerTerritory != null && !playerTerritory.isSupplied()) {
+                playerTerritory.setSupplied(true);
+                if (playerTerritory.getId() != null) {
+                    writeBehindService.updatePlayerTerritory(playerTerritory.getId(), playerTerritory.getTroops(), true,
+                            playerTerritory.getPlayerId());
+                }
+            }
+        }
     }
 
-    private void markAllNeighbors(List<MappedTerritory> currentNodes) {
-        currentNodes
-                .forEach(currentNode -> {
-                    currentNode.getPlayerTerritory().setSupplied(true);
-
-                    List<MappedTerritory> viableNeighbors = currentNode.getNeighboringTerritories()
-                            .stream()
-                            .filter(mt -> !mt.getPlayerTerritory().isSupplied())
-                            .filter(mt -> mt.getPlayerTerritory().getPlayer() != null &&
-                                    currentNode.getPlayerTerritory().getPlayer().getPlayerNumber() ==
-                                    mt.getPlayerTerritory().getPlayer().getPlayerNumber())
-                            .collect(Collectors.toList());
-
-                    markAllNeighbors(viableNeighbors);
-                });
+    /**
+     * Recomputes supply for the territories whose owner changed and returns the indices whose
+     * supplied flag flipped. Only the same-owner components touching a changed territory or one
+     * of its neighbors can gain or lose a path to a supply depot, so nothing else is visited.
+     * Each component is flooded through its owner's bitboard and is supplied when it intersects
+     * the supply depots. Callers must hold the monitor of the game state.
+     */
+    public BitSet recomputeSupplied(GameState gameState, int... changedIndices) {
+        TerritoryGraph graph = gameState.graph();
+        FloodFill floodFill = gameState.floodFill();
+        long[] pending = Bitboards.create(graph.size());
+        for (int changedIndex : changedIndices) {
+            Bitboards.set(pending, changedIndex);
+            for (int direction = 0; direction < TerritoryGraph.DIRECTIONS; direction++) {
+                int neighbor = graph.neighbor(changedIndex, direction);
+                if (neighbor != TerritoryGraph.NO_NEIGHBOR) {
+                    Bitboards.set(pending, neighbor);
+                }
+            }
+        }
+
+        BitSet flipped = new BitSet(graph.size());
+        for (int seed = Bitboards.nextSetBit(pending, 0); seed >= 0; seed = Bitboards.nextSetBit(pending, seed + 1)) {
+            int owner = gameState.owner(seed);
+            if (owner == GameState.UNOWNED) {
+                flip(gameState, seed, false, flipped);
+                continue;
+            }
+            long[] component = floodFill.component(seed, gameState.territoriesOf(owner));
+            boolean hasSupplyDepot = Bitboards.intersects(component, gameState.supplyDepots());
+            for (int word = 0; word < pending.length; word++) {
+                pending[word] &= ~component[word];
+            }
+            for (int index = Bitboards.nextSetBit(component, 0); index >= 0;
+                 index = Bitboards.nextSetBit(component, index + 1)) {
+                flip(gameState, index, hasSupplyDepot, flipped);
+            }
+        }
+        return flipped;
     }
 
-
-    @Getter
-    @Setter
-    @EqualsAndHashCode
-    private class MappedTerritory {
-        private List<MappedTerritory> neighboringTerritories = new ArrayList<>();
-
-        private PlayerTerritory playerTerritory;
+    private static void flip(GameState gameState, int index, boolean isSupplied, BitSet flipped) {
+        if (gameState.isSupplied(index) != isSupplied) {
+            gameState.setSupplied(index, isSupplied);
+            flipped.set(index);
+        }
     }
 }
@@ -0,0 +1,88 @@
+package org.cost.territory;
+
+/**
+ * Sets of territory indexes packed into {@code long} words, bit {@code index % 64} of word
+ * {@code index / 64}. The seeded map has 54 territories, so its boards are a single word and
+ * every operation below is a handful of instructions; larger boards use as many words as they
+ * need. Unlike {@link java.util.BitSet} a board never resizes, so it can be reused without
+ * allocating.
+ */
+public final class Bitboards {
+
+    private Bitboards() {
+    }
+
+    public static int words(int territoryCount) {
+        return (territoryCount + Long.SIZE - 1) >>> 6;
+    }
+
+    public static long[] create(int territoryCount) {
+        return new long[words(territoryCount)];
+    }
+
+    public static boolean get(long[] board, int index) {
+        return (board[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void set(long[] board, int index) {
+        board[index >>> 6] |= 1L << index;
+    }
+
+    public static void clear(long[] board, int index) {
+        board[index >>> 6] &= ~(1L << index);
+    }
+
+    public static void set(long[] board, int index, boolean value) {
+        if (value) {
+            set(board, index);
+        } else {
+            clear(board, index);
+        }
+    }
+
+    public static int count(long[] board) {
+        int count = 0;
+        for (long word : board) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * The number of territories in both boards.
+     */
+    public static int countBoth(long[] board, long[] other) {
+        int count = 0;
+        for (int word = 0; word < board.length; word++) {
+            count += Long.bitCount(board[word] & other[word]);
+        }
+        return count;
+    }
+
+    public static boolean intersects(long[] board, long[] other) {
+        for (int word = 0; word < board.length; word++) {
+            if ((board[word] & other[word]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The first index at or after {@code from} that is in the board, or -1.
+     */
+    public static int nextSetBit(long[] board, int from) {
+        int word = from >>> 6;
+        if (word >= board.length) {
+            return -1;
+        }
+        long bits = board[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == board.length) {
+                return -1;
+            }
+            bits = board[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
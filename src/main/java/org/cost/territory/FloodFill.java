@@ -0,0 +1,75 @@
+package org.cost.territory;
+
+import java.util.Arrays;
+
+/**
+ * Iterative breadth-first traversal over a {@link TerritoryGraph} through a
+ * {@link Bitboards bitboard} of enterable territories. The boards and queue are allocated once
+ * and reused by every call, so an instance must not be shared between threads.
+ */
+public final class FloodFill {
+
+    private final TerritoryGraph graph;
+    private final int[] queue;
+    private final long[] reachedBoard;
+    private final long[] seedBoard;
+
+    public FloodFill(TerritoryGraph graph) {
+        this.graph = graph;
+        this.queue = new int[graph.size()];
+        this.reachedBoard = Bitboards.create(graph.size());
+        this.seedBoard = Bitboards.create(graph.size());
+    }
+
+    /**
+     * Floods from the seeds through the territories in {@code within} and returns the bitboard of
+     * territories reached, including the seeds whether or not they are within. On a one-word
+     * board each step adds the neighbor masks of the newest territories, so a flood costs a few
+     * operations per territory reached and nothing per territory merely tested. The returned
+     * board is owned by this instance and is only valid until the next call.
+     */
+    public long[] fill(long[] seeds, long[] within) {
+        if (graph.isSingleWord()) {
+            long allowed = within[0];
+            long done = seeds[0];
+            long frontier = done;
+            while (frontier != 0) {
+                long next = 0;
+                for (long bits = frontier; bits != 0; bits &= bits - 1) {
+                    next |= graph.neighborMask(Long.numberOfTrailingZeros(bits));
+                }
+                frontier = next & allowed & ~done;
+                done |= frontier;
+            }
+            reachedBoard[0] = done;
+            return reachedBoard;
+        }
+
+        System.arraycopy(seeds, 0, reachedBoard, 0, reachedBoard.length);
+        int reached = 0;
+        for (int seed = Bitboards.nextSetBit(seeds, 0); seed >= 0; seed = Bitboards.nextSetBit(seeds, seed + 1)) {
+            queue[reached++] = seed;
+        }
+        for (int head = 0; head < reached; head++) {
+            int current = queue[head];
+            for (int direction = 0; direction < TerritoryGraph.DIRECTIONS; direction++) {
+                int next = graph.neighbor(current, direction);
+                if (next != TerritoryGraph.NO_NEIGHBOR && Bitboards.get(within, next)
+                        && !Bitboards.get(reachedBoard, next)) {
+                    Bitboards.set(reachedBoard, next);
+                    queue[reached++] = next;
+                }
+            }
+        }
+        return reachedBoard;
+    }
+
+    /**
+     * The territories connected to the seed through {@code within}, as {@link #fill(long[], long[])}.
+     */
+    public long[] component(int seed, long[] within) {
+        Arrays.fill(seedBoard, 0);
+        Bitboards.set(seedBoard, seed);
+        return fill(seedBoard, within);
+    }
+}
@@ -0,0 +1,116 @@
+package org.cost.territory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the static map: names, supply tiers and adjacency of every territory,
+ * addressed by the same dense index as its {@link TerritoryGraph}. Supply depots that are in
+ * play for each player count are resolved once when the snapshot is built.
+ */
+public final class MapTopology {
+
+    private final TerritoryGraph graph;
+    private final String[] names;
+    private final int[] supply;
+    private final int[][] startingCandidates;
+
+    private MapTopology(TerritoryGraph graph, String[] names, int[] supply, int[][] startingCandidates) {
+        this.graph = graph;
+        this.names = names;
+        this.supply = supply;
+        this.startingCandidates = startingCandidates;
+    }
+
+    public static MapTopology of(List<Territory> territories) {
+        TerritoryGraph.Builder graph = TerritoryGraph.builder(territories.size());
+        String[] names = new String[territories.size()];
+        int[] supply = new int[territories.size()];
+        int highestSupplyTier = 0;
+        for (int index = 0; index < territories.size(); index++) {
+            Territory territory = territories.get(index);
+            graph.add(territory.getTerritoryId(), territory);
+            names[index] = territory.getName();
+            supply[index] = territory.getSupply();
+            highestSupplyTier = Math.max(highestSupplyTier, territory.getSupply());
+        }
+
+        int[][] startingCandidates = new int[highestSupplyTier + 1][];
+        for (int numberOfPlayers = 0; numberOfPlayers <= highestSupplyTier; numberOfPlayers++) {
+            int count = 0;
+            int[] candidates = new int[supply.length];
+            for (int index = 0; index < supply.length; index++) {
+                if (supply[index] != 0 && supply[index] <= numberOfPlayers) {
+                    candidates[count++] = index;
+                }
+            }
+            startingCandidates[numberOfPlayers] = Arrays.copyOf(candidates, count);
+        }
+        return new MapTopology(graph.build(), names, supply, startingCandidates);
+    }
+
+    public TerritoryGraph graph() {
+        return graph;
+    }
+
+    public int size() {
+        return graph.size();
+    }
+
+    public int indexOf(Long territoryId) {
+        return graph.indexOf(territoryId);
+    }
+
+    public long territoryId(int index) {
+        return graph.territoryId(index);
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    public int supply(int index) {
+        return supply[index];
+    }
+
+    public int neighbor(int index, int direction) {
+        return graph.neighbor(index, direction);
+    }
+
+    public boolean isSupplyDepot(int index, int numberOfPlayers) {
+        return supply[index] != 0 && supply[index] <= numberOfPlayers;
+    }
+
+    /**
+     * Indexes of the supply depots in play for a game with the given number of players.
+     */
+    public int[] startingCandidates(int numberOfPlayers) {
+        int tier = Math.max(0, Math.min(numberOfPlayers, startingCandidates.length - 1));
+        return startingCandidates[tier].clone();
+    }
+
+    /**
+     * Detached copies of the map's territories, safe for callers to modify.
+     */
+    public List<Territory> toTerritories() {
+        List<Territory> territories = new ArrayList<>(size());
+        for (int index = 0; index < size(); index++) {
+            territories.add(Territory.builder()
+                    .territoryId(territoryId(index))
+                    .name(names[index])
+                    .supply(supply[index])
+                    .north(neighborId(index, TerritoryGraph.NORTH))
+                    .east(neighborId(index, TerritoryGraph.EAST))
+                    .south(neighborId(index, TerritoryGraph.SOUTH))
+                    .west(neighborId(index, TerritoryGraph.WEST))
+                    .build());
+        }
+        return territories;
+    }
+
+    private Long neighborId(int index, int direction) {
+        int neighbor = graph.neighbor(index, direction);
+        return neighbor == TerritoryGraph.NO_NEIGHBOR ? null : graph.territoryId(neighbor);
+    }
+}
@@ -0,0 +1,41 @@
+package org.cost.territory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Loads the Flyway-seeded Territory table once and serves it as a {@link MapTopology}. The map
+ * never changes at runtime, so no request reads Territory rows after startup.
+ */
+@Service
+public class MapTopologyRegistry {
+
+    private final TerritoryRepository territoryRepository;
+    private volatile MapTopology topology;
+
+    @Autowired
+    public MapTopologyRegistry(TerritoryRepository territoryRepository) {
+        this.territoryRepository = territoryRepository;
+    }
+
+    @PostConstruct
+    public void load() {
+        getTopology();
+    }
+
+    public MapTopology getTopology() {
+        MapTopology loaded = topology;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = topology;
+                if (loaded == null) {
+                    loaded = MapTopology.of(territoryRepository.findAll());
+                    topology = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+}
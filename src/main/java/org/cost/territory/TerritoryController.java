@@ -2,141 +2,163 @@ package org.cost.territory;
 
 import lombok.*;
 
+import org.cost.game.GameShards;
+import org.cost.game.GameState;
+import org.cost.game.GameStateService;
 import org.cost.player.*;
 import org.cost.Exceptions;
+import org.cost.LinkFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
-
 @RestController("/territories")
 public class TerritoryController {
 
-    private TerritoryRepository territoryRepository;
+    private MapTopologyRegistry mapTopologyRegistry;
     private PlayerRepository playerRepository;
     private PlayerTerritoryRepository playerTerritoryRepository;
+    private GameStateService gameStateService;
+    private SuppliedStatusService suppliedStatusService;
+    private LinkFactory linkFactory;
+    private GameShards gameShards;
     //private PlayerController playerController;
 
     @Autowired
-    TerritoryController(TerritoryRepository territoryRepository, PlayerRepository playerRepository,
-                        PlayerTerritoryRepository playerTerritoryRepository) {
-        this.territoryRepository = territoryRepository;
+    TerritoryController(MapTopologyRegistry mapTopologyRegistry, PlayerRepository playerRepository,
+                        PlayerTerritoryRepository playerTerritoryRepository, GameStateService gameStateService,
+                        SuppliedStatusService suppliedStatusService, LinkFactory linkFactory, GameShards gameShards) {
+        this.mapTopologyRegistry = mapTopologyRegistry;
         this.playerRepository = playerRepository;
         this.playerTerritoryRepository = playerTerritoryRepository;
+        this.gameStateService = gameStateService;
+        this.suppliedStatusService = suppliedStatusService;
+        this.linkFactory = linkFactory;
+        this.gameShards = gameShards;
     }
 
     @RequestMapping(path = "territories/{territoryId}", method = RequestMethod.GET)
     public TerritoryResponse getTerritory(@PathVariable("territoryId") Long territoryId, HttpSession session) {
-        Territory requestedTerritory = territoryRepository.findOne(territoryId);
-
-        PlayerTerritory requestedPlayerTerritory = playerTerritoryRepository.findPlayerTerritoryByTerritoryIdAndGameName(
-                territoryId, (String) session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD));
+        MapTopology topology = mapTopologyRegistry.getTopology();
+        int territoryIndex = topology.indexOf(territoryId);
 
-        if (requestedTerritory == null) {
+        if (territoryIndex < 0) {
             throw new Exceptions.ResourceNotFoundException(null);
         }
 
-        PlayerForTerritoryResponse playerForTerritoryResponse = null;
-        if (requestedPlayerTerritory.getPlayer() != null) {
-            playerForTerritoryResponse = new PlayerForTerritoryResponse(requestedPlayerTerritory.getPlayer().getPlayerNumber(), requestedPlayerTerritory.getPlayer().getName());
-            playerForTerritoryResponse
-                    .add(
-                            linkTo(
-                                    methodOn(PlayerController.class).getPlayer(requestedPlayerTerritory.getPlayer().getPlayerNumber(), session))
-                                    .withSelfRel());
+        PlayerTerritoryDetail detail = territoryDetail((String) session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD), territoryId);
+        if (detail == null) {
+            throw new Exceptions.ResourceNotFoundException(null);
         }
 
-        TerritoryResponse.TerritoryResponseBuilder builder = TerritoryResponse.builder().name(requestedTerritory.getName());
-
-        Long northId = requestedTerritory.getNorth();
-        Long eastId = requestedTerritory.getEast();
-        Long westId = requestedTerritory.getWest();
-        Long southId = requestedTerritory.getSouth();
+        int owner = detail.getOwnerPlayerNumber() == null ? GameState.UNOWNED : detail.getOwnerPlayerNumber();
+        int troops = detail.getTroops();
+        int playersInGame = (int) detail.getPlayersInGame();
 
-        if (northId != null) {
-            Territory northTerritory = territoryRepository.findOne(northId);
-            NeighboringTerritoryResponse northTerritoryResponse = NeighboringTerritoryResponse.builder().name(northTerritory.getName()).build();
-            northTerritoryResponse.add(linkTo(methodOn(TerritoryController.class).getTerritory(northTerritory.getTerritoryId(), session)).withSelfRel());
-            builder = builder.north(northTerritoryResponse);
-        }
-        if (eastId != null) {
-            Territory eastTerritory = territoryRepository.findOne(eastId);
-            NeighboringTerritoryResponse eastTerritoryResponse = NeighboringTerritoryResponse.builder().name(eastTerritory.getName()).build();
-            eastTerritoryResponse.add(linkTo(methodOn(TerritoryController.class).getTerritory(eastTerritory.getTerritoryId(), session)).withSelfRel());
-            builder = builder.east(eastTerritoryResponse);
-        }
-        if (westId != null) {
-            Territory westTerritory = territoryRepository.findOne(westId);
-            NeighboringTerritoryResponse westTerritoryResponse = NeighboringTerritoryResponse.builder().name(westTerritory.getName()).build();
-            westTerritoryResponse.add(linkTo(methodOn(TerritoryController.class).getTerritory(westTerritory.getTerritoryId(), session)).withSelfRel());
-            builder = builder.west(westTerritoryResponse);
-        }
-        if (southId != null) {
-            Territory southTerritory = territoryRepository.findOne(southId);
-            NeighboringTerritoryResponse southTerritoryResponse = NeighboringTerritoryResponse.builder().name(southTerritory.getName()).build();
-            southTerritoryResponse.add(linkTo(methodOn(TerritoryController.class).getTerritory(southTerritory.getTerritoryId(), session)).withSelfRel());
-            builder = builder.south(southTerritoryResponse);
+        PlayerForTerritoryResponse playerForTerritoryResponse = null;
+        if (owner != GameState.UNOWNED) {
+            playerForTerritoryResponse = new PlayerForTerritoryResponse(owner, detail.getOwnerName());
+            playerForTerritoryResponse.add(linkFactory.player(owner));
         }
 
-        int playersInGame = playerRepository.findPlayersByGameName((String) session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD)).size();
-        int supplyDepotId = requestedTerritory.getSupply();
+        TerritoryResponse.TerritoryResponseBuilder builder = TerritoryResponse.builder().name(topology.name(territoryIndex));
 
-        if ((supplyDepotId == 0) || (supplyDepotId > playersInGame)) {
-            builder = builder.supply(false);
-        } else {
-            builder = builder.supply(true);
-        }
+        builder.north(neighboringTerritory(topology, topology.neighbor(territoryIndex, TerritoryGraph.NORTH)));
+        builder.east(neighboringTerritory(topology, topology.neighbor(territoryIndex, TerritoryGraph.EAST)));
+        builder.south(neighboringTerritory(topology, topology.neighbor(territoryIndex, TerritoryGraph.SOUTH)));
+        builder.west(neighboringTerritory(topology, topology.neighbor(territoryIndex, TerritoryGraph.WEST)));
 
+        builder.supply(topology.isSupplyDepot(territoryIndex, playersInGame));
         builder.owningPlayer(playerForTerritoryResponse);
-        builder.troops(requestedPlayerTerritory.getTroops());
+        builder.troops(troops);
 
         return builder.build();
     }
 
+    /**
+     * Reads the game-specific part of a territory from the in-memory game when it is active, and
+     * otherwise with a single query that also fetches the owner and the number of players.
+     */
+    private PlayerTerritoryDetail territoryDetail(String gameName, Long territoryId) {
+        GameState game = gameStateService.getActiveGameState(gameName);
+        if (game == null) {
+            return gameName == null ? null : playerTerritoryRepository.findTerritoryDetail(gameName, territoryId);
+        }
+        synchronized (game) {
+            int index = game.indexOf(territoryId);
+            if (index < 0) {
+                return null;
+            }
+            int owner = game.owner(index);
+            int ownerSlot = game.slotOf(owner);
+            return new PlayerTerritoryDetail(territoryId, game.troops(index),
+                    owner == GameState.UNOWNED ? null : owner,
+                    ownerSlot < 0 ? null : game.playerName(ownerSlot),
+                    game.playerCount());
+        }
+    }
+
+    private NeighboringTerritoryResponse neighboringTerritory(MapTopology topology, int neighborIndex) {
+        if (neighborIndex == TerritoryGraph.NO_NEIGHBOR) {
+            return null;
+        }
+        NeighboringTerritoryResponse neighboringTerritoryResponse = NeighboringTerritoryResponse.builder()
+                .name(topology.name(neighborIndex))
+                .build();
+        neighboringTerritoryResponse.add(linkFactory.territory(topology.territoryId(neighborIndex)));
+        return neighboringTerritoryResponse;
+    }
+
     @RequestMapping(path = "territories", method = RequestMethod.GET)
     public List<AllTerritoriesResponse> getTerritories(HttpSession session) {
-        List<PlayerTerritory> territories = playerTerritoryRepository.findByGameName(
-                (String) session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD));
+        GameState game = gameStateService.getGameState((String) session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD));
         List<AllTerritoriesResponse> territoriesResponse = new ArrayList<>();
-        territories
-                .forEach(territory -> {
-                    AllTerritoriesResponse terrritoryResponse = AllTerritoriesResponse.builder()
-                            .name(territory.getTerritoryName())
-                            .territoryId((territory.getTerritoryId().intValue()))
-                            .supplyDepot((territory.isSupplyDepotTerritory()))
-                            .supplied(territory.isSupplied())
-                            .troops(territory.getTroops())
-                            .playerNumber(
-                                    (territory.getPlayer() == null) ? 0 :
-                                            territory.getPlayer().getPlayerNumber())
-                            .build();
-                    terrritoryResponse
-                            .add(
-                                    linkTo(
-                                            methodOn(TerritoryController.class).getTerritory(
-                                                    territory.getTerritoryId(), session))
-                                            .withSelfRel());
-                    territoriesResponse.add(terrritoryResponse);
-                });
+        if (game == null) {
+            return territoriesResponse;
+        }
+        synchronized (game) {
+            for (int index = 0; index < game.territoryCount(); index++) {
+                AllTerritoriesResponse terrritoryResponse = AllTerritoriesResponse.builder()
+                        .name(game.territoryName(index))
+                        .territoryId((int) game.territoryId(index))
+                        .supplyDepot(game.isSupplyDepot(index))
+                        .supplied(game.isSupplied(index))
+                        .troops(game.troops(index))
+                        .playerNumber(game.owner(index))
+                        .build();
+                terrritoryResponse.add(linkFactory.territory(game.territoryId(index)));
+                territoriesResponse.add(terrritoryResponse);
+            }
+        }
 
         return territoriesResponse;
     }
 
 
 
+    /**
+     * Hands the territory to the player on the game's shard, like the actions, so the change to
+     * the game state and its event are ordered with everything else that happens to the game.
+     */
     @RequestMapping(path = "/territories/owner", method = RequestMethod.POST)
-    public ResponseEntity assignTerritoryToPlayer(@RequestBody TerritoryRequest territoryRequest, HttpSession session) {
-        List<Player> players = playerRepository.findPlayersByGameName((String) session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD));
+    public DeferredResult<ResponseEntity<?>> assignTerritoryToPlayer(@RequestBody TerritoryRequest territoryRequest,
+                                                                     HttpSession session, HttpServletRequest request) {
+        String gameName = (String) session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD);
+        return gameShards.respond(gameName, request, () -> assignTerritoryToPlayer(gameName, territoryRequest));
+    }
+
+    private ResponseEntity<?> assignTerritoryToPlayer(String gameName, TerritoryRequest territoryRequest) {
+        List<Player> players = playerRepository.findPlayersByGameName(gameName);
         Optional<Player> first = players
                 .stream()
                 .filter(p -> p.getPlayerNumber() == territoryRequest.getPlayerNumber())
@@ -148,13 +170,25 @@ public class TerritoryController {
         Player player = first.get();
 
         PlayerTerritory playerTerritory = playerTerritoryRepository.findPlayerTerritoryByTerritoryIdAndGameName(
-                (long) territoryRequest.getTerritoryId(), (String) session.getAttribute(PlayerController.SESSION_GAME_NAME_FIELD));
+                (long) territoryRequest.getTerritoryId(), gameName);
 
         if (playerTerritory != null) {
             playerTerritory.setPlayerId(player.getPlayerId());
             playerTerritory.setTerritoryId((long) territoryRequest.getTerritoryId());
             player.getPlayerTerritoriesList().add(playerTerritory);
             playerRepository.save(player);
+
+            GameState game = gameStateService.getGameState(gameName);
+            if (game != null) {
+                synchronized (game) {
+                    int index = game.indexOf((long) territoryRequest.getTerritoryId());
+                    if (index >= 0 && game.owner(index) != player.getPlayerNumber()) {
+                        game.setOwner(index, player.getPlayerNumber());
+                        suppliedStatusService.recomputeSupplied(game, index);
+                    }
+                }
+                gameStateService.persist(game);
+            }
             return new ResponseEntity(HttpStatus.OK);
         }
 
@@ -1,15 +1,21 @@
 package org.cost.territory;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
 import java.util.List;
 
+@Service
 public class TerritoryDataService {
 
-    //              I AM NOT YET IMPLEMENTED
+    private MapTopologyRegistry mapTopologyRegistry;
+
+    @Autowired
+    public TerritoryDataService(MapTopologyRegistry mapTopologyRegistry) {
+        this.mapTopologyRegistry = mapTopologyRegistry;
+    }
+
     public List<Territory> getListOfTerritoriesOnMap() {
-        return Arrays.asList(
-                Territory.builder().territoryId(0L).name("replace me").build(),
-                Territory.builder().territoryId(1L).name("soon").build());
+        return mapTopologyRegistry.getTopology().toTerritories();
     }
 }
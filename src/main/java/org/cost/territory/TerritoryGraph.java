@@ -0,0 +1,137 @@
+package org.cost.territory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable adjacency of a board. Territories are addressed by a dense index and each one has
+ * up to four neighbor slots (north, east, south, west) stored in a single flat array, with
+ * {@link #NO_NEIGHBOR} marking an edge of the board. Boards of up to 64 territories also keep
+ * each territory's neighbors as a one-word {@link Bitboards bitboard}, so adjacency checks and
+ * floods over them are bit operations.
+ */
+public final class TerritoryGraph {
+
+    public static final int NO_NEIGHBOR = -1;
+    public static final int NORTH = 0;
+    public static final int EAST = 1;
+    public static final int SOUTH = 2;
+    public static final int WEST = 3;
+    public static final int DIRECTIONS = 4;
+
+    private final long[] territoryIds;
+    private final int[] adjacency;
+    private final Map<Long, Integer> indexes;
+    private final long[] neighborMasks;
+
+    private TerritoryGraph(long[] territoryIds, int[] adjacency, Map<Long, Integer> indexes) {
+        this.territoryIds = territoryIds;
+        this.adjacency = adjacency;
+        this.indexes = indexes;
+        this.neighborMasks = territoryIds.length <= Long.SIZE ? neighborMasks(adjacency, territoryIds.length) : null;
+    }
+
+    private static long[] neighborMasks(int[] adjacency, int territoryCount) {
+        long[] masks = new long[territoryCount];
+        for (int index = 0; index < territoryCount; index++) {
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                int neighbor = adjacency[index * DIRECTIONS + direction];
+                if (neighbor != NO_NEIGHBOR) {
+                    masks[index] |= 1L << neighbor;
+                }
+            }
+        }
+        return masks;
+    }
+
+    public static Builder builder(int territoryCount) {
+        return new Builder(territoryCount);
+    }
+
+    public int size() {
+        return territoryIds.length;
+    }
+
+    public long territoryId(int index) {
+        return territoryIds[index];
+    }
+
+    public int indexOf(Long territoryId) {
+        Integer index = territoryId == null ? null : indexes.get(territoryId);
+        return index == null ? NO_NEIGHBOR : index;
+    }
+
+    public int neighbor(int index, int direction) {
+        return adjacency[index * DIRECTIONS + direction];
+    }
+
+    /**
+     * Whether the board fits in one word, so that {@link #neighborMask(int)} is available.
+     */
+    public boolean isSingleWord() {
+        return neighborMasks != null;
+    }
+
+    /**
+     * The neighbors of a territory as a one-word bitboard; only for {@link #isSingleWord()} boards.
+     */
+    public long neighborMask(int index) {
+        return neighborMasks[index];
+    }
+
+    public boolean areNeighbors(int index, int otherIndex) {
+        if (neighborMasks != null) {
+            return otherIndex >= 0 && otherIndex < Long.SIZE && (neighborMasks[index] & (1L << otherIndex)) != 0;
+        }
+        int offset = index * DIRECTIONS;
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            if (adjacency[offset + direction] == otherIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static final class Builder {
+        private final long[] territoryIds;
+        private final Long[][] neighborIds;
+        private final Map<Long, Integer> indexes;
+        private int count;
+
+        private Builder(int territoryCount) {
+            this.territoryIds = new long[territoryCount];
+            this.neighborIds = new Long[territoryCount][];
+            this.indexes = new HashMap<>(territoryCount * 2);
+        }
+
+        public Builder add(long territoryId, Long north, Long east, Long south, Long west) {
+            indexes.put(territoryId, count);
+            territoryIds[count] = territoryId;
+            neighborIds[count] = new Long[]{north, east, south, west};
+            count++;
+            return this;
+        }
+
+        public Builder add(long territoryId, Territory territory) {
+            return territory == null
+                    ? add(territoryId, null, null, null, null)
+                    : add(territoryId, territory.getNorth(), territory.getEast(), territory.getSouth(), territory.getWest());
+        }
+
+        public TerritoryGraph build() {
+            int[] adjacency = new int[count * DIRECTIONS];
+            Arrays.fill(adjacency, NO_NEIGHBOR);
+            for (int index = 0; index < count; index++) {
+                for (int direction = 0; direction < DIRECTIONS; direction++) {
+                    Long neighborId = neighborIds[index][direction];
+                    Integer neighborIndex = neighborId == null ? null : indexes.get(neighborId);
+                    if (neighborIndex != null) {
+                        adjacency[index * DIRECTIONS + direction] = neighborIndex;
+                    }
+                }
+            }
+            return new TerritoryGraph(Arrays.copyOf(territoryIds, count), adjacency, indexes);
+        }
+    }
+}
@@ -0,0 +1 @@
+ALTER TABLE Game ADD version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1 @@
+ALTER TABLE Game ADD deleted INT DEFAULT 0;
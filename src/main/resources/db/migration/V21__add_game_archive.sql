@@ -0,0 +1,7 @@
+ALTER TABLE Game ADD updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP;
+
+CREATE TABLE Game_archive (
+    game_name VARCHAR(64) PRIMARY KEY,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    rows_gzip MEDIUMBLOB NOT NULL
+);
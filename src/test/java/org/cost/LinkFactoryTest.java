@@ -0,0 +1,60 @@
+package org.cost;
+
+import org.cost.player.PlayerController;
+import org.cost.territory.TerritoryController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+
+public class LinkFactoryTest {
+
+    private MockHttpServletRequest request;
+    private LinkFactory linkFactory;
+
+    @Before
+    public void setup() {
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        linkFactory = new LinkFactory();
+    }
+
+    @After
+    public void teardown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void territory_matchesControllerLinkBuilder() {
+        assertThat(linkFactory.territory(13L))
+                .isEqualTo(linkTo(methodOn(TerritoryController.class).getTerritory(13L, null)).withSelfRel());
+    }
+
+    @Test
+    public void player_matchesControllerLinkBuilder() {
+        assertThat(linkFactory.player(2))
+                .isEqualTo(linkTo(methodOn(PlayerController.class).getPlayer(2, null)).withSelfRel());
+    }
+
+    @Test
+    public void links_honourForwardedHeaders() {
+        request.addHeader("X-Forwarded-Host", "supplyraid.example.com");
+        request.addHeader("X-Forwarded-Proto", "https");
+
+        assertThat(linkFactory.territory(5L).getHref()).isEqualTo("https://supplyraid.example.com/territories/5");
+        assertThat(linkFactory.player(1))
+                .isEqualTo(linkTo(methodOn(PlayerController.class).getPlayer(1, null)).withSelfRel());
+    }
+
+    @Test
+    public void parse_keepsLiteralsAroundEachVariable() {
+        assertThat(LinkFactory.LinkTemplate.parse("games/{gameName}/players/{playerNumber}").expand("http://host", "Camelot", "3"))
+                .isEqualTo("http://host/games/Camelot/players/3");
+    }
+}
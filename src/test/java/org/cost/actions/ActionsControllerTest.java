@@ -1,31 +1,60 @@
 package org.cost.actions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.cost.LinkFactory;
 import org.cost.game.Game;
 import org.cost.game.GameRepository;
+import org.cost.game.GameShards;
+import org.cost.game.GameState;
+import org.cost.game.GameStateService;
+import org.cost.game.WriteBehindService;
+import org.cost.metrics.RequestMetrics;
+import org.cost.metrics.SqlCountingDataSource;
 import org.cost.player.Player;
 import org.cost.player.PlayerRepository;
 import org.cost.player.PlayerTerritory;
 import org.cost.player.PlayerTerritoryRepository;
+import org.cost.territory.MapTopologyRegistry;
 import org.cost.territory.Territory;
+import org.cost.territory.TerritoryRepository;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.cost.player.PlayerController.SESSION_GAME_NAME_FIELD;
 import static org.cost.player.PlayerController.SESSION_PLAYER_NUMBER_FIELD;
 import static org.mockito.Mockito.*;
 import static org.skyscreamer.jsonassert.JSONAssert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -35,16 +64,31 @@ public class ActionsControllerTest {
     private GameRepository mockGameRepository;
     private PlayerRepository mockPlayerRepository;
     private PlayerTerritoryRepository mockPlayerTerritoryRepository;
+    private WriteBehindService mockWriteBehindService;
+    private TerritoryRepository mockTerritoryRepository;
+    private GameStateService gameStateService;
+    private GameShards gameShards;
 
     @Before
     public void setup() {
+        mockWriteBehindService = mock(WriteBehindService.class);
         mockGameRepository = mock(GameRepository.class);
         mockPlayerRepository = mock(PlayerRepository.class);
         mockPlayerTerritoryRepository = mock(PlayerTerritoryRepository.class);
-        ActionsController actionsController = new ActionsController(mockGameRepository);
+        mockTerritoryRepository = mock(TerritoryRepository.class);
+        gameStateService = new GameStateService(mockGameRepository, mockPlayerRepository,
+                mockPlayerTerritoryRepository, mockWriteBehindService, new MapTopologyRegistry(mockTerritoryRepository),
+                mock(ApplicationEventPublisher.class));
+        gameShards = new GameShards(2, 64);
+        ActionsController actionsController = new ActionsController(gameStateService, new LinkFactory(), gameShards);
         this.mockMvc = MockMvcBuilders.standaloneSetup(actionsController).build();
     }
 
+    @After
+    public void shutdownShards() throws InterruptedException {
+        gameShards.shutdown();
+    }
+
     @Test
     public void skipAction_decrementsCurrentActionNumber_whenPlayerIsActivePlayer() throws Exception {
         MockHttpSession session = new MockHttpSession();
@@ -52,20 +96,23 @@ public class ActionsControllerTest {
         session.setAttribute(SESSION_GAME_NAME_FIELD, "gamename");
 
         Game game = new Game();
+        game.setGameName("gamename");
         game.setTurnNumber(5);
-        Player thisPlayer = Player.builder().playerNumber(2).remainingActions(3).build();
+        Player thisPlayer = Player.builder().playerId(2L).playerNumber(2).remainingActions(3).build();
         game.setPlayers(Arrays.asList(new Player(), thisPlayer, new Player()));
-        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        givenGame(game);
 
-        String contentAsString = mockMvc.perform(post("/actions/skip-action").contentType(MediaType.APPLICATION_JSON).session(session)).andExpect(status().isOk())
+        String contentAsString = performAction(post("/actions/skip-action").contentType(MediaType.APPLICATION_JSON).session(session)).andExpect(status().isOk())
                 .andReturn().getResponse().getContentAsString();
         ;
 
-        verify(mockGameRepository).save(game);
-        assertThat(thisPlayer.getRemainingActions()).isEqualTo(2);
+        verify(mockWriteBehindService).updatePlayer(2L, 2);
+        verify(mockWriteBehindService, never()).updateGame(anyString(), anyInt());
+        ObjectNode body = (ObjectNode) new ObjectMapper().readTree(contentAsString);
+        assertThat(body.remove("version").asLong()).isPositive();
         assertEquals("{\n" +
                 "  \"actionsRemaining\": 2\n" +
-                "}", contentAsString, JSONCompareMode.NON_EXTENSIBLE);
+                "}", body.toString(), JSONCompareMode.NON_EXTENSIBLE);
     }
 
     @Test
@@ -74,7 +121,8 @@ public class ActionsControllerTest {
         session.setAttribute(SESSION_PLAYER_NUMBER_FIELD, 3);
         session.setAttribute(SESSION_GAME_NAME_FIELD, "gamename");
 
-        when(mockGameRepository.findOne("gamename")).thenReturn(Game.builder()
+        givenGame(Game.builder()
+                .gameName("gamename")
                 .turnNumber(1)
                 .players(
                         Arrays.asList(
@@ -86,9 +134,9 @@ public class ActionsControllerTest {
                                 new Player()))
                 .build());
 
-        mockMvc.perform(post("/actions/skip-action").contentType(MediaType.APPLICATION_JSON).session(session)).andExpect(status().isForbidden());
+        performAction(post("/actions/skip-action").contentType(MediaType.APPLICATION_JSON).session(session)).andExpect(status().isForbidden());
 
-        verify(mockGameRepository, times(0)).save(any(Game.class));
+        verifyZeroInteractions(mockWriteBehindService);
     }
 
     @Test
@@ -98,21 +146,23 @@ public class ActionsControllerTest {
         session.setAttribute(SESSION_GAME_NAME_FIELD, "gamename");
 
         Game game = new Game();
+        game.setGameName("gamename");
         game.setTurnNumber(5);
-        Player thisPlayer = Player.builder().playerNumber(2).remainingActions(1).build();
+        Player thisPlayer = Player.builder().playerId(2L).playerNumber(2).remainingActions(1).build();
         game.setPlayers(Arrays.asList(new Player(), thisPlayer, new Player()));
-        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        givenGame(game);
 
-        String contentAsString = mockMvc.perform(post("/actions/skip-action").contentType(MediaType.APPLICATION_JSON).session(session)).andExpect(status().isOk())
+        String contentAsString = performAction(post("/actions/skip-action").contentType(MediaType.APPLICATION_JSON).session(session)).andExpect(status().isOk())
                 .andReturn().getResponse().getContentAsString();
         ;
 
-        verify(mockGameRepository).save(game);
-        assertThat(game.getTurnNumber()).isEqualTo(6);
-        assertThat(thisPlayer.getRemainingActions()).isEqualTo(3);
+        verify(mockWriteBehindService).updateGame("gamename", 6);
+        verify(mockWriteBehindService).updatePlayer(2L, 3);
+        ObjectNode body = (ObjectNode) new ObjectMapper().readTree(contentAsString);
+        assertThat(body.remove("version").asLong()).isPositive();
         assertEquals("{\n" +
                 "  \"actionsRemaining\": 0\n" +
-                "}", contentAsString, JSONCompareMode.NON_EXTENSIBLE);
+                "}", body.toString(), JSONCompareMode.NON_EXTENSIBLE);
     }
 
     @Test
@@ -123,7 +173,7 @@ public class ActionsControllerTest {
 
         when(mockGameRepository.findOne("gamename")).thenReturn(null);
 
-        mockMvc.perform(post("/actions/skip-action").contentType(MediaType.APPLICATION_JSON).session(session)).andExpect(status().isNotFound());
+        performAction(post("/actions/skip-action").contentType(MediaType.APPLICATION_JSON).session(session)).andExpect(status().isNotFound());
     }
 
     @Test
@@ -135,16 +185,18 @@ public class ActionsControllerTest {
         PlayerTerritory playerTerritoryOne = PlayerTerritory.builder().id(1L).playerId(1L).territoryId(7L).troops(10).territory(Territory.builder().south(9L).build()).build();
         PlayerTerritory playerTerritoryTwo = PlayerTerritory.builder().id(2L).playerId(1L).territoryId(9L).troops(2).territory(Territory.builder().north(7L).build()).build();
         Player player = Player.builder()
+                .playerId(1L)
                 .playerNumber(1)
                 .playerTerritoriesList(Arrays.asList(playerTerritoryOne, playerTerritoryTwo))
                 .remainingActions(2)
                 .build();
         Game game = Game.builder()
+                .gameName("gamename")
                 .players(Arrays.asList(player))
                 .playerTerritories(Collections.emptyList())
                 .turnNumber(1)
                 .build();
-        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        givenGame(game);
 
 
         ActionsController.MoveRequest moveRequest = ActionsController.MoveRequest.builder()
@@ -156,20 +208,71 @@ public class ActionsControllerTest {
         ObjectMapper objectMapper = new ObjectMapper();
         String request = objectMapper.writeValueAsString(moveRequest);
 
-        when(mockGameRepository.save(game)).thenReturn(game);
-
-        String contentAsString = mockMvc.perform(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isOk())
+        String contentAsString = performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isOk())
                 .andReturn().getResponse().getContentAsString();
 
-        verify(mockGameRepository).save(game);
-        assertThat(playerTerritoryOne.getTroops()).isEqualTo(5);
-        assertThat(playerTerritoryTwo.getTroops()).isEqualTo(7);
-        assertThat(player.getRemainingActions()).isEqualTo(1);
+        verify(mockWriteBehindService).updatePlayerTerritory(1L, 5, false, 1L);
+        verify(mockWriteBehindService).updatePlayerTerritory(2L, 7, false, 1L);
+        verify(mockWriteBehindService).updatePlayer(1L, 1);
 
+        ObjectNode body = (ObjectNode) objectMapper.readTree(contentAsString);
+        assertThat(body.remove("version").asLong()).isPositive();
         assertEquals("{\n" +
                 "  \"actionsRemaining\": 1,\n" +
-                "  \"territories\": []\n" +
-                "}", contentAsString, JSONCompareMode.NON_EXTENSIBLE);
+                "  \"territories\": [\n" +
+                "    {\n" +
+                "      \"name\": null,\n" +
+                "      \"territoryId\": 7,\n" +
+                "      \"supplyDepot\": false,\n" +
+                "      \"supplied\": false,\n" +
+                "      \"troops\": 5,\n" +
+                "      \"playerNumber\": 1,\n" +
+                "      \"links\": [{\"rel\": \"self\", \"href\": \"http://localhost/territories/7\"}]\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"name\": null,\n" +
+                "      \"territoryId\": 9,\n" +
+                "      \"supplyDepot\": false,\n" +
+                "      \"supplied\": false,\n" +
+                "      \"troops\": 7,\n" +
+                "      \"playerNumber\": 1,\n" +
+                "      \"links\": [{\"rel\": \"self\", \"href\": \"http://localhost/territories/9\"}]\n" +
+                "    }\n" +
+                "  ]\n" +
+                "}", body.toString(), JSONCompareMode.NON_EXTENSIBLE);
+    }
+
+    @Test
+    public void moveTroops_returnsOnlyChangedTerritories_unlessFullBoardRequested() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(SESSION_PLAYER_NUMBER_FIELD, 1);
+        session.setAttribute(SESSION_GAME_NAME_FIELD, "gamename");
+        Player player = Player.builder()
+                .playerId(1L)
+                .playerNumber(1)
+                .playerTerritoriesList(Arrays.asList(
+                        PlayerTerritory.builder().id(1L).playerId(1L).territoryId(7L).troops(10).territory(Territory.builder().south(9L).build()).build(),
+                        PlayerTerritory.builder().id(2L).playerId(1L).territoryId(9L).troops(2).territory(Territory.builder().north(7L).east(11L).build()).build(),
+                        PlayerTerritory.builder().id(3L).playerId(1L).territoryId(11L).troops(4).territory(Territory.builder().west(9L).build()).build()))
+                .remainingActions(3)
+                .build();
+        givenGame(Game.builder().gameName("gamename").players(Arrays.asList(player)).started(true).turnNumber(1).build());
+        String request = new ObjectMapper().writeValueAsString(ActionsController.MoveRequest.builder()
+                .moveFrom(7L).moveTo(9L).numberOfTroops(1).build());
+
+        String delta = performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String full = performAction(post("/actions/move-troops").param("full", "true").contentType(MediaType.APPLICATION_JSON).content(request).session(session))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals("{\"territories\": [{\"territoryId\": 7, \"troops\": 9}, {\"territoryId\": 9, \"troops\": 3}]}",
+                delta, JSONCompareMode.LENIENT);
+        assertEquals("{\"territories\": [{\"territoryId\": 7, \"troops\": 8}, {\"territoryId\": 9, \"troops\": 4}, {\"territoryId\": 11, \"troops\": 4}]}",
+                full, JSONCompareMode.LENIENT);
+        assertThat(new ObjectMapper().readTree(full).get("version").asLong())
+                .isGreaterThan(new ObjectMapper().readTree(delta).get("version").asLong());
     }
 
     @Test
@@ -179,16 +282,17 @@ public class ActionsControllerTest {
         session.setAttribute(SESSION_GAME_NAME_FIELD, "gamename");
 
         Game game = Game.builder()
+                .gameName("gamename")
                 .players(Arrays.asList(new Player(), new Player()))
                 .turnNumber(2)
                 .build();
 
-        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        givenGame(game);
 
         ObjectMapper objectMapper = new ObjectMapper();
         String request = objectMapper.writeValueAsString(new ActionsController.MoveRequest());
 
-        mockMvc.perform(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
+        performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
     }
 
     @Test
@@ -200,17 +304,19 @@ public class ActionsControllerTest {
         PlayerTerritory playerTerritoryOne = PlayerTerritory.builder().id(1L).playerId(1L).territoryId(7L).troops(10).territory(Territory.builder().south(9L).build()).build();
         PlayerTerritory playerTerritoryTwo = PlayerTerritory.builder().id(2L).playerId(1L).territoryId(9L).troops(2).territory(Territory.builder().north(7L).build()).build();
         Player player = Player.builder()
+                .playerId(1L)
                 .playerNumber(1)
                 .playerTerritoriesList(Arrays.asList(playerTerritoryOne, playerTerritoryTwo))
                 .remainingActions(2)
                 .build();
 
         Game game = Game.builder()
+                .gameName("gamename")
                 .players(Arrays.asList(player))
                 .turnNumber(1)
                 .build();
 
-        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        givenGame(game);
 
         ObjectMapper objectMapper = new ObjectMapper();
         ActionsController.MoveRequest moveRequest = ActionsController.MoveRequest.builder()
@@ -220,7 +326,7 @@ public class ActionsControllerTest {
                 .build();
         String request = objectMapper.writeValueAsString(moveRequest);
 
-        mockMvc.perform(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
+        performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
     }
 
     @Test
@@ -232,17 +338,19 @@ public class ActionsControllerTest {
         PlayerTerritory playerTerritoryOne = PlayerTerritory.builder().id(1L).playerId(1L).territoryId(7L).troops(10).territory(Territory.builder().south(9L).build()).build();
         PlayerTerritory playerTerritoryTwo = PlayerTerritory.builder().id(2L).playerId(1L).territoryId(9L).troops(2).territory(Territory.builder().north(7L).build()).build();
         Player player = Player.builder()
+                .playerId(1L)
                 .playerNumber(1)
                 .playerTerritoriesList(Arrays.asList(playerTerritoryOne, playerTerritoryTwo))
                 .remainingActions(2)
                 .build();
 
         Game game = Game.builder()
+                .gameName("gamename")
                 .players(Arrays.asList(player))
                 .turnNumber(1)
                 .build();
 
-        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        givenGame(game);
 
         ObjectMapper objectMapper = new ObjectMapper();
         ActionsController.MoveRequest moveRequest = ActionsController.MoveRequest.builder()
@@ -252,7 +360,7 @@ public class ActionsControllerTest {
                 .build();
         String request = objectMapper.writeValueAsString(moveRequest);
 
-        mockMvc.perform(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
+        performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
     }
 
     @Test
@@ -264,17 +372,19 @@ public class ActionsControllerTest {
         PlayerTerritory playerTerritoryOne = PlayerTerritory.builder().id(1L).playerId(1L).territoryId(7L).troops(10).territory(Territory.builder().build()).build();
         PlayerTerritory playerTerritoryTwo = PlayerTerritory.builder().id(2L).playerId(1L).territoryId(9L).troops(2).territory(Territory.builder().build()).build();
         Player player = Player.builder()
+                .playerId(1L)
                 .playerNumber(1)
                 .playerTerritoriesList(Arrays.asList(playerTerritoryOne, playerTerritoryTwo))
                 .remainingActions(2)
                 .build();
 
         Game game = Game.builder()
+                .gameName("gamename")
                 .players(Arrays.asList(player))
                 .turnNumber(1)
                 .build();
 
-        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        givenGame(game);
 
         ObjectMapper objectMapper = new ObjectMapper();
         ActionsController.MoveRequest moveRequest = ActionsController.MoveRequest.builder()
@@ -284,7 +394,7 @@ public class ActionsControllerTest {
                 .build();
         String request = objectMapper.writeValueAsString(moveRequest);
 
-        mockMvc.perform(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
+        performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
 
     }
 
@@ -298,17 +408,19 @@ public class ActionsControllerTest {
         PlayerTerritory playerTerritoryOne = PlayerTerritory.builder().id(1L).playerId(1L).territoryId(7L).troops(10).territory(Territory.builder().south(9L).build()).build();
         PlayerTerritory playerTerritoryTwo = PlayerTerritory.builder().id(2L).playerId(1L).territoryId(9L).troops(2).territory(Territory.builder().north(7L).build()).build();
         Player player = Player.builder()
+                .playerId(1L)
                 .playerNumber(1)
                 .playerTerritoriesList(Arrays.asList(playerTerritoryOne, playerTerritoryTwo))
                 .remainingActions(2)
                 .build();
 
         Game game = Game.builder()
+                .gameName("gamename")
                 .players(Arrays.asList(player))
                 .turnNumber(1)
                 .build();
 
-        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        givenGame(game);
 
         ObjectMapper objectMapper = new ObjectMapper();
         ActionsController.MoveRequest moveRequest = ActionsController.MoveRequest.builder()
@@ -318,6 +430,228 @@ public class ActionsControllerTest {
                 .build();
         String request = objectMapper.writeValueAsString(moveRequest);
 
-        mockMvc.perform(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
+        performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session)).andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void skipAction_returnsConflictWithCurrentVersion_whenExpectedVersionIsStale() throws Exception {
+        MockHttpSession session = givenSinglePlayerGame(10, 10);
+        long version = gameStateService.getGameState("gamename").version();
+
+        String conflict = performAction(post("/actions/skip-action").param("expectedVersion", Long.toString(version - 1)).session(session))
+                .andExpect(status().isConflict())
+                .andReturn().getResponse().getContentAsString();
+        String skipped = performAction(post("/actions/skip-action").param("expectedVersion", Long.toString(version)).session(session))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals("{\"version\": " + version + "}", conflict, JSONCompareMode.NON_EXTENSIBLE);
+        assertEquals("{\"actionsRemaining\": 2}", skipped, JSONCompareMode.LENIENT);
+        verify(mockWriteBehindService, times(1)).updatePlayer(1L, 2);
+    }
+
+    @Test
+    public void moveTroops_movesOnlyOnce_whenConcurrentRequestsExpectTheSameVersion() throws Exception {
+        MockHttpSession session = givenSinglePlayerGame(100, 100);
+        String request = moveRequest(7L, 9L, gameStateService.getGameState("gamename").version());
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            statuses.add(executor.submit(() -> {
+                start.await();
+                return performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON).content(request).session(session))
+                        .andReturn().getResponse().getStatus();
+            }));
+        }
+        start.countDown();
+
+        List<Integer> results = new ArrayList<>();
+        for (Future<Integer> status : statuses) {
+            results.add(status.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertThat(results).containsOnly(200, 409);
+        assertThat(results.stream().filter(status -> status == 200).count()).isEqualTo(1);
+        GameState game = gameStateService.getGameState("gamename");
+        assertThat(game.troops(game.indexOf(7L))).isEqualTo(99);
+        assertThat(game.troops(game.indexOf(9L))).isEqualTo(101);
+    }
+
+    @Test
+    public void moveTroops_losesNoUpdates_underHighParallelism() throws Exception {
+        MockHttpSession session = givenSinglePlayerGame(1000, 1000);
+        int threads = 32;
+        int movesPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<int[]>> outcomes = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            boolean southward = i % 2 == 0;
+            boolean compareAndSet = i % 4 < 2;
+            outcomes.add(executor.submit(() -> {
+                start.await();
+                ObjectMapper objectMapper = new ObjectMapper();
+                long knownVersion = gameStateService.getGameState("gamename").version();
+                int moved = 0;
+                int conflicts = 0;
+                while (moved < movesPerThread) {
+                    String request = southward
+                            ? moveRequest(7L, 9L, compareAndSet ? knownVersion : null)
+                            : moveRequest(9L, 7L, compareAndSet ? knownVersion : null);
+                    MockHttpServletResponse response = performAction(post("/actions/move-troops")
+                            .contentType(MediaType.APPLICATION_JSON).content(request).session(session))
+                            .andReturn().getResponse();
+                    knownVersion = objectMapper.readTree(response.getContentAsString()).get("version").asLong();
+                    if (response.getStatus() == 200) {
+                        moved++;
+                    } else {
+                        assertThat(response.getStatus()).isEqualTo(409);
+                        conflicts++;
+                    }
+                }
+                return new int[]{moved, conflicts};
+            }));
+        }
+        start.countDown();
+
+        int moves = 0;
+        for (Future<int[]> outcome : outcomes) {
+            moves += outcome.get(60, TimeUnit.SECONDS)[0];
+        }
+        executor.shutdown();
+
+        GameState game = gameStateService.getGameState("gamename");
+        int southwardMoves = (threads / 2) * movesPerThread;
+        int northwardMoves = moves - southwardMoves;
+        assertThat(game.troops(game.indexOf(7L))).isEqualTo(1000 - southwardMoves + northwardMoves);
+        assertThat(game.troops(game.indexOf(9L))).isEqualTo(1000 + southwardMoves - northwardMoves);
+        assertThat(game.getTurnNumber()).isEqualTo(1 + moves / 3);
+        assertThat(game.remainingActions(game.slotOf(1))).isEqualTo(3 - moves % 3);
+    }
+
+    @Test
+    public void moveTroops_returnsServiceUnavailable_whenTheGamesShardIsFull() throws Exception {
+        MockHttpSession session = givenSinglePlayerGame(10, 10);
+        gameShards.shutdown();
+        gameShards = new GameShards(1, 1);
+        this.mockMvc = MockMvcBuilders.standaloneSetup(
+                new ActionsController(gameStateService, new LinkFactory(), gameShards)).build();
+        CountDownLatch release = new CountDownLatch(1);
+        gameShards.execute("gamename", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        gameShards.execute("gamename", () -> { });
+
+        try {
+            performAction(post("/actions/move-troops").contentType(MediaType.APPLICATION_JSON)
+                    .content(moveRequest(7L, 9L, null)).session(session))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        } finally {
+            release.countDown();
+        }
+
+        assertThat(gameShards.shard(0).rejected()).isEqualTo(1);
+        GameState game = gameStateService.getGameState("gamename");
+        assertThat(game.troops(game.indexOf(7L))).isEqualTo(10);
+    }
+
+    @Test
+    public void skipAction_isRecordedOnce_withTheTimeAndSqlOfItsShardWork() throws Exception {
+        RequestMetrics requestMetrics = new RequestMetrics();
+        this.mockMvc = MockMvcBuilders.standaloneSetup(
+                new ActionsController(gameStateService, new LinkFactory(), gameShards))
+                .addInterceptors(requestMetrics)
+                .build();
+        MockHttpSession session = givenSinglePlayerGame(10, 10);
+        DataSource mockDataSource = mock(DataSource.class);
+        Connection mockConnection = mock(Connection.class);
+        when(mockDataSource.getConnection()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        DataSource dataSource = SqlCountingDataSource.wrap(mockDataSource);
+        Game game = mockGameRepository.findOne("gamename");
+        when(mockGameRepository.findOne("gamename")).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            try (Connection connection = dataSource.getConnection()) {
+                connection.prepareStatement("select * from Game where game_name = ?").executeQuery();
+            }
+            return game;
+        });
+
+        performAction(post("/actions/skip-action").session(session)).andExpect(status().isOk());
+
+        RequestMetrics.HandlerMetrics skipAction = requestMetrics.handlers().get("ActionsController.skipAction");
+        assertThat(skipAction.latency().count()).isEqualTo(1);
+        assertThat(skipAction.latency().maxMicros()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(50));
+        assertThat(skipAction.sqlStatements()).isEqualTo(1);
+    }
+
+    @Test
+    public void skipAction_failsTheRequest_whenTheActionThrowsAnError() throws Exception {
+        MockHttpSession session = givenSinglePlayerGame(10, 10);
+        StackOverflowError error = new StackOverflowError();
+        when(mockGameRepository.findOne("gamename")).thenThrow(error);
+
+        MvcResult started = mockMvc.perform(post("/actions/skip-action").session(session))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        assertThat(started.getAsyncResult(5000)).isSameAs(error);
+    }
+
+    /**
+     * Actions answer asynchronously once their game's shard has run them.
+     */
+    private ResultActions performAction(MockHttpServletRequestBuilder action) throws Exception {
+        MvcResult started = mockMvc.perform(action).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
+
+    /**
+     * A game whose only player is always active, owning territories 7 and 9, which neighbor each
+     * other. Returns that player's session.
+     */
+    private MockHttpSession givenSinglePlayerGame(int troopsOnSeven, int troopsOnNine) {
+        Player player = Player.builder()
+                .playerId(1L)
+                .playerNumber(1)
+                .playerTerritoriesList(Arrays.asList(
+                        PlayerTerritory.builder().id(1L).playerId(1L).territoryId(7L).troops(troopsOnSeven).territory(Territory.builder().south(9L).build()).build(),
+                        PlayerTerritory.builder().id(2L).playerId(1L).territoryId(9L).troops(troopsOnNine).territory(Territory.builder().north(7L).build()).build()))
+                .remainingActions(3)
+                .build();
+        givenGame(Game.builder().gameName("gamename").players(Arrays.asList(player)).started(true).turnNumber(1).build());
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(SESSION_PLAYER_NUMBER_FIELD, 1);
+        session.setAttribute(SESSION_GAME_NAME_FIELD, "gamename");
+        return session;
+    }
+
+    private static String moveRequest(long moveFrom, long moveTo, Long expectedVersion) throws Exception {
+        return new ObjectMapper().writeValueAsString(ActionsController.MoveRequest.builder()
+                .moveFrom(moveFrom).moveTo(moveTo).numberOfTroops(1).expectedVersion(expectedVersion).build());
+    }
+
+    private void givenGame(Game game) {
+        List<PlayerTerritory> playerTerritories = new ArrayList<>();
+        game.getPlayers().stream()
+                .filter(player -> player.getPlayerTerritoriesList() != null)
+                .forEach(player -> playerTerritories.addAll(player.getPlayerTerritoriesList()));
+        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        when(mockPlayerRepository.findPlayersByGameName("gamename")).thenReturn(game.getPlayers());
+        when(mockPlayerTerritoryRepository.findByGameName("gamename")).thenReturn(playerTerritories);
+        when(mockTerritoryRepository.findAll()).thenReturn(playerTerritories.stream()
+                .map(playerTerritory -> {
+                    Territory territory = playerTerritory.getTerritory();
+                    territory.setTerritoryId(playerTerritory.getTerritoryId());
+                    return territory;
+                })
+                .collect(Collectors.toList()));
     }
-}
\ No newline at end of file
+}
@@ -1,24 +1,51 @@
 package org.cost.board;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cost.LinkFactory;
 import org.cost.game.Game;
 import org.cost.game.GameRepository;
+import org.cost.game.GameState;
+import org.cost.game.GameStateChangedEvent;
+import org.cost.game.GameStateService;
+import org.cost.game.WriteBehindService;
 import org.cost.player.*;
+import org.cost.territory.MapTopologyRegistry;
+import org.cost.territory.Territory;
+import org.cost.territory.TerritoryRepository;
 import org.junit.Before;
 import org.junit.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 
+import static org.hamcrest.Matchers.endsWith;
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 public class BoardControllerTest {
@@ -27,13 +54,24 @@ public class BoardControllerTest {
     private PlayerRepository mockPlayerRepository;
     private MockMvc mockMvc;
     private GameRepository mockGameRepository;
+    private WriteBehindService mockWriteBehindService;
+    private TerritoryRepository mockTerritoryRepository;
+    private GameStateService gameStateService;
+    private BoardController boardController;
+    private ObjectMapper objectMapper;
 
     @Before
     public void setup() {
+        mockWriteBehindService = mock(WriteBehindService.class);
         mockPlayerTerritoryRepository = mock(PlayerTerritoryRepository.class);
         mockPlayerRepository = mock(PlayerRepository.class);
         mockGameRepository = mock(GameRepository.class);
-        BoardController boardController = new BoardController(mockPlayerTerritoryRepository, mockPlayerRepository, mockGameRepository);
+        mockTerritoryRepository = mock(TerritoryRepository.class);
+        objectMapper = spy(new ObjectMapper());
+        gameStateService = new GameStateService(mockGameRepository, mockPlayerRepository,
+                mockPlayerTerritoryRepository, mockWriteBehindService, new MapTopologyRegistry(mockTerritoryRepository),
+                mockEventPublisherForwardingTo(() -> boardController));
+        boardController = new BoardController(gameStateService, new LinkFactory(), objectMapper, 30000);
 
         mockMvc = MockMvcBuilders.standaloneSetup(boardController).build();
     }
@@ -48,17 +86,9 @@ public class BoardControllerTest {
 
     @Test
     public void getBoard_returnsBoardDetails() throws Exception {
-        List<PlayerTerritory> territories = Arrays.asList(
-                PlayerTerritory.builder().gameName("gamename").territoryId(1L).troops(2).playerId(3L).territoryName("Cliffs 1").build(),
-                PlayerTerritory.builder().gameName("gamename").territoryId(2L).troops(3).playerId(3L).territoryName("Cliffs 2").supplyDepotTerritory(true).build());
-        List<PlayerTerritory> territories2 = Arrays.asList(
-                PlayerTerritory.builder().gameName("gamename").territoryId(3L).troops(7).playerId(2L).territoryName("Hills 1").build(),
-                PlayerTerritory.builder().gameName("gamename").territoryId(9L).troops(0).playerId(2L).territoryName("Island 4").supplyDepotTerritory(true).build(),
-                PlayerTerritory.builder().gameName("gamename").territoryId(4L).troops(14).playerId(2L).territoryName("Hills 2").supplyDepotTerritory(true).build());
         Player player1 = Player.builder()
                 .gameName("gamename")
                 .name("player1")
-                .playerTerritoriesList(territories)
                 .playerId(3L)
                 .playerNumber(1)
                 .remainingActions(3)
@@ -66,7 +96,6 @@ public class BoardControllerTest {
         Player player2 = Player.builder()
                 .gameName("gamename")
                 .name("player2")
-                .playerTerritoriesList(territories2)
                 .playerId(2L)
                 .playerNumber(2)
                 .remainingActions(0)
@@ -76,6 +105,9 @@ public class BoardControllerTest {
                 player2);
 
         when(mockPlayerRepository.findPlayersByGameName("gamename")).thenReturn(players);
+        when(mockTerritoryRepository.findAll()).thenReturn(Arrays.asList(
+                Territory.builder().territoryId(1L).name("Location 1").east(2L).build(),
+                Territory.builder().territoryId(2L).name("Location 2").west(1L).build()));
 
         when(mockPlayerTerritoryRepository.findByGameName("gamename")).thenReturn(Arrays.asList(
                 PlayerTerritory.builder()
@@ -132,10 +164,10 @@ public class BoardControllerTest {
                 "  \"players\": [\n" +
                 "    {\n" +
                 "      \"name\": \"player1\",\n" +
-                "      \"troops\": 5,\n" +
-                "      \"territories\": 2,\n" +
+                "      \"troops\": 11,\n" +
+                "      \"territories\": 1,\n" +
                 "      \"playerNumber\": 1,\n" +
-                "      \"supplyDepots\": 1,\n" +
+                "      \"supplyDepots\": 0,\n" +
                 "      \"links\": [\n" +
                 "        {\n" +
                 "          \"rel\": \"self\",\n" +
@@ -145,10 +177,10 @@ public class BoardControllerTest {
                 "    },\n" +
                 "    {\n" +
                 "      \"name\": \"player2\",\n" +
-                "      \"troops\": 21,\n" +
+                "      \"troops\": 3,\n" +
                 "      \"playerNumber\": 2,\n" +
-                "      \"territories\": 3,\n" +
-                "      \"supplyDepots\": 2,\n" +
+                "      \"territories\": 1,\n" +
+                "      \"supplyDepots\": 1,\n" +
                 "      \"links\": [\n" +
                 "        {\n" +
                 "          \"rel\": \"self\",\n" +
@@ -162,4 +194,250 @@ public class BoardControllerTest {
                 "  \"remainingActions\": 3\n" +
                 "}", actualResponse, JSONCompareMode.LENIENT);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getBoard_returns304_whenETagStillMatches() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(1);
+
+        String eTag = mockMvc.perform(get("/board").session(mockHttpSession))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        String body = mockMvc.perform(get("/board").session(mockHttpSession).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals("", body);
+        verify(mockGameRepository, times(1)).findOne("gamename");
+    }
+
+    @Test
+    public void getBoard_returnsNewSnapshot_afterStateChanges() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(1);
+        String eTag = mockMvc.perform(get("/board").session(mockHttpSession))
+                .andReturn().getResponse().getHeader("ETag");
+
+        GameState game = gameStateService.getGameState("gamename");
+        synchronized (game) {
+            game.spendAction(game.slotOf(1));
+        }
+
+        String actualResponse = mockMvc.perform(get("/board").session(mockHttpSession).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JSONAssert.assertEquals("{\"remainingActions\": 2}", actualResponse, JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    public void getBoard_encodesEachPlayersViewOnce_perVersion() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(1);
+        byte[] first = mockMvc.perform(get("/board").session(mockHttpSession))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] second = mockMvc.perform(get("/board").session(mockHttpSession))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertArrayEquals(first, second);
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+
+        GameState game = gameStateService.getGameState("gamename");
+        synchronized (game) {
+            game.spendAction(game.slotOf(1));
+        }
+        mockMvc.perform(get("/board").session(mockHttpSession)).andExpect(status().isOk());
+
+        verify(objectMapper, times(2)).writeValueAsBytes(any());
+    }
+
+    @Test
+    public void getBoard_tagsEachPlayersViewSeparately() throws Exception {
+        MockHttpSession player1Session = givenStartedGameWithSessionFor(1);
+        MockHttpSession player2Session = new MockHttpSession();
+        player2Session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
+        player2Session.setAttribute(PlayerController.SESSION_PLAYER_NUMBER_FIELD, 2);
+        String eTag = mockMvc.perform(get("/board").session(player1Session))
+                .andReturn().getResponse().getHeader("ETag");
+
+        String actualResponse = mockMvc.perform(get("/board").session(player2Session).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JSONAssert.assertEquals("{\"playerNumber\": 2, \"activePlayer\": 1}", actualResponse, JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    public void getBoardChanges_answersAtOnce_whenClientIsBehind() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(1);
+        long version = gameStateService.getGameState("gamename").version();
+
+        MvcResult mvcResult = mockMvc.perform(get("/board/changes").param("since", String.valueOf(version - 1)).session(mockHttpSession))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + version + "-1-json\""));
+    }
+
+    @Test
+    public void getBoardChanges_parksUntilGameIsPersistedAtNewVersion() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(2);
+        GameState game = gameStateService.getGameState("gamename");
+
+        MvcResult mvcResult = mockMvc.perform(get("/board/changes").param("since", String.valueOf(game.version())).session(mockHttpSession))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertFalse(WebAsyncUtils.getAsyncManager(mvcResult.getRequest()).hasConcurrentResult());
+
+        synchronized (game) {
+            game.spendAction(game.slotOf(1));
+        }
+        gameStateService.persist(game);
+
+        String actualResponse = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JSONAssert.assertEquals("{\"playerNumber\": 2, \"remainingActions\": 2}", actualResponse, JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    public void getBoardChanges_forgetsTheGame_onceItsLastWaiterCompletes() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(2);
+        GameState game = gameStateService.getGameState("gamename");
+
+        MvcResult mvcResult = mockMvc.perform(get("/board/changes").param("since", String.valueOf(game.version())).session(mockHttpSession))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(1, boardController.gamesWithWaiters());
+
+        synchronized (game) {
+            game.spendAction(game.slotOf(1));
+        }
+        gameStateService.persist(game);
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk());
+
+        assertEquals(0, boardController.gamesWithWaiters());
+    }
+
+    @Test
+    public void getBoard_writesFixedWidthBinaryBoard_whenAccepted() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(2);
+        MockMvc negotiatingMockMvc = MockMvcBuilders.standaloneSetup(boardController)
+                .setMessageConverters(new ByteArrayHttpMessageConverter(), new MappingJackson2HttpMessageConverter(),
+                        new BoardMessageConverter())
+                .build();
+
+        byte[] body = negotiatingMockMvc.perform(get("/board").accept(BoardMessageConverter.BOARD_MEDIA_TYPE).session(mockHttpSession))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BoardMessageConverter.BOARD_MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        assertEquals(1, in.readUnsignedByte());
+        assertEquals(2, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(1, in.readUnsignedByte());
+        assertEquals(3, in.readUnsignedByte());
+        assertEquals(2, in.readUnsignedByte());
+        assertEquals(2, in.readUnsignedShort());
+        assertEquals(1, in.readUnsignedByte());
+        assertEquals("player1", in.readUTF());
+        assertEquals(11, in.readUnsignedShort());
+        assertEquals(1, in.readUnsignedShort());
+        assertEquals(0, in.readUnsignedByte());
+        in.skipBytes(1 + 2 + "player2".length() + 2 + 2 + 1);
+        assertEquals(1, in.readUnsignedShort());
+        assertEquals(1, in.readUnsignedByte());
+        assertEquals(0, in.readUnsignedByte());
+        assertEquals(11, in.readUnsignedShort());
+        assertEquals(2, in.readUnsignedShort());
+        assertEquals(2, in.readUnsignedByte());
+        in.skipBytes(1);
+        assertEquals(3, in.readUnsignedShort());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void getBoard_staysJson_whenBinaryBoardIsNotAccepted() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(2);
+        MockMvc negotiatingMockMvc = MockMvcBuilders.standaloneSetup(boardController)
+                .setMessageConverters(new ByteArrayHttpMessageConverter(), new MappingJackson2HttpMessageConverter(),
+                        new BoardMessageConverter())
+                .build();
+
+        negotiatingMockMvc.perform(get("/board").accept(MediaType.ALL).session(mockHttpSession))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void getBoard_tagsJsonAndBinaryBoardsApart_andVariesByAccept() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(2);
+        MockMvc negotiatingMockMvc = MockMvcBuilders.standaloneSetup(boardController)
+                .setMessageConverters(new ByteArrayHttpMessageConverter(), new MappingJackson2HttpMessageConverter(),
+                        new BoardMessageConverter())
+                .build();
+
+        String jsonETag = negotiatingMockMvc.perform(get("/board").accept(MediaType.APPLICATION_JSON).session(mockHttpSession))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getHeader("ETag");
+        String binaryETag = negotiatingMockMvc.perform(get("/board").accept(BoardMessageConverter.BOARD_MEDIA_TYPE)
+                .session(mockHttpSession).header("If-None-Match", jsonETag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BoardMessageConverter.BOARD_MEDIA_TYPE))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        assertNotEquals(jsonETag, binaryETag);
+        negotiatingMockMvc.perform(get("/board").accept(BoardMessageConverter.BOARD_MEDIA_TYPE)
+                .session(mockHttpSession).header("If-None-Match", binaryETag))
+                .andExpect(status().isNotModified());
+        negotiatingMockMvc.perform(get("/board/changes").param("since", "0").accept(BoardMessageConverter.BOARD_MEDIA_TYPE)
+                .session(mockHttpSession))
+                .andExpect(header().string("Vary", "Accept"));
+    }
+
+    @Test
+    public void getBoard_fallsBackToJson_whenTheBoardDoesNotFitTheBinaryLayout() throws Exception {
+        MockHttpSession mockHttpSession = givenStartedGameWithSessionFor(2);
+        when(mockPlayerTerritoryRepository.findByGameName("gamename")).thenReturn(Arrays.asList(
+                PlayerTerritory.builder().id(1L).territoryId(1L).troops(65536).playerId(3L).build(),
+                PlayerTerritory.builder().id(2L).territoryId(2L).troops(3).playerId(2L).build()));
+        MockMvc negotiatingMockMvc = MockMvcBuilders.standaloneSetup(boardController)
+                .setMessageConverters(new ByteArrayHttpMessageConverter(), new MappingJackson2HttpMessageConverter(),
+                        new BoardMessageConverter())
+                .build();
+
+        negotiatingMockMvc.perform(get("/board")
+                .accept(BoardMessageConverter.BOARD_MEDIA_TYPE, MediaType.APPLICATION_JSON).session(mockHttpSession))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("ETag", endsWith("-2-json\"")));
+    }
+
+    private ApplicationEventPublisher mockEventPublisherForwardingTo(Supplier<BoardController> controller) {
+        ApplicationEventPublisher mockEventPublisher = mock(ApplicationEventPublisher.class);
+        doAnswer(invocation -> {
+            controller.get().onGameStateChanged((GameStateChangedEvent) invocation.getArguments()[0]);
+            return null;
+        }).when(mockEventPublisher).publishEvent(any(GameStateChangedEvent.class));
+        return mockEventPublisher;
+    }
+
+    private MockHttpSession givenStartedGameWithSessionFor(int playerNumber) {
+        Player player1 = Player.builder().gameName("gamename").name("player1").playerId(3L).playerNumber(1).remainingActions(3).build();
+        Player player2 = Player.builder().gameName("gamename").name("player2").playerId(2L).playerNumber(2).remainingActions(3).build();
+        when(mockPlayerRepository.findPlayersByGameName("gamename")).thenReturn(Arrays.asList(player1, player2));
+        when(mockTerritoryRepository.findAll()).thenReturn(Arrays.asList(
+                Territory.builder().territoryId(1L).name("Location 1").east(2L).build(),
+                Territory.builder().territoryId(2L).name("Location 2").west(1L).build()));
+        when(mockPlayerTerritoryRepository.findByGameName("gamename")).thenReturn(Arrays.asList(
+                PlayerTerritory.builder().id(1L).territoryId(1L).troops(11).player(player1).build(),
+                PlayerTerritory.builder().id(2L).territoryId(2L).troops(3).player(player2).build()));
+        when(mockGameRepository.findOne("gamename")).thenReturn(Game.builder().gameName("gamename").started(true).turnNumber(1).build());
+
+        MockHttpSession mockHttpSession = new MockHttpSession();
+        mockHttpSession.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
+        mockHttpSession.setAttribute(PlayerController.SESSION_PLAYER_NUMBER_FIELD, playerNumber);
+        return mockHttpSession;
+    }
+}
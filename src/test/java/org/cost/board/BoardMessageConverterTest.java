@@ -0,0 +1,65 @@
+package org.cost.board;
+
+import org.cost.player.PlayerController;
+import org.cost.territory.TerritoryController;
+import org.junit.Test;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BoardMessageConverterTest {
+
+    @Test
+    public void write_keepsTheLargestValuesEachFieldHoldsIntact() throws Exception {
+        BoardController.BoardResponse board = boardWith(65535, 65535);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BoardMessageConverter.write(board, out);
+
+        assertThat(BoardMessageConverter.fits(board)).isTrue();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        in.skipBytes(14 + 1 + 2 + "player1".length() + 2 + 2 + 1);
+        assertThat(in.readUnsignedShort()).isEqualTo(65535);
+        in.skipBytes(2);
+        assertThat(in.readUnsignedShort()).isEqualTo(65535);
+    }
+
+    @Test
+    public void write_refusesTroopsThatWouldWrap() throws Exception {
+        assertRefused(boardWith(1, 65536));
+    }
+
+    @Test
+    public void write_refusesTerritoryIdsThatWouldWrap() throws Exception {
+        assertRefused(boardWith(65536, 1));
+    }
+
+    private static void assertRefused(BoardController.BoardResponse board) throws Exception {
+        assertThat(BoardMessageConverter.fits(board)).isFalse();
+        try {
+            BoardMessageConverter.write(board, new ByteArrayOutputStream());
+            fail("Expected Http Message Not Writable Exception");
+        } catch (HttpMessageNotWritableException expected) {
+            assertThat(expected.getMessage()).contains("does not fit");
+        }
+    }
+
+    private static BoardController.BoardResponse boardWith(int territoryId, int troops) {
+        return BoardController.BoardResponse.builder()
+                .playerNumber(1)
+                .turnNumber(1)
+                .activePlayer(1)
+                .remainingActions(3)
+                .players(Collections.singletonList(PlayerController.AllPlayersPlayerResponse.builder()
+                        .name("player1").playerNumber(1).troops(Math.min(troops, 65535)).territories(1).build()))
+                .territories(Collections.singletonList(TerritoryController.AllTerritoriesResponse.builder()
+                        .territoryId(territoryId).troops(troops).playerNumber(1).build()))
+                .build();
+    }
+}
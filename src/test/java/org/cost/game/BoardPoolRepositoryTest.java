@@ -0,0 +1,73 @@
+package org.cost.game;
+
+import org.cost.player.PlayerTerritoryRepository;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class BoardPoolRepositoryTest {
+
+    @Autowired
+    GameRepository gameRepository;
+
+    @Autowired
+    PlayerTerritoryRepository playerTerritoryRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void claim_movesAPooledBoardToTheGame_andDropsItsPlaceholder() {
+        BoardPool boardPool = new BoardPool(gameRepository, playerTerritoryRepository, transactionManager, 1, 1000);
+        boardPool.refill();
+        String board = gameRepository.findGameNamesStartingWith(BoardPool.NAME_PREFIX).get(0);
+        gameRepository.save(Game.builder().gameName("Excalibur").turnNumber(1).build());
+
+        assertThat(boardPool.claim("Excalibur")).isTrue();
+
+        assertThat(playerTerritoryRepository.findByGameName("Excalibur")).hasSize(54);
+        assertThat(playerTerritoryRepository.findByGameName(board)).isEmpty();
+        assertThat(gameRepository.findOne(board).isDeleted()).isTrue();
+    }
+
+    @Test
+    public void claim_leavesTheBoardWithItsPlaceholder_whenDroppingThePlaceholderFails() {
+        GameRepository failingGameRepository = mock(GameRepository.class, delegatesTo(gameRepository));
+        doThrow(new IllegalStateException("markDeleted failed")).when(failingGameRepository).markDeleted(anyString());
+        BoardPool boardPool = new BoardPool(failingGameRepository, playerTerritoryRepository, transactionManager, 1, 1000);
+        boardPool.refill();
+        String board = gameRepository.findGameNamesStartingWith(BoardPool.NAME_PREFIX).get(0);
+        gameRepository.save(Game.builder().gameName("Excalibur").turnNumber(1).build());
+
+        try {
+            boardPool.claim("Excalibur");
+            fail("Expected the claim to fail");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertThat(playerTerritoryRepository.findByGameName("Excalibur")).isEmpty();
+        assertThat(playerTerritoryRepository.findByGameName(board)).hasSize(54);
+        assertThat(gameRepository.findOne(board).isDeleted()).isFalse();
+    }
+
+    @After
+    public void teardown() {
+        playerTerritoryRepository.deleteAll();
+        gameRepository.deleteAll();
+    }
+}
@@ -0,0 +1,102 @@
+package org.cost.game;
+
+import org.cost.player.PlayerTerritoryRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class BoardPoolTest {
+
+    private GameRepository mockGameRepository;
+    private PlayerTerritoryRepository mockPlayerTerritoryRepository;
+    private PlatformTransactionManager mockTransactionManager;
+    private BoardPool boardPool;
+
+    @Before
+    public void setup() {
+        mockGameRepository = mock(GameRepository.class);
+        mockPlayerTerritoryRepository = mock(PlayerTerritoryRepository.class);
+        mockTransactionManager = mock(PlatformTransactionManager.class);
+        boardPool = new BoardPool(mockGameRepository, mockPlayerTerritoryRepository, mockTransactionManager, 3, 1000);
+    }
+
+    @Test
+    public void refill_provisionsBoardsUnderPlaceholderGames_untilThePoolIsFull() {
+        boardPool.refill();
+
+        ArgumentCaptor<Game> games = ArgumentCaptor.forClass(Game.class);
+        verify(mockGameRepository, times(3)).save(games.capture());
+        assertThat(games.getAllValues()).extracting(Game::getGameName)
+                .allMatch(name -> name.startsWith(BoardPool.NAME_PREFIX))
+                .doesNotHaveDuplicates();
+        games.getAllValues().forEach(game -> verify(mockPlayerTerritoryRepository).createForGame(game.getGameName()));
+        assertThat(boardPool.size()).isEqualTo(3);
+
+        boardPool.refill();
+
+        verify(mockGameRepository, times(3)).save(any(Game.class));
+    }
+
+    @Test
+    public void claim_movesAPooledBoardToTheGame_andDropsItsPlaceholder() {
+        when(mockGameRepository.findGameNamesStartingWith(BoardPool.NAME_PREFIX))
+                .thenReturn(Arrays.asList("~board-pool-a", "~board-pool-b"));
+        when(mockPlayerTerritoryRepository.moveToGame("~board-pool-a", "gamename")).thenReturn(54);
+        boardPool.adopt();
+
+        boolean claimed = boardPool.claim("gamename");
+
+        assertThat(claimed).isTrue();
+        verify(mockGameRepository).markDeleted("~board-pool-a");
+        assertThat(boardPool.size()).isEqualTo(1);
+        assertThat(boardPool.hits()).isEqualTo(1);
+        assertThat(boardPool.misses()).isEqualTo(0);
+    }
+
+    @Test
+    public void claim_movesTheBoardAndDropsItsPlaceholder_inOneTransaction() {
+        when(mockGameRepository.findGameNamesStartingWith(BoardPool.NAME_PREFIX))
+                .thenReturn(Arrays.asList("~board-pool-a"));
+        when(mockPlayerTerritoryRepository.moveToGame("~board-pool-a", "gamename")).thenReturn(54);
+        boardPool.adopt();
+
+        boardPool.claim("gamename");
+
+        InOrder inOrder = inOrder(mockTransactionManager, mockPlayerTerritoryRepository, mockGameRepository);
+        inOrder.verify(mockTransactionManager).getTransaction(any(TransactionDefinition.class));
+        inOrder.verify(mockPlayerTerritoryRepository).moveToGame("~board-pool-a", "gamename");
+        inOrder.verify(mockGameRepository).markDeleted("~board-pool-a");
+        inOrder.verify(mockTransactionManager).commit(any(TransactionStatus.class));
+    }
+
+    @Test
+    public void claim_missesWhenThePoolIsEmpty() {
+        assertThat(boardPool.claim("gamename")).isFalse();
+
+        verify(mockPlayerTerritoryRepository, never()).moveToGame(anyString(), anyString());
+        assertThat(boardPool.misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void claim_missesWhenAPooledBoardHasNoTerritories() {
+        when(mockGameRepository.findGameNamesStartingWith(BoardPool.NAME_PREFIX))
+                .thenReturn(Arrays.asList("~board-pool-a"));
+        boardPool.adopt();
+
+        assertThat(boardPool.claim("gamename")).isFalse();
+
+        verify(mockGameRepository).markDeleted("~board-pool-a");
+        assertThat(boardPool.size()).isEqualTo(0);
+        assertThat(boardPool.misses()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,285 @@
+package org.cost.game;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cost.Exceptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GameArchiverTest {
+
+    private JdbcTemplate mockJdbcTemplate;
+    private GameStateService mockGameStateService;
+    private GameShards gameShards;
+    private GameArchiver gameArchiver;
+
+    @Before
+    public void setup() {
+        mockJdbcTemplate = mock(JdbcTemplate.class);
+        mockGameStateService = mock(GameStateService.class);
+        gameShards = new GameShards(1, 1);
+        gameArchiver = new GameArchiver(mockJdbcTemplate, mock(PlatformTransactionManager.class), mockGameStateService,
+                gameShards, new ObjectMapper(), 0, 60, 10080, 100);
+    }
+
+    @Test
+    public void compress_roundTripsEveryTable_inAFractionOfTheSpace() throws Exception {
+        Map<String, GameArchiver.ArchivedTable> tables = boardOf(54);
+
+        byte[] archive = gameArchiver.compress(tables);
+        Map<String, GameArchiver.ArchivedTable> restored = gameArchiver.decompress(archive);
+
+        assertThat(restored.keySet()).containsExactly(GameArchiver.TABLES);
+        assertThat(restored.get("Player_territory").getColumns()).isEqualTo(tables.get("Player_territory").getColumns());
+        assertThat(restored.get("Player_territory").getTypes()).isEqualTo(tables.get("Player_territory").getTypes());
+        assertThat(restored.get("Player_territory").getRows()).isEqualTo(tables.get("Player_territory").getRows());
+        assertThat(archive.length).isLessThan(new ObjectMapper().writeValueAsBytes(tables).length / 4);
+    }
+
+    @Test
+    public void archive_writesPendingChanges_thenSwapsLiveRowsForOneArchiveRow() {
+        givenLiveRows(boardOf(3));
+
+        boolean archived = gameArchiver.archive("gamename");
+
+        assertThat(archived).isTrue();
+        InOrder inOrder = inOrder(mockGameStateService, mockJdbcTemplate);
+        inOrder.verify(mockGameStateService).evict("gamename");
+        inOrder.verify(mockJdbcTemplate).update(eq(GameArchiver.INSERT_ARCHIVE), eq("gamename"), any(byte[].class));
+        inOrder.verify(mockJdbcTemplate).update("DELETE FROM Player_territory WHERE game_name = ?", "gamename");
+        inOrder.verify(mockJdbcTemplate).update("DELETE FROM Player WHERE game_name = ?", "gamename");
+        inOrder.verify(mockJdbcTemplate).update("DELETE FROM Game WHERE game_name = ?", "gamename");
+        inOrder.verify(mockGameStateService).deleted("gamename");
+    }
+
+    @Test
+    public void archive_runsOnTheGamesShard() {
+        givenLiveRows(boardOf(3));
+        List<String> threads = new ArrayList<>();
+        doAnswer(invocation -> threads.add(Thread.currentThread().getName())).when(mockGameStateService).evict("gamename");
+
+        gameArchiver.archive("gamename");
+
+        assertThat(threads).containsExactly("game-shard-0");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void archiveDue_leavesAGameForLater_whenItsShardIsFull() throws Exception {
+        when(mockJdbcTemplate.queryForList(GameArchiver.FIND_FINISHED_GAMES, String.class, 60L, 100))
+                .thenReturn(Collections.singletonList("gamename"));
+        CountDownLatch release = new CountDownLatch(1);
+        gameShards.execute("gamename", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        while (gameShards.shard(0).queueDepth() > 0) {
+            Thread.sleep(1);
+        }
+        gameShards.execute("gamename", () -> { });
+
+        try {
+            assertThat(gameArchiver.archiveDue()).isEqualTo(0);
+        } finally {
+            release.countDown();
+        }
+        verify(mockJdbcTemplate, never()).query(anyString(), any(ResultSetExtractor.class), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void archiveDue_carriesOnWithTheBatch_whenOneGameFails() {
+        when(mockJdbcTemplate.queryForList(GameArchiver.FIND_FINISHED_GAMES, String.class, 60L, 100))
+                .thenReturn(Arrays.asList("camelot", "excalibur"));
+        doThrow(new IllegalStateException("broken")).when(mockGameStateService).evict("camelot");
+        Map<String, GameArchiver.ArchivedTable> tables = boardOf(1);
+        when(mockJdbcTemplate.query(anyString(), any(ResultSetExtractor.class), anyString()))
+                .thenAnswer(invocation -> tables.get(((String) invocation.getArguments()[0])
+                        .replace("SELECT * FROM ", "").replace(" WHERE game_name = ?", "")));
+
+        assertThat(gameArchiver.archiveDue()).isEqualTo(1);
+
+        verify(mockJdbcTemplate).update(eq(GameArchiver.INSERT_ARCHIVE), eq("excalibur"), any(byte[].class));
+        verify(mockJdbcTemplate, never()).update(eq(GameArchiver.INSERT_ARCHIVE), eq("camelot"), any(byte[].class));
+    }
+
+    @Test
+    public void isArchived_countsTheArchiveRows() {
+        when(mockJdbcTemplate.queryForObject(GameArchiver.COUNT_ARCHIVE, Integer.class, "gamename")).thenReturn(1);
+        when(mockJdbcTemplate.queryForObject(GameArchiver.COUNT_ARCHIVE, Integer.class, "camelot")).thenReturn(0);
+
+        assertThat(gameArchiver.isArchived("gamename")).isTrue();
+        assertThat(gameArchiver.isArchived("camelot")).isFalse();
+    }
+
+    @Test
+    public void archive_returnsFalse_whenTheGameDoesNotExist() {
+        Map<String, GameArchiver.ArchivedTable> tables = boardOf(3);
+        tables.get("Game").getRows().clear();
+        givenLiveRows(tables);
+
+        assertThat(gameArchiver.archive("gamename")).isFalse();
+
+        verify(mockJdbcTemplate, never()).update(eq(GameArchiver.INSERT_ARCHIVE), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void restore_insertsEveryTableInForeignKeyOrder_andDropsTheArchive() {
+        givenArchive(gameArchiver.compress(boardOf(3)));
+        when(mockJdbcTemplate.queryForObject(GameArchiver.COUNT_LIVE_GAME, Integer.class, "gamename")).thenReturn(0);
+
+        boolean restored = gameArchiver.restore("gamename");
+
+        assertThat(restored).isTrue();
+        InOrder inOrder = inOrder(mockJdbcTemplate);
+        inOrder.verify(mockJdbcTemplate).batchUpdate(eq("INSERT INTO Game (game_name, turn_number) VALUES (?, ?)"),
+                anyListOf(Object[].class), any(int[].class));
+        inOrder.verify(mockJdbcTemplate).batchUpdate(eq("INSERT INTO Player (player_id, game_name) VALUES (?, ?)"),
+                anyListOf(Object[].class), any(int[].class));
+        ArgumentCaptor<List> territories = ArgumentCaptor.forClass(List.class);
+        inOrder.verify(mockJdbcTemplate).batchUpdate(
+                eq("INSERT INTO Player_territory (id, game_name, player_id, troops) VALUES (?, ?, ?, ?)"),
+                territories.capture(), eq(new int[]{Types.BIGINT, Types.VARCHAR, Types.BIGINT, Types.INTEGER}));
+        inOrder.verify(mockJdbcTemplate).update(GameArchiver.DELETE_ARCHIVE, "gamename");
+        assertThat((List<Object[]>) territories.getValue()).hasSize(3);
+        assertThat(((List<Object[]>) territories.getValue()).get(2)).containsExactly(3L, "gamename", 1L, 5);
+    }
+
+    @Test
+    public void restore_returnsFalse_whenTheGameIsNotArchived() {
+        when(mockJdbcTemplate.query(eq(GameArchiver.SELECT_ARCHIVE), any(RowMapper.class), eq("gamename")))
+                .thenReturn(Collections.emptyList());
+
+        assertThat(gameArchiver.restore("gamename")).isFalse();
+
+        verify(mockJdbcTemplate, never()).batchUpdate(anyString(), anyListOf(Object[].class), any(int[].class));
+    }
+
+    @Test
+    public void archivedValues_readBackAsTheValuesTheDriverGave() {
+        int[] types = {Types.TIMESTAMP, Types.DATE, Types.TIME, Types.BIGINT, Types.BIGINT, Types.INTEGER,
+                Types.INTEGER, Types.DECIMAL, Types.VARBINARY, Types.VARCHAR, Types.BIT, Types.INTEGER};
+        Timestamp timestamp = Timestamp.valueOf("2016-09-14 18:30:05.123456789");
+        List<Object> values = Arrays.asList(timestamp, Date.valueOf("2016-09-14"), Time.valueOf("18:30:05"),
+                7L, new BigInteger("18446744073709551615"), 3, 4294967295L, new BigDecimal("0.10"),
+                new byte[]{0, -1, 42}, "gamename", true, null);
+        List<Object> archived = new ArrayList<>();
+        List<Integer> columnTypes = new ArrayList<>();
+        for (int column = 0; column < types.length; column++) {
+            archived.add(GameArchiver.archivedValue(values.get(column), types[column]));
+            columnTypes.add(types[column]);
+        }
+        Map<String, GameArchiver.ArchivedTable> tables = new LinkedHashMap<>();
+        tables.put("Game", new GameArchiver.ArchivedTable(Collections.nCopies(types.length, "column"), columnTypes,
+                rows(archived)));
+
+        List<Object> row = gameArchiver.decompress(gameArchiver.compress(tables)).get("Game").getRows().get(0);
+        List<Object> restored = new ArrayList<>();
+        for (int column = 0; column < types.length; column++) {
+            restored.add(GameArchiver.restoredValue(row.get(column), types[column]));
+        }
+
+        for (int column = 0; column < types.length; column++) {
+            assertThat(restored.get(column)).as("column %s", column).isEqualTo(values.get(column));
+            if (values.get(column) != null) {
+                assertThat(restored.get(column)).as("column %s", column).isExactlyInstanceOf(values.get(column).getClass());
+            }
+        }
+    }
+
+    @Test
+    public void restore_refuses_whenALiveGameHasTakenTheName() {
+        givenArchive(gameArchiver.compress(boardOf(3)));
+        when(mockJdbcTemplate.queryForObject(GameArchiver.COUNT_LIVE_GAME, Integer.class, "gamename")).thenReturn(1);
+
+        try {
+            gameArchiver.restore("gamename");
+            fail("Expected Conflict Exception");
+        } catch (Exceptions.ConflictException expected) {
+            verify(mockJdbcTemplate, never()).update(GameArchiver.DELETE_ARCHIVE, "gamename");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void archiveDue_archivesEachFinishedOrIdleGameOnce() {
+        when(mockJdbcTemplate.queryForList(GameArchiver.FIND_FINISHED_GAMES, String.class, 60L, 100))
+                .thenReturn(Arrays.asList("camelot", "excalibur"));
+        when(mockJdbcTemplate.queryForList(GameArchiver.FIND_IDLE_GAMES, String.class,
+                BoardPool.NAME_PREFIX + "%", 10080L, 100))
+                .thenReturn(Arrays.asList("excalibur", "avalon"));
+        Map<String, GameArchiver.ArchivedTable> tables = boardOf(1);
+        when(mockJdbcTemplate.query(anyString(), any(ResultSetExtractor.class), anyString()))
+                .thenAnswer(invocation -> tables.get(((String) invocation.getArguments()[0])
+                        .replace("SELECT * FROM ", "").replace(" WHERE game_name = ?", "")));
+
+        assertThat(gameArchiver.archiveDue()).isEqualTo(3);
+
+        verify(mockGameStateService, times(1)).evict("excalibur");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenLiveRows(Map<String, GameArchiver.ArchivedTable> tables) {
+        for (String table : GameArchiver.TABLES) {
+            when(mockJdbcTemplate.query(eq("SELECT * FROM " + table + " WHERE game_name = ?"),
+                    any(ResultSetExtractor.class), eq("gamename"))).thenReturn(tables.get(table));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenArchive(byte[] archive) {
+        when(mockJdbcTemplate.query(eq(GameArchiver.SELECT_ARCHIVE), any(RowMapper.class), eq("gamename")))
+                .thenReturn(Collections.singletonList(archive));
+    }
+
+    private Map<String, GameArchiver.ArchivedTable> boardOf(int territories) {
+        Map<String, GameArchiver.ArchivedTable> tables = new LinkedHashMap<>();
+        tables.put("Game", new GameArchiver.ArchivedTable(Arrays.asList("game_name", "turn_number"),
+                Arrays.asList(Types.VARCHAR, Types.INTEGER), rows(Arrays.asList("gamename", 7))));
+        tables.put("Player", new GameArchiver.ArchivedTable(Arrays.asList("player_id", "game_name"),
+                Arrays.asList(Types.BIGINT, Types.VARCHAR), rows(Arrays.asList(1, "gamename"), Arrays.asList(2, "gamename"))));
+        List<List<Object>> territoryRows = new ArrayList<>();
+        for (int territory = 1; territory <= territories; territory++) {
+            territoryRows.add(Arrays.asList(territory, "gamename", territory % 2 == 0 ? 2 : 1, 5));
+        }
+        tables.put("Player_territory", new GameArchiver.ArchivedTable(
+                Arrays.asList("id", "game_name", "player_id", "troops"),
+                Arrays.asList(Types.BIGINT, Types.VARCHAR, Types.BIGINT, Types.INTEGER), territoryRows));
+        return tables;
+    }
+
+    @SafeVarargs
+    private static List<List<Object>> rows(List<Object>... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+}
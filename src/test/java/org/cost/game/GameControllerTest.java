@@ -14,6 +14,7 @@ import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.ArrayList;
@@ -25,9 +26,11 @@ import java.util.stream.Collectors;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 public class GameControllerTest {
@@ -48,7 +51,7 @@ public class GameControllerTest {
         mockPlayerTerritoryRepository = mock(PlayerTerritoryRepository.class);
         mockSuppliedStatusService = mock(SuppliedStatusService.class);
         mockGameService = mock(GameService.class);
-        GameController gameController = new GameController(mockRepository, mockTerritoryRepository, mockPlayerTerritoryRepository, mockSuppliedStatusService, mockGameService);
+        GameController gameController = new GameController(mockRepository, mockTerritoryRepository, mockPlayerTerritoryRepository, mockSuppliedStatusService, mockGameService, new GameShards(1, 16));
         mockMvc = MockMvcBuilders.standaloneSetup(gameController).build();
     }
 
@@ -119,7 +122,10 @@ public class GameControllerTest {
     public void postToStartGameEndpoint_callsStartGameService() throws Exception {
         MockHttpSession mockHttpSession = new MockHttpSession();
 
-        mockMvc.perform(post("/game/start").contentType(MediaType.APPLICATION_JSON).session(mockHttpSession))
+        MvcResult started = mockMvc.perform(post("/game/start").contentType(MediaType.APPLICATION_JSON).session(mockHttpSession))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
                 .andExpect(status().isOk());
 
         verify(mockGameService).startGame(mockHttpSession);
@@ -161,7 +167,7 @@ public class GameControllerTest {
         mockMvc.perform(post("/game/start").contentType(MediaType.APPLICATION_JSON).session(session));
 
         InOrder inOrder = inOrder(mockSuppliedStatusService);
-        inOrder.verify(mockSuppliedStatusService).markUnsupplied();
+        inOrder.verify(mockSuppliedStatusService).markUnsupplied("gamename");
         ArgumentCaptor<List> listArgumentCaptor = ArgumentCaptor.forClass(List.class);
         inOrder.verify(mockSuppliedStatusService).markSupplied(listArgumentCaptor.capture(), eq(playerTerritories));
 
@@ -0,0 +1,47 @@
+package org.cost.game;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GameDataServiceTest {
+
+    private GameRepository mockGameRepository;
+    private GameDataService gameDataService;
+
+    @Before
+    public void setup() {
+        mockGameRepository = mock(GameRepository.class);
+        gameDataService = new GameDataService(mockGameRepository);
+    }
+
+    @Test
+    public void saveGame_savesTheGame() {
+        Game game = Game.builder().gameName("Excalibur").turnNumber(1).build();
+
+        gameDataService.saveGame(game);
+
+        verify(mockGameRepository).save(game);
+    }
+
+    @Test
+    public void gameExistsWithName_onlyCountsLiveGames() {
+        when(mockGameRepository.existsLive("Excalibur")).thenReturn(true);
+        when(mockGameRepository.existsLive("Camelot")).thenReturn(false);
+
+        assertThat(gameDataService.gameExistsWithName("Excalibur")).isTrue();
+        assertThat(gameDataService.gameExistsWithName("Camelot")).isFalse();
+    }
+
+    @Test
+    public void gameNameTaken_countsDeletedGamesThatAreNotYetPurged() {
+        when(mockGameRepository.existsLive("Excalibur")).thenReturn(false);
+        when(mockGameRepository.exists("Excalibur")).thenReturn(true);
+
+        assertThat(gameDataService.gameNameTaken("Excalibur")).isTrue();
+    }
+}
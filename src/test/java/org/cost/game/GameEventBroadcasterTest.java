@@ -0,0 +1,22 @@
+package org.cost.game;
+
+import org.junit.Test;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class GameEventBroadcasterTest {
+
+    @Test
+    public void onGameStateChanged_sendsEventToTheGamesTopic() {
+        SimpMessageSendingOperations mockMessagingTemplate = mock(SimpMessageSendingOperations.class);
+        GameStateChangedEvent event = new GameStateChangedEvent("Excalibur", 7L, 2, 2, 3, Collections.emptyList());
+
+        new GameEventBroadcaster(mockMessagingTemplate).onGameStateChanged(event);
+
+        verify(mockMessagingTemplate).convertAndSend("/topic/games/Excalibur", event);
+    }
+}
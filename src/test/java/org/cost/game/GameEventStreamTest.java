@@ -0,0 +1,179 @@
+package org.cost.game;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cost.player.PlayerController;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class GameEventStreamTest {
+
+    private ObjectMapper objectMapper;
+    private Deque<Runnable> delivery;
+    private GameEventStream gameEventStream;
+    private MockMvc mockMvc;
+    private MockHttpSession session;
+
+    @Before
+    public void setup() {
+        objectMapper = spy(new ObjectMapper());
+        delivery = new ArrayDeque<>();
+        gameEventStream = new GameEventStream(objectMapper, mock(GameStateService.class), Runnable::run, 60000, 2, 1);
+        mockMvc = MockMvcBuilders.standaloneSetup(new GameEventsController(gameEventStream)).build();
+        session = new MockHttpSession();
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "Excalibur");
+    }
+
+    @Test
+    public void subscribers_receiveEachEventFramedOnceWithVersionAsId() throws Exception {
+        MockHttpServletResponse first = subscribe(null);
+        MockHttpServletResponse second = subscribe(null);
+
+        gameEventStream.onGameStateChanged(event(7L));
+
+        String frame = "id:7\nevent:game-state\ndata:" + new ObjectMapper().writeValueAsString(event(7L)) + "\n\n";
+        assertThat(first.getContentAsString()).isEqualTo(frame);
+        assertThat(second.getContentAsString()).isEqualTo(frame);
+        verify(objectMapper, times(1)).writeValueAsString(any(GameStateChangedEvent.class));
+    }
+
+    @Test
+    public void reconnect_replaysOnlyEventsAfterLastEventId() throws Exception {
+        subscribe(null);
+        gameEventStream.onGameStateChanged(event(7L));
+        gameEventStream.onGameStateChanged(event(8L));
+        gameEventStream.onGameStateChanged(event(9L));
+
+        String replayed = subscribe(8L).getContentAsString();
+
+        assertThat(replayed).startsWith("id:9\n").doesNotContain("id:8\n").doesNotContain("id:7\n");
+    }
+
+    @Test
+    public void reconnect_isToldToResync_whenMissedEventsWereDropped() throws Exception {
+        subscribe(null);
+        gameEventStream.onGameStateChanged(event(7L));
+        gameEventStream.onGameStateChanged(event(8L));
+        gameEventStream.onGameStateChanged(event(9L));
+
+        assertThat(subscribe(6L).getContentAsString()).isEqualTo("event:resync\ndata:resync\n\n");
+        assertThat(subscribe(7L).getContentAsString()).contains("id:8\n", "id:9\n");
+    }
+
+    @Test
+    public void events_areOnlyStreamedToPlayersOfTheGame() throws Exception {
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "Camelot");
+
+        mockMvc.perform(get("/games/Excalibur/events").session(session))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void subscriberThatStopsReading_isDisconnected_withoutHoldingUpThePublisher() throws Exception {
+        gameEventStream = new GameEventStream(objectMapper, mock(GameStateService.class), delivery::addLast, 60000, 2, 1);
+        mockMvc = MockMvcBuilders.standaloneSetup(new GameEventsController(gameEventStream)).build();
+        MvcResult stalled = subscribeForResult(null);
+
+        for (long version = 7; version <= 11; version++) {
+            gameEventStream.onGameStateChanged(event(version));
+        }
+        assertThat(stalled.getResponse().getContentAsString()).isEmpty();
+        assertThat(delivery).hasSize(1);
+        while (!delivery.isEmpty()) {
+            delivery.removeFirst().run();
+        }
+
+        assertThat(stalled.getResponse().getContentAsString()).isEmpty();
+        assertThat(WebAsyncUtils.getAsyncManager(stalled.getRequest()).hasConcurrentResult()).isTrue();
+    }
+
+    @Test
+    public void subscriber_isDisconnected_whenTheDeliveryPoolIsSaturated() throws Exception {
+        gameEventStream = new GameEventStream(objectMapper, mock(GameStateService.class), runnable -> {
+            throw new RejectedExecutionException();
+        }, 60000, 2, 1);
+        mockMvc = MockMvcBuilders.standaloneSetup(new GameEventsController(gameEventStream)).build();
+        MvcResult dropped = subscribeForResult(null);
+
+        gameEventStream.onGameStateChanged(event(7L));
+
+        assertThat(dropped.getResponse().getContentAsString()).isEmpty();
+        assertThat(WebAsyncUtils.getAsyncManager(dropped.getRequest()).hasConcurrentResult()).isTrue();
+    }
+
+    @Test
+    public void channel_isDropped_whenItsLastSubscriberLeaves_andTheGameIsNotInMemory() throws Exception {
+        MvcResult first = subscribeForResult(null);
+        MvcResult second = subscribeForResult(null);
+
+        disconnect(first);
+        assertThat(gameEventStream.channelCount()).isEqualTo(1);
+        disconnect(second);
+
+        assertThat(gameEventStream.channelCount()).isZero();
+    }
+
+    @Test
+    public void channel_isKept_whileTheGameIsInMemory_untilTheGameIsUnloaded() throws Exception {
+        GameStateService mockGameStateService = mock(GameStateService.class);
+        when(mockGameStateService.getActiveGameState("Excalibur")).thenReturn(mock(GameState.class));
+        gameEventStream = new GameEventStream(objectMapper, mockGameStateService, Runnable::run, 60000, 2, 1);
+        mockMvc = MockMvcBuilders.standaloneSetup(new GameEventsController(gameEventStream)).build();
+        MvcResult subscriber = subscribeForResult(null);
+        MvcResult leaving = subscribeForResult(null);
+
+        disconnect(leaving);
+        assertThat(gameEventStream.channelCount()).isEqualTo(1);
+        gameEventStream.onGameUnloaded(new GameUnloadedEvent("Excalibur"));
+
+        assertThat(gameEventStream.channelCount()).isZero();
+        assertThat(WebAsyncUtils.getAsyncManager(subscriber.getRequest()).hasConcurrentResult()).isTrue();
+    }
+
+    private MockHttpServletResponse subscribe(Long lastEventId) throws Exception {
+        return subscribeForResult(lastEventId).getResponse();
+    }
+
+    private MvcResult subscribeForResult(Long lastEventId) throws Exception {
+        return mockMvc.perform(lastEventId == null
+                ? get("/games/Excalibur/events").session(session)
+                : get("/games/Excalibur/events").session(session).header("Last-Event-ID", lastEventId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private static void disconnect(MvcResult subscriber) throws Exception {
+        MockAsyncContext asyncContext = (MockAsyncContext) subscriber.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onComplete(new AsyncEvent(asyncContext));
+        }
+    }
+
+    private static GameStateChangedEvent event(long version) {
+        return new GameStateChangedEvent("Excalibur", version, 1, 1, 3, Collections.emptyList());
+    }
+}
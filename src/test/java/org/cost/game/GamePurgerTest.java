@@ -0,0 +1,63 @@
+package org.cost.game;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class GamePurgerTest {
+
+    private JdbcTemplate mockJdbcTemplate;
+    private GamePurger gamePurger;
+
+    @Before
+    public void setup() {
+        mockJdbcTemplate = mock(JdbcTemplate.class);
+        gamePurger = new GamePurger(mockJdbcTemplate, 5000, 100);
+    }
+
+    @Test
+    public void purge_deletesChildRowsInChunks_beforeTheGameRow() {
+        when(mockJdbcTemplate.queryForList(GamePurger.FIND_DELETED_GAMES, String.class, 100))
+                .thenReturn(Collections.singletonList("gamename"));
+        when(mockJdbcTemplate.update(GamePurger.DELETE_PLAYER_TERRITORIES, "gamename", 100)).thenReturn(100, 100, 37);
+        when(mockJdbcTemplate.update(GamePurger.DELETE_PLAYERS, "gamename", 100)).thenReturn(4);
+        when(mockJdbcTemplate.update(GamePurger.DELETE_GAME, "gamename")).thenReturn(1);
+
+        int purged = gamePurger.purge();
+
+        assertThat(purged).isEqualTo(1);
+        InOrder inOrder = inOrder(mockJdbcTemplate);
+        inOrder.verify(mockJdbcTemplate, times(3)).update(GamePurger.DELETE_PLAYER_TERRITORIES, "gamename", 100);
+        inOrder.verify(mockJdbcTemplate, times(1)).update(GamePurger.DELETE_PLAYERS, "gamename", 100);
+        inOrder.verify(mockJdbcTemplate).update(GamePurger.DELETE_GAME, "gamename");
+    }
+
+    @Test
+    public void purge_handlesEveryDeletedGame() {
+        when(mockJdbcTemplate.queryForList(GamePurger.FIND_DELETED_GAMES, String.class, 100))
+                .thenReturn(Arrays.asList("camelot", "excalibur"));
+        when(mockJdbcTemplate.update(eq(GamePurger.DELETE_GAME), anyString())).thenReturn(1);
+
+        assertThat(gamePurger.purge()).isEqualTo(2);
+
+        verify(mockJdbcTemplate).update(GamePurger.DELETE_PLAYER_TERRITORIES, "camelot", 100);
+        verify(mockJdbcTemplate).update(GamePurger.DELETE_PLAYER_TERRITORIES, "excalibur", 100);
+    }
+
+    @Test
+    public void purge_doesNothing_whenNoGameIsDeleted() {
+        when(mockJdbcTemplate.queryForList(GamePurger.FIND_DELETED_GAMES, String.class, 100))
+                .thenReturn(Collections.emptyList());
+
+        assertThat(gamePurger.purge()).isEqualTo(0);
+
+        verify(mockJdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+}
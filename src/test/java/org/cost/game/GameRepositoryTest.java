@@ -1,16 +1,28 @@
 package org.cost.game;
 
+import org.cost.Exceptions;
 import org.cost.player.Player;
 import org.cost.player.PlayerRepository;
+import org.cost.player.PlayerTerritoryRepository;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -23,6 +35,24 @@ public class GameRepositoryTest {
     @Autowired
     PlayerRepository playerRepository;
 
+    @Autowired
+    PlayerTerritoryRepository playerTerritoryRepository;
+
+    @Autowired
+    GameService gameService;
+
+    @Autowired
+    GameController gameController;
+
+    @Autowired
+    GamePurger gamePurger;
+
+    @Autowired
+    GameArchiver gameArchiver;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
     @Test
     public void deleteGame_deletesPlayers_whenPlayersExist() {
         Game excalibur = Game.builder().gameName("Excalibur").build();
@@ -34,8 +64,156 @@ public class GameRepositoryTest {
         gameRepository.delete("Excalibur");
     }
 
+    @Test
+    public void createGame_savesTheGameWithATerritoryRowPerMapTerritory() throws Exception {
+        gameService.createGame(CreateGameRequest.builder().gameName("Excalibur").build());
+
+        Game game = gameRepository.findOne("Excalibur");
+        assertThat(game.getTurnNumber()).isEqualTo(1);
+        assertThat(game.isDeleted()).isFalse();
+        assertThat(playerTerritoryRepository.findByGameName("Excalibur")).hasSize(54);
+    }
+
+    @Test
+    public void existsLive_ignoresDeletedGames() {
+        gameRepository.save(Game.builder().gameName("Excalibur").build());
+        gameRepository.save(Game.builder().gameName("Camelot").build());
+
+        gameRepository.markDeleted("Camelot");
+
+        assertThat(gameRepository.existsLive("Excalibur")).isTrue();
+        assertThat(gameRepository.existsLive("Camelot")).isFalse();
+        assertThat(gameRepository.existsLive("Avalon")).isFalse();
+    }
+
+    @Test
+    public void markDeleted_keepsRowsUntilThePurgerRemovesThem() {
+        gameRepository.save(Game.builder().gameName("Excalibur").build());
+        playerRepository.save(Player.builder().name("zxmbies").gameName("Excalibur").build());
+
+        gameRepository.markDeleted("Excalibur");
+
+        assertThat(gameRepository.findOne("Excalibur").isDeleted()).isTrue();
+        assertThat(playerRepository.findPlayersByGameName("Excalibur")).hasSize(1);
+
+        assertThat(gamePurger.purge()).isEqualTo(1);
+
+        assertThat(gameRepository.exists("Excalibur")).isFalse();
+        assertThat(playerRepository.findPlayersByGameName("Excalibur")).isEmpty();
+    }
+
+    @Test
+    public void deleteEndpoint_marksTheGameDeleted_andThePurgerRemovesItsRows() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(gameController).build();
+        gameService.createGame(CreateGameRequest.builder().gameName("Excalibur").build());
+        playerRepository.save(Player.builder().name("zxmbies").gameName("Excalibur").build());
+
+        mockMvc.perform(delete("/game/Excalibur")).andExpect(status().isOk());
+
+        assertThat(gameRepository.findOne("Excalibur").isDeleted()).isTrue();
+        assertThat(gameRepository.existsLive("Excalibur")).isFalse();
+        assertThat(playerTerritoryRepository.findByGameName("Excalibur")).hasSize(54);
+
+        mockMvc.perform(delete("/game/Excalibur")).andExpect(status().isNotFound());
+
+        assertThat(gamePurger.purge()).isEqualTo(1);
+
+        assertThat(gameRepository.exists("Excalibur")).isFalse();
+        assertThat(playerRepository.findPlayersByGameName("Excalibur")).isEmpty();
+        assertThat(playerTerritoryRepository.findByGameName("Excalibur")).isEmpty();
+    }
+
+    @Test
+    public void deletedGamesName_isTaken_untilThePurgerRemovesIt() throws Exception {
+        gameService.createGame(CreateGameRequest.builder().gameName("Excalibur").build());
+        gameService.deleteGame("Excalibur");
+
+        try {
+            gameService.createGame(CreateGameRequest.builder().gameName("Excalibur").build());
+            fail("Expected Conflict Exception");
+        } catch (Exceptions.ConflictException expected) {
+            // the deleted game still holds the name
+        }
+        assertThat(gameRepository.findOne("Excalibur").isDeleted()).isTrue();
+
+        assertThat(gamePurger.purge()).isEqualTo(1);
+        gameService.createGame(CreateGameRequest.builder().gameName("Excalibur").build());
+
+        assertThat(gameRepository.findOne("Excalibur").isDeleted()).isFalse();
+        assertThat(playerTerritoryRepository.findByGameName("Excalibur")).hasSize(54);
+    }
+
+    @Test
+    public void archive_movesTheGameOutOfTheLiveTables_untilItIsRestored() {
+        gameRepository.save(Game.builder().gameName("Excalibur").started(true).turnNumber(7).build());
+        Player player = playerRepository.save(Player.builder().name("zxmbies").playerNumber(1).gameName("Excalibur").build());
+
+        assertThat(gameArchiver.archive("Excalibur")).isTrue();
+
+        assertThat(gameRepository.exists("Excalibur")).isFalse();
+        assertThat(playerRepository.findPlayersByGameName("Excalibur")).isEmpty();
+
+        assertThat(gameArchiver.restore("Excalibur")).isTrue();
+
+        Game restored = gameRepository.findOne("Excalibur");
+        assertThat(restored.isStarted()).isTrue();
+        assertThat(restored.getTurnNumber()).isEqualTo(7);
+        assertThat(playerRepository.findPlayersByGameName("Excalibur"))
+                .extracting(Player::getPlayerId).containsExactly(player.getPlayerId());
+        assertThat(gameArchiver.restore("Excalibur")).isFalse();
+    }
+
+    @Test
+    public void archive_thenRestore_putsBackEveryColumnOfEveryRow() throws Exception {
+        gameService.createGame(CreateGameRequest.builder().gameName("Excalibur").build());
+        Player first = playerRepository.save(Player.builder().name("zxmbies").playerNumber(1).remainingActions(2)
+                .gameName("Excalibur").build());
+        playerRepository.save(Player.builder().name("camelot").playerNumber(2).gameName("Excalibur").build());
+        jdbcTemplate.update("UPDATE Player_territory SET player_id = ?, troops = 12, supplied = 1 " +
+                "WHERE game_name = ? AND territory_id < 10", first.getPlayerId(), "Excalibur");
+        jdbcTemplate.update("UPDATE Game SET started = 1, turn_number = 7, version = 9000000000 WHERE game_name = ?",
+                "Excalibur");
+        Map<String, List<Map<String, Object>>> live = liveRows("Excalibur");
+
+        assertThat(gameArchiver.archive("Excalibur")).isTrue();
+        assertThat(liveRows("Excalibur").values()).allMatch(List::isEmpty);
+        assertThat(gameArchiver.restore("Excalibur")).isTrue();
+
+        assertThat(liveRows("Excalibur")).isEqualTo(live);
+        assertThat(live.get("Player_territory")).hasSize(54);
+    }
+
+    @Test
+    public void archivedGamesName_isTaken_untilTheGameIsRestored() throws Exception {
+        gameService.createGame(CreateGameRequest.builder().gameName("Excalibur").build());
+        assertThat(gameArchiver.archive("Excalibur")).isTrue();
+
+        try {
+            gameService.createGame(CreateGameRequest.builder().gameName("Excalibur").build());
+            fail("Expected Conflict Exception");
+        } catch (Exceptions.ConflictException expected) {
+            // the archived game still holds the name
+        }
+        assertThat(gameRepository.exists("Excalibur")).isFalse();
+
+        assertThat(gameArchiver.restore("Excalibur")).isTrue();
+        assertThat(gameArchiver.isArchived("Excalibur")).isFalse();
+    }
+
+    private Map<String, List<Map<String, Object>>> liveRows(String gameName) {
+        Map<String, List<Map<String, Object>>> tables = new LinkedHashMap<>();
+        for (String table : GameArchiver.TABLES) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT * FROM " + table + " WHERE game_name = ? ORDER BY 1", gameName);
+            rows.forEach(row -> row.keySet().removeIf("updated_at"::equalsIgnoreCase));
+            tables.put(table, rows);
+        }
+        return tables;
+    }
+
     @After
     public void teardown() {
+        playerTerritoryRepository.deleteAll();
         gameRepository.deleteAll();
         playerRepository.deleteAll();
     }
@@ -7,7 +7,7 @@ import org.cost.territory.Territory;
 import org.cost.territory.TerritoryDataService;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.springframework.mock.web.MockHttpSession;
 
 import java.util.ArrayList;
@@ -28,6 +28,10 @@ public class GameServiceTest {
     private PlayerDataService mockPlayerDataService;
     private TerritoryDataService mockTerritoryDataService;
     private PlayerTerritoryDataService mockPlayerTerritoryDataService;
+    private SuppliedStatusService mockSuppliedStatusService;
+    private GameStateService mockGameStateService;
+    private BoardPool mockBoardPool;
+    private GameArchiver mockGameArchiver;
 
     @Before
     public void setup() {
@@ -35,27 +39,32 @@ public class GameServiceTest {
         mockPlayerDataService = mock(PlayerDataService.class);
         mockTerritoryDataService = mock(TerritoryDataService.class);
         mockPlayerTerritoryDataService = mock(PlayerTerritoryDataService.class);
-        gameService = new GameService(mockGameDataService, mockPlayerDataService, mockTerritoryDataService, mockPlayerTerritoryDataService);
+        mockSuppliedStatusService = mock(SuppliedStatusService.class);
+        mockGameStateService = mock(GameStateService.class);
+        mockBoardPool = mock(BoardPool.class);
+        mockGameArchiver = mock(GameArchiver.class);
+        gameService = new GameService(mockGameDataService, mockPlayerDataService, mockTerritoryDataService,
+                mockPlayerTerritoryDataService, mockSuppliedStatusService, mockGameStateService, mockBoardPool,
+                mockGameArchiver);
     }
 
 
     @Test
     public void createGame_returnsSuccess_andCreatesGame_whenGameDoesNotExist() throws Exception {
-        when(mockGameDataService.gameExistsWithName("Game Name")).thenReturn(false);
+        when(mockGameDataService.gameNameTaken("Game Name")).thenReturn(false);
         CreateGameRequest gameRequest = CreateGameRequest.builder().gameName("Game Name").build();
 
         gameService.createGame(gameRequest);
 
         Game expectedGame = Game.builder()
                 .gameName("Game Name")
-                .playerTerritories(new ArrayList<>())
                 .turnNumber(1).build();
         verify(mockGameDataService).saveGame(expectedGame);
     }
 
     @Test
     public void createGame_returnsFailure_andDoesNotCreateGame_whenGameAlreadyExists() throws Exception {
-        when(mockGameDataService.gameExistsWithName("Game Name")).thenReturn(true);
+        when(mockGameDataService.gameNameTaken("Game Name")).thenReturn(true);
         CreateGameRequest gameRequest = CreateGameRequest.builder().gameName("Game Name").build();
 
         try {
@@ -68,25 +77,55 @@ public class GameServiceTest {
 
     }
 
-    @Test   /// is there a way to not use an argument captor, here? ///
-    public void createGame_initializesPlayerTerritoriesOwnersToNull_onPost() throws Exception{
-        List<Territory> territoryList = Arrays.asList(
-                Territory.builder().territoryId(1L).build(),
-                Territory.builder().territoryId(2L).build()
-        );
-        when(mockTerritoryDataService.getListOfTerritoriesOnMap()).thenReturn(territoryList);
+    @Test
+    public void createGame_returnsConflict_whenAnArchivedGameHasTheName() throws Exception {
+        when(mockGameArchiver.isArchived("Game Name")).thenReturn(true);
+
+        try {
+            gameService.createGame(CreateGameRequest.builder().gameName("Game Name").build());
+            fail("Expected Conflict Exception");
+        } catch (Exceptions.ConflictException expected) {
+            verify(mockGameDataService, never()).saveGame(any());
+        }
+    }
+
+    @Test
+    public void createGame_refusesNamesOutsideTheSafeCharacterSet() throws Exception {
+        for (String gameName : Arrays.asList("*", "**", "game?", "a/b", "", null, new String(new char[65]).replace('\0', 'a'))) {
+            try {
+                gameService.createGame(CreateGameRequest.builder().gameName(gameName).build());
+                fail("Expected Bad Request Exception for " + gameName);
+            } catch (Exceptions.BadRequestException expected) {
+                // refused
+            }
+        }
+        verifyZeroInteractions(mockGameDataService, mockBoardPool);
+    }
+
+    @Test
+    public void createGame_createsPlayerTerritoriesInOneStatement_afterSavingTheGame_whenThePoolIsEmpty() throws Exception {
+        when(mockBoardPool.claim("gamename")).thenReturn(false);
         CreateGameRequest gameRequest = CreateGameRequest.builder().gameName("gamename").build();
 
         gameService.createGame(gameRequest);
 
-        ArgumentCaptor<Game> gameArgumentCaptor = ArgumentCaptor.forClass(Game.class);
-        verify(mockGameDataService).saveGame(gameArgumentCaptor.capture());
-        Game game = gameArgumentCaptor.getValue();
+        InOrder inOrder = inOrder(mockGameDataService, mockBoardPool, mockPlayerTerritoryDataService);
+        inOrder.verify(mockGameDataService).saveGame(any(Game.class));
+        inOrder.verify(mockBoardPool).claim("gamename");
+        inOrder.verify(mockPlayerTerritoryDataService).createPlayerTerritories("gamename");
+        verifyZeroInteractions(mockTerritoryDataService);
+    }
+
+    @Test
+    public void createGame_claimsAPooledBoard_insteadOfCreatingPlayerTerritories() throws Exception {
+        when(mockBoardPool.claim("gamename")).thenReturn(true);
+
+        gameService.createGame(CreateGameRequest.builder().gameName("gamename").build());
 
-        assertThat(game.getPlayerTerritories().size()).isEqualTo(2);
-        assertThat(game.getPlayerTerritories().get(0).getGameName()).isEqualTo("gamename");
-        assertThat(game.getPlayerTerritories().get(0).getTerritoryId()).isIn(1L, 2L);
-        assertThat(game.getPlayerTerritories().get(0).getPlayerId()).isNull();
+        InOrder inOrder = inOrder(mockGameDataService, mockBoardPool);
+        inOrder.verify(mockGameDataService).saveGame(any(Game.class));
+        inOrder.verify(mockBoardPool).claim("gamename");
+        verify(mockPlayerTerritoryDataService, never()).createPlayerTerritories(any());
     }
 
 
@@ -111,6 +150,7 @@ public class GameServiceTest {
         gameService.deleteGame("gamename");
 
         verify(mockGameDataService).deleteGame("gamename");
+        verify(mockGameStateService).deleted("gamename");
     }
 
     @Test
@@ -145,6 +185,38 @@ public class GameServiceTest {
         assertTrue(game.isStarted());
     }
 
+    @Test
+    public void startGame_resetsSupplyForThisGameOnly() throws Exception {
+        List<Player> players = Arrays.asList(new Player(), new Player());
+        Game game = Game.builder().gameName("gamename").players(players).build();
+        when(mockGameDataService.findGameByName("gamename")).thenReturn(game);
+        when(mockTerritoryDataService.getListOfTerritoriesOnMap()).thenReturn(generateTerritoriesForTest());
+        when(mockPlayerTerritoryDataService.getTerritoriesInGame("gamename")).thenReturn(playerTerritoriesForTest());
+
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
+        gameService.startGame(session);
+
+        verify(mockSuppliedStatusService).markUnsupplied("gamename");
+    }
+
+    @Test
+    public void startGame_announcesStartingPosition_afterSavingGame() throws Exception {
+        List<Player> players = Arrays.asList(new Player(), new Player());
+        Game game = Game.builder().gameName("gamename").players(players).build();
+        when(mockGameDataService.findGameByName("gamename")).thenReturn(game);
+        when(mockTerritoryDataService.getListOfTerritoriesOnMap()).thenReturn(generateTerritoriesForTest());
+        when(mockPlayerTerritoryDataService.getTerritoriesInGame("gamename")).thenReturn(playerTerritoriesForTest());
+
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
+        gameService.startGame(session);
+
+        InOrder inOrder = inOrder(mockGameDataService, mockGameStateService);
+        inOrder.verify(mockGameDataService).saveGame(game);
+        inOrder.verify(mockGameStateService).started("gamename");
+    }
+
     @Test
     public void startGame_throwsGameNotFoundException_onNullGame() throws Exception {
         when(mockGameDataService.findGameByName("gamename")).thenReturn(null);
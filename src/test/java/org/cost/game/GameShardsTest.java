@@ -0,0 +1,105 @@
+package org.cost.game;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class GameShardsTest {
+
+    private GameShards gameShards = new GameShards(4, 2);
+
+    @After
+    public void shutdown() throws InterruptedException {
+        gameShards.shutdown();
+    }
+
+    @Test
+    public void shardOf_alwaysPicksTheSameShardForAGame() {
+        for (int game = 0; game < 100; game++) {
+            int shard = gameShards.shardOf("game" + game);
+            assertThat(shard).isBetween(0, 3);
+            assertThat(gameShards.shardOf("game" + game)).isEqualTo(shard);
+        }
+        assertThat(IntStream.range(0, 100).map(game -> gameShards.shardOf("game" + game)).distinct().count())
+                .isEqualTo(4);
+    }
+
+    @Test
+    public void execute_runsAGamesTasksInSubmissionOrderOnOneThread() throws Exception {
+        gameShards.shutdown();
+        gameShards = new GameShards(4, 1000);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(500);
+        for (int task = 0; task < 500; task++) {
+            int number = task;
+            gameShards.execute("gamename", () -> {
+                order.add(number);
+                threads.add(Thread.currentThread().getName());
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).isEqualTo(IntStream.range(0, 500).boxed().collect(Collectors.toList()));
+        assertThat(threads.stream().distinct().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_rejectsWorkOnceTheShardsQueueIsFull() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        gameShards.execute("gamename", () -> {
+            running.countDown();
+            await(release);
+        });
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+        gameShards.execute("gamename", () -> { });
+        gameShards.execute("gamename", () -> { });
+
+        GameShards.Shard shard = gameShards.shard(gameShards.shardOf("gamename"));
+        assertThat(shard.queueDepth()).isEqualTo(2);
+        try {
+            gameShards.execute("gamename", () -> { });
+            fail("expected the full shard to refuse the task");
+        } catch (RejectedExecutionException expected) {
+            assertThat(shard.rejected()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void execute_recordsHowLongTasksWaitedForTheShard() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        gameShards.execute("gamename", () -> await(release));
+        gameShards.execute("gamename", done::countDown);
+        Thread.sleep(20);
+        release.countDown();
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        GameShards.Shard shard = gameShards.shard(gameShards.shardOf("gamename"));
+        assertThat(shard.waitTime().count()).isEqualTo(2);
+        assertThat(shard.waitTime().maxMicros()).isGreaterThanOrEqualTo(20_000);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
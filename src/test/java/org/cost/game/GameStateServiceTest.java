@@ -0,0 +1,276 @@
+package org.cost.game;
+
+import org.cost.player.Player;
+import org.cost.player.PlayerRepository;
+import org.cost.player.PlayerTerritory;
+import org.cost.player.PlayerTerritoryRepository;
+import org.cost.territory.MapTopologyRegistry;
+import org.cost.territory.Territory;
+import org.cost.territory.TerritoryRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+public class GameStateServiceTest {
+
+    private GameRepository mockGameRepository;
+    private PlayerRepository mockPlayerRepository;
+    private PlayerTerritoryRepository mockPlayerTerritoryRepository;
+    private GameStateService gameStateService;
+    private WriteBehindService mockWriteBehindService;
+    private TerritoryRepository mockTerritoryRepository;
+    private ApplicationEventPublisher mockEventPublisher;
+
+    @Before
+    public void setup() {
+        mockWriteBehindService = mock(WriteBehindService.class);
+        mockGameRepository = mock(GameRepository.class);
+        mockPlayerRepository = mock(PlayerRepository.class);
+        mockPlayerTerritoryRepository = mock(PlayerTerritoryRepository.class);
+        mockTerritoryRepository = mock(TerritoryRepository.class);
+        mockEventPublisher = mock(ApplicationEventPublisher.class);
+        when(mockTerritoryRepository.findAll()).thenReturn(Arrays.asList(
+                Territory.builder().territoryId(4L).name("Cliffs 1").east(5L).build(),
+                Territory.builder().territoryId(5L).name("Cliffs 2").west(4L).build()));
+        gameStateService = new GameStateService(mockGameRepository, mockPlayerRepository, mockPlayerTerritoryRepository,
+                mockWriteBehindService, new MapTopologyRegistry(mockTerritoryRepository), mockEventPublisher);
+    }
+
+    @Test
+    public void getGameState_returnsNull_whenGameDoesNotExist() {
+        when(mockGameRepository.findOne("gamename")).thenReturn(null);
+
+        assertThat(gameStateService.getGameState("gamename")).isNull();
+    }
+
+    @Test
+    public void getGameState_returnsNull_whenGameIsDeleted() {
+        when(mockGameRepository.findOne("gamename")).thenReturn(Game.builder().gameName("gamename").deleted(true).build());
+
+        assertThat(gameStateService.getGameState("gamename")).isNull();
+    }
+
+    @Test
+    public void deleted_dropsTheGameFromMemory_withoutWritingItBack() {
+        givenStartedGame();
+        GameState gameState = gameStateService.getGameState("gamename");
+        gameState.moveTroops(0, 1, 1);
+
+        gameStateService.deleted("gamename");
+
+        assertThat(gameStateService.getActiveGameState("gamename")).isNull();
+        verifyZeroInteractions(mockWriteBehindService);
+        verify(mockEventPublisher).publishEvent(isA(GameUnloadedEvent.class));
+    }
+
+    @Test
+    public void getGameState_mapsPlayersAndTerritories() {
+        givenStartedGame();
+
+        GameState gameState = gameStateService.getGameState("gamename");
+
+        assertThat(gameState.playerCount()).isEqualTo(2);
+        assertThat(gameState.territoryCount()).isEqualTo(2);
+        int cliffs = gameState.indexOf(4L);
+        int hills = gameState.indexOf(5L);
+        assertThat(gameState.owner(cliffs)).isEqualTo(1);
+        assertThat(gameState.owner(hills)).isEqualTo(2);
+        assertThat(gameState.troops(cliffs)).isEqualTo(8);
+        assertThat(gameState.isSupplyDepot(cliffs)).isTrue();
+        assertThat(gameState.areNeighbors(cliffs, hills)).isTrue();
+        assertThat(gameState.activePlayerNumber()).isEqualTo(1);
+    }
+
+    @Test
+    public void getGameState_loadsStartedGameOnce() {
+        givenStartedGame();
+
+        GameState first = gameStateService.getGameState("gamename");
+        GameState second = gameStateService.getGameState("gamename");
+
+        assertThat(second).isSameAs(first);
+        verify(mockGameRepository, times(1)).findOne("gamename");
+    }
+
+    @Test
+    public void getGameState_reloadsGame_whenNotStarted() {
+        when(mockGameRepository.findOne("gamename")).thenReturn(Game.builder().gameName("gamename").build());
+
+        gameStateService.getGameState("gamename");
+        gameStateService.getGameState("gamename");
+
+        verify(mockGameRepository, times(2)).findOne("gamename");
+    }
+
+    @Test
+    public void getGameState_keepsALobbysVersion_untilAPlayerJoins() {
+        when(mockGameRepository.findOne("gamename")).thenReturn(Game.builder().gameName("gamename").version(2).build());
+        when(mockPlayerRepository.findPlayersByGameName("gamename")).thenReturn(Arrays.asList(
+                Player.builder().playerId(10L).playerNumber(1).name("player1").build()));
+
+        long first = gameStateService.getGameState("gamename").version();
+        long second = gameStateService.getGameState("gamename").version();
+        when(mockPlayerRepository.findPlayersByGameName("gamename")).thenReturn(Arrays.asList(
+                Player.builder().playerId(10L).playerNumber(1).name("player1").build(),
+                Player.builder().playerId(20L).playerNumber(2).name("player2").build()));
+        long joined = gameStateService.getGameState("gamename").version();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(joined).isNotEqualTo(first);
+    }
+
+    @Test
+    public void persist_queuesOnlyDirtyRows() {
+        givenStartedGame();
+        GameState gameState = gameStateService.getGameState("gamename");
+        gameState.moveTroops(gameState.indexOf(4L), gameState.indexOf(5L), 3);
+        gameState.spendAction(gameState.slotOf(1));
+
+        gameStateService.persist(gameState);
+
+        verify(mockWriteBehindService).updatePlayerTerritory(100L, 5, false, 10L);
+        verify(mockWriteBehindService).updatePlayerTerritory(101L, 7, false, 20L);
+        verify(mockWriteBehindService).updatePlayer(10L, 2);
+        verifyNoMoreInteractions(mockWriteBehindService);
+    }
+
+    @Test
+    public void persist_queuesTurnNumber_whenTurnEnds() {
+        givenStartedGame();
+        GameState gameState = gameStateService.getGameState("gamename");
+        gameState.spendAction(gameState.slotOf(1));
+        gameState.spendAction(gameState.slotOf(1));
+        gameState.spendAction(gameState.slotOf(1));
+
+        gameStateService.persist(gameState);
+        gameStateService.persist(gameState);
+
+        verify(mockWriteBehindService).updatePlayer(10L, 3);
+        verify(mockWriteBehindService).updateGame("gamename", 2);
+        verifyNoMoreInteractions(mockWriteBehindService);
+    }
+
+    @Test
+    public void persist_publishesChangedVersion_onlyWhenSomethingChanged() {
+        givenStartedGame();
+        GameState gameState = gameStateService.getGameState("gamename");
+        gameState.spendAction(gameState.slotOf(1));
+
+        gameStateService.persist(gameState);
+        gameStateService.persist(gameState);
+
+        ArgumentCaptor<GameStateChangedEvent> event = ArgumentCaptor.forClass(GameStateChangedEvent.class);
+        verify(mockEventPublisher, times(1)).publishEvent(event.capture());
+        assertThat(event.getValue().getGameName()).isEqualTo("gamename");
+        assertThat(event.getValue().getVersion()).isEqualTo(gameState.version());
+        assertThat(event.getValue().getRemainingActions()).isEqualTo(2);
+        assertThat(event.getValue().getTerritories()).isEmpty();
+    }
+
+    @Test
+    public void persist_publishesChangedTerritoriesAndTurn() {
+        givenStartedGame();
+        GameState gameState = gameStateService.getGameState("gamename");
+        gameState.moveTroops(gameState.indexOf(4L), gameState.indexOf(5L), 3);
+        gameState.spendAction(gameState.slotOf(1));
+        gameState.spendAction(gameState.slotOf(1));
+        gameState.spendAction(gameState.slotOf(1));
+
+        gameStateService.persist(gameState);
+
+        ArgumentCaptor<GameStateChangedEvent> event = ArgumentCaptor.forClass(GameStateChangedEvent.class);
+        verify(mockEventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getTurnNumber()).isEqualTo(2);
+        assertThat(event.getValue().getActivePlayer()).isEqualTo(2);
+        assertThat(event.getValue().getTerritories())
+                .extracting(GameStateChangedEvent.TerritoryChange::getTerritoryId, GameStateChangedEvent.TerritoryChange::getTroops)
+                .containsExactly(tuple(4L, 5), tuple(5L, 7));
+    }
+
+    @Test
+    public void started_flushesStartingWritesBeforeLoading_andAnnouncesWholeBoard() {
+        givenStartedGame();
+
+        GameState gameState = gameStateService.started("gamename");
+
+        InOrder inOrder = inOrder(mockWriteBehindService, mockGameRepository);
+        inOrder.verify(mockWriteBehindService).flush();
+        inOrder.verify(mockGameRepository).findOne("gamename");
+        ArgumentCaptor<GameStateChangedEvent> event = ArgumentCaptor.forClass(GameStateChangedEvent.class);
+        verify(mockEventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getVersion()).isEqualTo(gameState.version());
+        assertThat(event.getValue().getTerritories())
+                .extracting(GameStateChangedEvent.TerritoryChange::getTerritoryId)
+                .containsExactly(4L, 5L);
+        assertThat(gameStateService.getActiveGameState("gamename")).isSameAs(gameState);
+    }
+
+    @Test
+    public void evict_flushesPendingWrites() {
+        givenStartedGame();
+        GameState gameState = gameStateService.getGameState("gamename");
+        gameState.spendAction(gameState.slotOf(1));
+
+        gameStateService.evict("gamename");
+
+        verify(mockWriteBehindService).updatePlayer(10L, 2);
+        verify(mockWriteBehindService).flush();
+        assertThat(gameStateService.getGameState("gamename")).isNotSameAs(gameState);
+    }
+
+    @Test
+    public void evict_keepsServingTheHeldGame_untilItsWritesAreFlushed() {
+        givenStartedGame();
+        GameState gameState = gameStateService.getGameState("gamename");
+        gameState.spendAction(gameState.slotOf(1));
+        doAnswer(invocation -> {
+            assertThat(gameStateService.getGameState("gamename")).isSameAs(gameState);
+            return null;
+        }).when(mockWriteBehindService).flush();
+
+        gameStateService.evict("gamename");
+
+        verify(mockGameRepository, times(1)).findOne("gamename");
+        assertThat(gameStateService.getActiveGameState("gamename")).isNull();
+    }
+
+    @Test
+    public void version_increasesOnEveryMutation_andIsNotReusedAfterReload() {
+        givenStartedGame();
+        GameState gameState = gameStateService.getGameState("gamename");
+        long loaded = gameState.version();
+
+        gameState.moveTroops(gameState.indexOf(4L), gameState.indexOf(5L), 3);
+        long moved = gameState.version();
+        gameState.spendAction(gameState.slotOf(1));
+        gameStateService.evict("gamename");
+
+        assertThat(moved).isGreaterThan(loaded);
+        assertThat(gameState.version()).isGreaterThan(moved);
+        assertThat(gameStateService.getGameState("gamename").version()).isGreaterThan(gameState.version());
+    }
+
+    private List<PlayerTerritory> givenStartedGame() {
+        Game game = Game.builder().gameName("gamename").started(true).turnNumber(1).build();
+        List<Player> players = Arrays.asList(
+                Player.builder().playerId(10L).playerNumber(1).name("player1").remainingActions(3).build(),
+                Player.builder().playerId(20L).playerNumber(2).name("player2").remainingActions(3).build());
+        List<PlayerTerritory> playerTerritories = Arrays.asList(
+                PlayerTerritory.builder().id(100L).territoryId(4L).territoryName("Cliffs 1").playerId(10L).troops(8)
+                        .supplyDepotTerritory(true).build(),
+                PlayerTerritory.builder().id(101L).territoryId(5L).territoryName("Cliffs 2").playerId(20L).troops(4).build());
+        when(mockGameRepository.findOne("gamename")).thenReturn(game);
+        when(mockPlayerRepository.findPlayersByGameName("gamename")).thenReturn(players);
+        when(mockPlayerTerritoryRepository.findByGameName("gamename")).thenReturn(playerTerritories);
+        return playerTerritories;
+    }
+}
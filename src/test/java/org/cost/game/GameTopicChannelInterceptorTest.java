@@ -0,0 +1,103 @@
+package org.cost.game;
+
+import org.cost.player.PlayerController;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.session.ExpiringSession;
+import org.springframework.session.MapSessionRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GameTopicChannelInterceptorTest {
+
+    private MapSessionRepository sessionRepository;
+    private GameTopicChannelInterceptor interceptor;
+    private Map<String, Object> stompSessionAttributes;
+    private String authToken;
+
+    @Before
+    public void setup() {
+        sessionRepository = new MapSessionRepository();
+        ExpiringSession session = sessionRepository.createSession();
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "Excalibur");
+        sessionRepository.save(session);
+        authToken = session.getId();
+        interceptor = new GameTopicChannelInterceptor(sessionRepository);
+        stompSessionAttributes = new HashMap<>();
+    }
+
+    @Test
+    public void connect_isAccepted_withTokenOfExistingSession() {
+        Message<?> connect = frame(StompCommand.CONNECT, authToken, null);
+
+        assertThat(interceptor.preSend(connect, null)).isSameAs(connect);
+    }
+
+    @Test(expected = MessageDeliveryException.class)
+    public void connect_isRejected_withUnknownToken() {
+        interceptor.preSend(frame(StompCommand.CONNECT, "not-a-session", null), null);
+    }
+
+    @Test(expected = MessageDeliveryException.class)
+    public void connect_isRejected_withoutToken() {
+        interceptor.preSend(frame(StompCommand.CONNECT, null, null), null);
+    }
+
+    @Test
+    public void subscribe_isAccepted_forOwnGame() {
+        interceptor.preSend(frame(StompCommand.CONNECT, authToken, null), null);
+        Message<?> subscribe = frame(StompCommand.SUBSCRIBE, null, "/topic/games/Excalibur");
+
+        assertThat(interceptor.preSend(subscribe, null)).isSameAs(subscribe);
+    }
+
+    @Test(expected = MessageDeliveryException.class)
+    public void subscribe_isRejected_forAnotherGame() {
+        interceptor.preSend(frame(StompCommand.CONNECT, authToken, null), null);
+
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, null, "/topic/games/Camelot"), null);
+    }
+
+    @Test(expected = MessageDeliveryException.class)
+    public void subscribe_isRejected_forAWildcardDestination_evenWhenItIsTheSessionsGameName() {
+        ExpiringSession session = sessionRepository.getSession(authToken);
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "**");
+        sessionRepository.save(session);
+        interceptor.preSend(frame(StompCommand.CONNECT, authToken, null), null);
+
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, null, "/topic/games/**"), null);
+    }
+
+    @Test(expected = MessageDeliveryException.class)
+    public void subscribe_isRejected_withoutConnect() {
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, null, "/topic/games/Excalibur"), null);
+    }
+
+    @Test(expected = MessageDeliveryException.class)
+    public void send_isRejected() {
+        interceptor.preSend(frame(StompCommand.CONNECT, authToken, null), null);
+
+        interceptor.preSend(frame(StompCommand.SEND, null, "/topic/games/Excalibur"), null);
+    }
+
+    private Message<?> frame(StompCommand command, String token, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        if (token != null) {
+            accessor.setNativeHeader(GameTopicChannelInterceptor.AUTH_TOKEN_HEADER, token);
+        }
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        accessor.setSessionAttributes(stompSessionAttributes);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
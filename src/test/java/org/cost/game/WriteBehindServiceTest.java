@@ -0,0 +1,98 @@
+package org.cost.game;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindServiceTest {
+
+    private JdbcTemplate mockJdbcTemplate;
+    private WriteBehindService writeBehindService;
+
+    @Before
+    public void setup() {
+        mockJdbcTemplate = mock(JdbcTemplate.class);
+        writeBehindService = new WriteBehindService(mockJdbcTemplate, 200);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void flush_coalescesRepeatedUpdatesToTheLatestValue() {
+        writeBehindService.updatePlayerTerritory(1L, 5, false, 10L);
+        writeBehindService.updatePlayerTerritory(1L, 2, true, 10L);
+        writeBehindService.updatePlayerTerritory(2L, 7, false, null);
+        writeBehindService.updatePlayer(10L, 2);
+        writeBehindService.updatePlayer(10L, 1);
+
+        writeBehindService.flush();
+
+        ArgumentCaptor<List> playerTerritoryCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockJdbcTemplate).batchUpdate(eq(WriteBehindService.UPDATE_PLAYER_TERRITORY), playerTerritoryCaptor.capture());
+        List<Object[]> playerTerritoryArguments = playerTerritoryCaptor.getValue();
+        assertThat(playerTerritoryArguments).hasSize(2);
+        assertThat(playerTerritoryArguments).contains(new Object[]{2, 1, 10L, 1L}, new Object[]{7, 0, null, 2L});
+
+        ArgumentCaptor<List> playerCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockJdbcTemplate).batchUpdate(eq(WriteBehindService.UPDATE_PLAYER), playerCaptor.capture());
+        assertThat((List<Object[]>) playerCaptor.getValue()).containsExactly(new Object[]{1, 10L});
+
+        verify(mockJdbcTemplate, never()).batchUpdate(eq(WriteBehindService.UPDATE_GAME), anyListOf(Object[].class));
+        assertThat(writeBehindService.pendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void flush_doesNothing_whenNothingIsPending() {
+        writeBehindService.flush();
+
+        verifyZeroInteractions(mockJdbcTemplate);
+    }
+
+    @Test
+    public void flush_requeuesRows_whenBatchFails() {
+        when(mockJdbcTemplate.batchUpdate(eq(WriteBehindService.UPDATE_GAME), anyListOf(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        writeBehindService.updateGame("gamename", 4);
+        writeBehindService.updatePlayer(10L, 2);
+
+        try {
+            writeBehindService.flush();
+            fail("expected flush to fail");
+        } catch (DataAccessResourceFailureException expected) {
+        }
+
+        assertThat(writeBehindService.pendingCount()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void flush_keepsNewerValue_whenRequeuingFailedRows() {
+        when(mockJdbcTemplate.batchUpdate(eq(WriteBehindService.UPDATE_GAME), anyListOf(Object[].class)))
+                .thenAnswer(invocation -> {
+                    writeBehindService.updateGame("gamename", 5);
+                    throw new DataAccessResourceFailureException("down");
+                })
+                .thenReturn(new int[]{1});
+        writeBehindService.updateGame("gamename", 4);
+
+        try {
+            writeBehindService.flush();
+            fail("expected flush to fail");
+        } catch (DataAccessResourceFailureException expected) {
+        }
+        writeBehindService.flush();
+
+        ArgumentCaptor<List> gameCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockJdbcTemplate, times(2)).batchUpdate(eq(WriteBehindService.UPDATE_GAME), gameCaptor.capture());
+        assertThat((List<Object[]>) gameCaptor.getValue()).containsExactly(new Object[]{5, "gamename"});
+    }
+}
@@ -0,0 +1,41 @@
+package org.cost.metrics;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketOf_placesEveryValueWithinItsBucketBounds() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertThat(LatencyHistogram.upperBound(bucket)).isGreaterThanOrEqualTo(micros);
+            assertThat(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < micros).isTrue();
+        }
+        assertThat(LatencyHistogram.bucketOf(Long.MAX_VALUE)).isLessThan(LatencyHistogram.BUCKETS);
+    }
+
+    @Test
+    public void quantiles_areWithinOneBucketOfTheRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.count()).isEqualTo(10_000);
+        assertThat(snapshot.maxMicros()).isEqualTo(10_000);
+        assertThat(snapshot.totalMicros()).isEqualTo(50_005_000L);
+        assertThat((double) snapshot.quantileMicros(0.5)).isCloseTo(5_000, within(5_000 * 0.125));
+        assertThat((double) snapshot.quantileMicros(0.99)).isCloseTo(9_900, within(9_900 * 0.125));
+        assertThat(snapshot.quantileMicros(1.0)).isEqualTo(10_000);
+    }
+
+    @Test
+    public void quantiles_ofEmptyHistogramAreZero() {
+        assertThat(new LatencyHistogram().snapshot().quantileMicros(0.99)).isEqualTo(0);
+    }
+}
@@ -0,0 +1,162 @@
+package org.cost.metrics;
+
+import org.cost.Exceptions;
+import org.cost.game.BoardPool;
+import org.cost.game.GameShards;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class RequestMetricsTest {
+
+    private RequestMetrics requestMetrics;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setup() throws Exception {
+        DataSource mockDataSource = mock(DataSource.class);
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+        when(mockDataSource.getConnection()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+
+        requestMetrics = new RequestMetrics();
+        SampleController sampleController = new SampleController(SqlCountingDataSource.wrap(mockDataSource));
+        mockMvc = MockMvcBuilders.standaloneSetup(sampleController, new MetricsController(requestMetrics, new GameShards(1, 1),
+                new BoardPool(null, null, mock(PlatformTransactionManager.class), 0, 1000)))
+                .addInterceptors(requestMetrics)
+                .setControllerAdvice(new SqlCountersHeaderAdvice(true))
+                .build();
+    }
+
+    @Test
+    public void afterCompletion_recordsLatencyAndCountedStatusesPerHandler() throws Exception {
+        mockMvc.perform(get("/ok")).andExpect(status().isOk());
+        mockMvc.perform(get("/ok")).andExpect(status().isOk());
+        mockMvc.perform(get("/conflict")).andExpect(status().isConflict());
+
+        RequestMetrics.HandlerMetrics ok = requestMetrics.handlers().get("SampleController.ok");
+        RequestMetrics.HandlerMetrics conflict = requestMetrics.handlers().get("SampleController.conflict");
+        assertThat(ok.latency().count()).isEqualTo(2);
+        assertThat(ok.statusCount(409)).isEqualTo(0);
+        assertThat(conflict.latency().count()).isEqualTo(1);
+        assertThat(conflict.statusCount(409)).isEqualTo(1);
+        assertThat(conflict.statusCount(404)).isEqualTo(0);
+    }
+
+    @Test
+    public void getMetrics_rendersPrometheusText() throws Exception {
+        mockMvc.perform(get("/ok"));
+        mockMvc.perform(get("/conflict"));
+
+        String text = mockMvc.perform(get("/metrics"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(text)
+                .contains("# TYPE supplyraid_http_request_duration_seconds summary\n")
+                .contains("supplyraid_http_request_duration_seconds{handler=\"SampleController.ok\",quantile=\"0.99\"} ")
+                .contains("supplyraid_http_request_duration_seconds_count{handler=\"SampleController.ok\"} 1\n")
+                .contains("supplyraid_http_request_duration_seconds_max{handler=\"SampleController.conflict\"} ")
+                .contains("supplyraid_http_requests_per_second{handler=\"SampleController.ok\"} ")
+                .contains("supplyraid_http_responses_total{handler=\"SampleController.conflict\",status=\"409\"} 1\n")
+                .contains("supplyraid_shard_queue_depth{shard=\"0\"} 0\n")
+                .contains("supplyraid_shard_rejected_total{shard=\"0\"} 0\n")
+                .contains("supplyraid_shard_wait_seconds_count{shard=\"0\"} 0\n")
+                .contains("supplyraid_board_pool_size 0\n")
+                .contains("supplyraid_board_pool_claims_total{result=\"miss\"} 0\n")
+                .contains("supplyraid_http_responses_total{handler=\"SampleController.ok\",status=\"403\"} 0\n");
+    }
+
+    @Test
+    public void afterCompletion_sumsSqlStatementsPerHandler() throws Exception {
+        mockMvc.perform(get("/query").param("statements", "3"));
+        mockMvc.perform(get("/query").param("statements", "2"));
+        mockMvc.perform(get("/ok"));
+
+        assertThat(requestMetrics.handlers().get("SampleController.query").sqlStatements()).isEqualTo(5);
+        assertThat(requestMetrics.handlers().get("SampleController.ok").sqlStatements()).isEqualTo(0);
+    }
+
+    @Test
+    public void sqlHeaders_reportTheRequestsStatements() throws Exception {
+        mockMvc.perform(get("/query").param("statements", "3"))
+                .andExpect(header().string(SqlCountersHeaderAdvice.STATEMENTS_HEADER, "3"))
+                .andExpect(header().string(SqlCountersHeaderAdvice.ROWS_HEADER, "0"));
+        mockMvc.perform(get("/ok"))
+                .andExpect(header().string(SqlCountersHeaderAdvice.STATEMENTS_HEADER, "0"));
+    }
+
+    @Test
+    public void getMetrics_rendersSqlCounters() throws Exception {
+        mockMvc.perform(get("/query").param("statements", "4"));
+
+        assertThat(mockMvc.perform(get("/metrics")).andReturn().getResponse().getContentAsString())
+                .contains("supplyraid_sql_statements_total{handler=\"SampleController.query\"} 4\n")
+                .contains("supplyraid_sql_rows_total{handler=\"SampleController.query\"} 0\n")
+                .contains("supplyraid_entities_loaded_total{handler=\"SampleController.query\"} 0\n");
+    }
+
+    @Test
+    public void sqlStatementBudget_failsWhenACallRunsMoreStatements() throws Exception {
+        SqlStatementBudget.statements(3).perform(mockMvc, get("/query").param("statements", "3"))
+                .andExpect(status().isOk());
+
+        try {
+            SqlStatementBudget.statements(2).perform(mockMvc, get("/query").param("statements", "3"));
+            fail("expected the budget to be exceeded");
+        } catch (AssertionError e) {
+            assertThat(e.getMessage()).contains("SQL statements run by GET /query");
+        }
+    }
+
+    @RestController
+    static class SampleController {
+        private final DataSource dataSource;
+
+        SampleController(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @RequestMapping("/query")
+        public Map<String, Integer> query(@RequestParam("statements") int statements) throws SQLException {
+            try (Connection connection = dataSource.getConnection()) {
+                for (int i = 0; i < statements; i++) {
+                    connection.prepareStatement("update Game set turn_number = turn_number").executeUpdate();
+                }
+            }
+            return Collections.singletonMap("statements", statements);
+        }
+
+        @RequestMapping("/ok")
+        public String ok() {
+            return "ok";
+        }
+
+        @RequestMapping("/conflict")
+        public String conflict() {
+            throw new Exceptions.ConflictException("taken");
+        }
+    }
+}
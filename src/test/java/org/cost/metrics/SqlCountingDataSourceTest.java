@@ -0,0 +1,74 @@
+package org.cost.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SqlCountingDataSourceTest {
+
+    private DataSource mockDataSource;
+    private PreparedStatement mockPreparedStatement;
+
+    @Before
+    public void setup() throws Exception {
+        mockDataSource = mock(DataSource.class);
+        Connection mockConnection = mock(Connection.class);
+        mockPreparedStatement = mock(PreparedStatement.class);
+        ResultSet mockResultSet = mock(ResultSet.class);
+        when(mockDataSource.getConnection()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement("select * from Player")).thenReturn(mockPreparedStatement);
+        when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockPreparedStatement.executeBatch()).thenReturn(new int[]{1, 1, 1});
+        SqlCounters.current().reset();
+    }
+
+    @Test
+    public void wrap_countsStatementsAndRowsRead() throws Exception {
+        DataSource dataSource = SqlCountingDataSource.wrap(mockDataSource);
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select * from Player");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                resultSet.getString(1);
+            }
+        }
+
+        assertThat(SqlCounters.current().statements()).isEqualTo(1);
+        assertThat(SqlCounters.current().rows()).isEqualTo(2);
+    }
+
+    @Test
+    public void wrap_countsBatchAsOneStatement() throws Exception {
+        DataSource dataSource = SqlCountingDataSource.wrap(mockDataSource);
+
+        PreparedStatement statement = dataSource.getConnection().prepareStatement("select * from Player");
+        statement.addBatch();
+        statement.addBatch();
+        statement.addBatch();
+        statement.executeBatch();
+
+        assertThat(SqlCounters.current().statements()).isEqualTo(1);
+    }
+
+    @Test
+    public void postProcessAfterInitialization_wrapsDataSourcesOnce() {
+        SqlCountingDataSource postProcessor = new SqlCountingDataSource();
+        Object other = new Object();
+
+        Object wrapped = postProcessor.postProcessAfterInitialization(mockDataSource, "dataSource");
+
+        assertThat(wrapped).isInstanceOf(DataSource.class).isNotSameAs(mockDataSource);
+        assertThat(postProcessor.postProcessAfterInitialization(wrapped, "dataSource")).isSameAs(wrapped);
+        assertThat(postProcessor.postProcessAfterInitialization(other, "other")).isSameAs(other);
+    }
+}
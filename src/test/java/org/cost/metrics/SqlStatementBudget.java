@@ -0,0 +1,57 @@
+package org.cost.metrics;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails a test when a MockMvc call runs more SQL than it is allowed, so an N+1 query shows up as
+ * a broken build rather than a slow endpoint. Only counts work done through a DataSource wrapped
+ * by {@link SqlCountingDataSource}, which the application context does for its own.
+ *
+ * <pre>
+ *   SqlStatementBudget.statements(2).entities(5).perform(mockMvc, get("/players").session(session))
+ *           .andExpect(status().isOk());
+ * </pre>
+ */
+public final class SqlStatementBudget {
+
+    private final long statements;
+    private long rows = Long.MAX_VALUE;
+    private long entities = Long.MAX_VALUE;
+
+    private SqlStatementBudget(long statements) {
+        this.statements = statements;
+    }
+
+    public static SqlStatementBudget statements(long statements) {
+        return new SqlStatementBudget(statements);
+    }
+
+    public SqlStatementBudget rows(long rows) {
+        this.rows = rows;
+        return this;
+    }
+
+    public SqlStatementBudget entities(long entities) {
+        this.entities = entities;
+        return this;
+    }
+
+    public ResultActions perform(MockMvc mockMvc, RequestBuilder request) throws Exception {
+        SqlCounters counters = SqlCounters.current();
+        counters.reset();
+
+        ResultActions actions = mockMvc.perform(request);
+
+        MvcResult result = actions.andReturn();
+        String call = result.getRequest().getMethod() + " " + result.getRequest().getRequestURI();
+        assertThat(counters.statements()).as("SQL statements run by " + call).isLessThanOrEqualTo(statements);
+        assertThat(counters.rows()).as("SQL rows read by " + call).isLessThanOrEqualTo(rows);
+        assertThat(counters.entities()).as("entities loaded by " + call).isLessThanOrEqualTo(entities);
+        return actions;
+    }
+}
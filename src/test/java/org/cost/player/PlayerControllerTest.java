@@ -3,6 +3,7 @@ package org.cost.player;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.cost.Exceptions;
+import org.cost.LinkFactory;
 import org.cost.game.Game;
 import org.cost.game.GameRepository;
 import org.junit.Before;
@@ -38,7 +39,7 @@ public class PlayerControllerTest {
         mockPlayerNumberService = mock(PlayerNumberService.class);
         mockGameRepository = mock(GameRepository.class);
         mockPlayerService = mock(PlayerService.class);
-        playerController = new PlayerController(mockRepository, mockPlayerNumberService, mockGameRepository, mockPlayerService);
+        playerController = new PlayerController(mockRepository, mockPlayerNumberService, mockGameRepository, mockPlayerService, new LinkFactory());
 
         mockMvc = MockMvcBuilders.standaloneSetup(playerController).build();
     }
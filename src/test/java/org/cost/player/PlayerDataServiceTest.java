@@ -0,0 +1,43 @@
+package org.cost.player;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PlayerDataServiceTest {
+
+    private PlayerRepository mockPlayerRepository;
+    private PlayerDataService playerDataService;
+
+    @Before
+    public void setup() {
+        mockPlayerRepository = mock(PlayerRepository.class);
+        playerDataService = new PlayerDataService(mockPlayerRepository);
+    }
+
+    @Test
+    public void findPlayersInGameByGameName_returnsTheGamesPlayers() {
+        List<Player> players = Arrays.asList(
+                Player.builder().playerNumber(1).name("Arthur").gameName("Excalibur").build(),
+                Player.builder().playerNumber(2).name("Lancelot").gameName("Excalibur").build());
+        when(mockPlayerRepository.findPlayersByGameName("Excalibur")).thenReturn(players);
+
+        assertThat(playerDataService.findPlayersInGameByGameName("Excalibur")).isEqualTo(players);
+    }
+
+    @Test
+    public void savePlayer_savesThePlayer() {
+        Player player = Player.builder().playerNumber(1).name("Arthur").gameName("Excalibur").build();
+
+        playerDataService.savePlayer(player);
+
+        verify(mockPlayerRepository).save(player);
+    }
+}
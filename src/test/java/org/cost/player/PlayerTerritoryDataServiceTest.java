@@ -0,0 +1,47 @@
+package org.cost.player;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PlayerTerritoryDataServiceTest {
+
+    private PlayerTerritoryRepository mockPlayerTerritoryRepository;
+    private PlayerTerritoryDataService playerTerritoryDataService;
+
+    @Before
+    public void setup() {
+        mockPlayerTerritoryRepository = mock(PlayerTerritoryRepository.class);
+        playerTerritoryDataService = new PlayerTerritoryDataService(mockPlayerTerritoryRepository);
+    }
+
+    @Test
+    public void getTerritoriesInGame_returnsTheGamesTerritories() {
+        List<PlayerTerritory> territories = Arrays.asList(
+                PlayerTerritory.builder().territoryId(1L).gameName("Excalibur").build(),
+                PlayerTerritory.builder().territoryId(2L).gameName("Excalibur").build());
+        when(mockPlayerTerritoryRepository.findByGameName("Excalibur")).thenReturn(territories);
+
+        assertThat(playerTerritoryDataService.getTerritoriesInGame("Excalibur")).isEqualTo(territories);
+        assertThat(playerTerritoryDataService.findByGameName("Excalibur")).isEqualTo(territories);
+    }
+
+    @Test
+    public void saveTerritory_savesEveryTerritory() {
+        ArrayList<PlayerTerritory> territories = new ArrayList<>(Arrays.asList(
+                PlayerTerritory.builder().territoryId(1L).troops(8).build(),
+                PlayerTerritory.builder().territoryId(2L).troops(4).build()));
+
+        playerTerritoryDataService.saveTerritory(territories);
+
+        verify(mockPlayerTerritoryRepository).save(territories);
+    }
+}
@@ -0,0 +1,108 @@
+package org.cost.player;
+
+import org.cost.game.Game;
+import org.cost.game.GameRepository;
+import org.cost.territory.TerritoryRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class PlayerTerritoryRepositoryTest {
+    @Autowired
+    PlayerTerritoryRepository playerTerritoryRepository;
+    @Autowired
+    GameRepository gameRepository;
+    @Autowired
+    PlayerRepository playerRepository;
+    @Autowired
+    TerritoryRepository territoryRepository;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void markUnsuppliedByGameName_onlyResetsTerritoriesInThatGame() {
+        createSuppliedTerritoryInGame("Excalibur", 1L);
+        createSuppliedTerritoryInGame("Excalibur", 2L);
+        createSuppliedTerritoryInGame("Camelot", 1L);
+
+        int updated = playerTerritoryRepository.markUnsuppliedByGameName("Excalibur");
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(playerTerritoryRepository.findByGameName("Excalibur"))
+                .extracting(PlayerTerritory::isSupplied)
+                .containsOnly(false);
+        assertThat(playerTerritoryRepository.findByGameName("Camelot"))
+                .extracting(PlayerTerritory::isSupplied)
+                .containsOnly(true);
+    }
+
+    @Test
+    public void findTerritoryDetail_fetchesOwnerAndPlayerCountInOneStatement() {
+        createSuppliedTerritoryInGame("Excalibur", 1L);
+        Player owner = playerRepository.save(Player.builder().name("zxmbies").playerNumber(1).gameName("Excalibur").build());
+        playerRepository.save(Player.builder().name("other").playerNumber(2).gameName("Excalibur").build());
+        PlayerTerritory playerTerritory = playerTerritoryRepository.findPlayerTerritoryByTerritoryIdAndGameName(1L, "Excalibur");
+        playerTerritory.setPlayerId(owner.getPlayerId());
+        playerTerritory.setTroops(7);
+        playerTerritoryRepository.save(playerTerritory);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        PlayerTerritoryDetail detail = playerTerritoryRepository.findTerritoryDetail("Excalibur", 1L);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(detail.getTroops()).isEqualTo(7);
+        assertThat(detail.getOwnerPlayerNumber()).isEqualTo(1);
+        assertThat(detail.getOwnerName()).isEqualTo("zxmbies");
+        assertThat(detail.getPlayersInGame()).isEqualTo(2);
+    }
+
+    @Test
+    public void createForGame_createsAnUnownedTerritoryPerMapTerritory_inOneStatement() {
+        gameRepository.save(Game.builder().gameName("Excalibur").build());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        int created = playerTerritoryRepository.createForGame("Excalibur");
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        List<PlayerTerritory> playerTerritories = playerTerritoryRepository.findByGameName("Excalibur");
+        assertThat(playerTerritories).hasSize(created);
+        assertThat(created).isEqualTo((int) territoryRepository.count());
+        assertThat(playerTerritories).extracting(PlayerTerritory::getPlayerId).containsOnly((Long) null);
+        assertThat(playerTerritories).extracting(PlayerTerritory::getTroops).containsOnly(0);
+        assertThat(playerTerritories).extracting(PlayerTerritory::getTerritoryName).doesNotContainNull();
+    }
+
+    private void createSuppliedTerritoryInGame(String gameName, Long territoryId) {
+        if (!gameRepository.exists(gameName)) {
+            gameRepository.save(Game.builder().gameName(gameName).build());
+        }
+        playerTerritoryRepository.save(PlayerTerritory.builder()
+                .gameName(gameName)
+                .territoryId(territoryId)
+                .supplied(true)
+                .build());
+    }
+
+    @After
+    public void teardown() {
+        playerTerritoryRepository.deleteAll();
+        playerRepository.deleteAll();
+        gameRepository.deleteAll();
+    }
+}
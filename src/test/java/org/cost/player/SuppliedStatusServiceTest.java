@@ -3,17 +3,27 @@ package org.cost.player;
 
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import org.cost.game.Game;
+import org.cost.game.GameState;
+import org.cost.game.WriteBehindService;
+import org.cost.territory.MapTopology;
+import org.cost.territory.MapTopologyRegistry;
 import org.cost.territory.Territory;
+import org.cost.territory.TerritoryRepository;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -22,45 +32,25 @@ public class SuppliedStatusServiceTest {
     private PlayerRepository mockPlayerRepository;
     private SuppliedStatusService suppliedStatusService;
     private PlayerTerritoryRepository mockPlayerTerritoryRepository;
+    private WriteBehindService mockWriteBehindService;
+    private TerritoryRepository mockTerritoryRepository;
 
     @Before
     public void setup() {
         mockPlayerRepository = mock(PlayerRepository.class);
         mockPlayerTerritoryRepository = mock(PlayerTerritoryRepository.class);
-        suppliedStatusService = new SuppliedStatusService(mockPlayerRepository, mockPlayerTerritoryRepository);
+        mockWriteBehindService = mock(WriteBehindService.class);
+        mockTerritoryRepository = mock(TerritoryRepository.class);
+        suppliedStatusService = new SuppliedStatusService(mockPlayerRepository, mockPlayerTerritoryRepository,
+                mockWriteBehindService, new MapTopologyRegistry(mockTerritoryRepository));
     }
 
     @Test
-    public void markUnsupplied_setsAllSuppliedOwnedTerritories_toUnsupplied() {
-        List<Player> players = Arrays.asList(
-                Player.builder().playerTerritoriesList(
-                        Arrays.asList(
-                                PlayerTerritory.builder().supplied(true).build(),
-                                PlayerTerritory.builder().supplied(false).build()
-                        )
-                ).build(),
-                Player.builder().playerTerritoriesList(
-                        Arrays.asList(
-                                PlayerTerritory.builder().supplied(true).build()
-                        )
-                ).build());
-        when(mockPlayerRepository.findAll()).thenReturn(players);
-
-        suppliedStatusService.markUnsupplied();
-
-        verify(mockPlayerRepository).save(players);
-        assertTrue(players
-                .stream()
-                .allMatch(p -> p.getPlayerTerritoriesList()
-                        .stream()
-                        .allMatch(pt -> !pt.isSupplied())
-                )
-        );
-        assertThat(players
-                .stream()
-                .mapToInt(p -> p.getPlayerTerritoriesList().size())
-                .sum()
-        ).isEqualTo(3);
+    public void markUnsupplied_resetsOnlyTheGivenGame() {
+        suppliedStatusService.markUnsupplied("gamename");
+
+        verify(mockPlayerTerritoryRepository).markUnsuppliedByGameName("gamename");
+        verifyZeroInteractions(mockPlayerRepository);
     }
 
     @Test
@@ -77,6 +67,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Islands 1")
                 .territoryId(6L)
+                .playerId(1L)
                 .player(Player.builder().playerNumber(1).build())
                 .supplied(false)
                 .territory(Territory
@@ -91,6 +82,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Seas 3")
                 .territoryId(13L)
+                .playerId(2L)
                 .player(Player.builder().playerNumber(2).build())
                 .supplied(false)
                 .territory(Territory
@@ -111,6 +103,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Hills 1")
                 .territoryId(1L)
+                .playerId(2L)
                 .player(Player.builder().playerNumber(2).build())
                 .supplied(false)
                 .territory(Territory
@@ -125,6 +118,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Hills 2")
                 .territoryId(2L)
+                .playerId(1L)
                 .player(Player.builder().playerNumber(1).build())
                 .supplied(false)
                 .territory(Territory
@@ -153,6 +147,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Cliffs 1")
                 .territoryId(4L)
+                .playerId(1L)
                 .player(Player.builder().playerNumber(1).build())
                 .supplied(false)
                 .territory(Territory
@@ -181,6 +176,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Islands 2")
                 .territoryId(7L)
+                .playerId(1L)
                 .player(Player.builder().playerNumber(1).build())
                 .supplied(false)
                 .territory(Territory
@@ -195,6 +191,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Islands 3")
                 .territoryId(8L)
+                .playerId(1L)
                 .player(Player.builder().playerNumber(1).build())
                 .supplied(false)
                 .territory(Territory
@@ -209,6 +206,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Desert 1")
                 .territoryId(9L)
+                .playerId(2L)
                 .player(Player.builder().playerNumber(2).build())
                 .supplied(false)
                 .territory(Territory
@@ -223,6 +221,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Desert 2")
                 .territoryId(10L)
+                .playerId(2L)
                 .player(Player.builder().playerNumber(2).build())
                 .supplied(false)
                 .territory(Territory
@@ -237,6 +236,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Seas 1")
                 .territoryId(11L)
+                .playerId(1L)
                 .player(Player.builder().playerNumber(1).build())
                 .supplied(false)
                 .territory(Territory
@@ -251,6 +251,7 @@ public class SuppliedStatusServiceTest {
                 .builder()
                 .territoryName("Seas 2")
                 .territoryId(12L)
+                .playerId(2L)
                 .player(Player.builder().playerNumber(2).build())
                 .supplied(false)
                 .territory(Territory
@@ -275,10 +276,11 @@ public class SuppliedStatusServiceTest {
                 player1supplied5,
                 player2Supplied3,
                 supplyDepot2);
+        givenMapOf(allPlayerTerritories);
 
         suppliedStatusService.markSupplied(supplyDepots, allPlayerTerritories);
 
-        verify(mockPlayerTerritoryRepository).save(allPlayerTerritories);
+        verifyZeroInteractions(mockPlayerTerritoryRepository);
 
         assertThat(allPlayerTerritories
                 .stream()
@@ -296,4 +298,159 @@ public class SuppliedStatusServiceTest {
                 supplyDepot2);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void markSupplied_queuesOnlyTerritoriesWhoseSuppliedStatusChanged() {
+        Player player = Player.builder().playerNumber(1).build();
+        PlayerTerritory supplyDepot = PlayerTerritory.builder()
+                .id(1L).territoryId(1L).playerId(10L).troops(8).player(player).supplied(true)
+                .territory(Territory.builder().east(2L).build())
+                .build();
+        PlayerTerritory newlySupplied = PlayerTerritory.builder()
+                .id(2L).territoryId(2L).playerId(10L).troops(4).player(player).supplied(false)
+                .territory(Territory.builder().west(1L).east(3L).build())
+                .build();
+        PlayerTerritory unowned = PlayerTerritory.builder()
+                .id(3L).territoryId(3L).supplied(false)
+                .territory(Territory.builder().west(2L).build())
+                .build();
+
+        givenMapOf(Arrays.asList(supplyDepot, newlySupplied, unowned));
+
+        suppliedStatusService.markSupplied(
+                Arrays.asList(supplyDepot),
+                Arrays.asList(supplyDepot, newlySupplied, unowned));
+
+        verify(mockWriteBehindService).updatePlayerTerritory(2L, 4, true, 10L);
+        verifyNoMoreInteractions(mockWriteBehindService);
+    }
+
+    @Test
+    public void markSupplied_readsAdjacencyFromTheMap_withoutTouchingLazyAssociations() {
+        /*
+         *   P1S | P1 | P2 | P1
+         */
+        when(mockTerritoryRepository.findAll()).thenReturn(Arrays.asList(
+                Territory.builder().territoryId(1L).east(2L).build(),
+                Territory.builder().territoryId(2L).west(1L).east(3L).build(),
+                Territory.builder().territoryId(3L).west(2L).east(4L).build(),
+                Territory.builder().territoryId(4L).west(3L).build()));
+        PlayerTerritory supplyDepot = detached(1L, 10L);
+        List<PlayerTerritory> row = Arrays.asList(supplyDepot, detached(2L, 10L), detached(3L, 20L), detached(4L, 10L));
+
+        suppliedStatusService.markSupplied(Arrays.asList(supplyDepot), row);
+
+        assertThat(row).extracting(PlayerTerritory::isSupplied).containsExactly(true, true, false, false);
+        row.forEach(playerTerritory -> {
+            verify(playerTerritory, never()).getTerritory();
+            verify(playerTerritory, never()).getPlayer();
+        });
+    }
+
+    @Test
+    public void recomputeSupplied_suppliesTerritoryJoinedToSupplyDepot() {
+        /*
+         *   P1S | P1 -> UO | P1
+         */
+        GameState gameState = gameStateForRow(
+                territory(1L, 1, true, true),
+                territory(2L, 1, true, false),
+                territory(3L, 0, false, false),
+                territory(4L, 1, false, false));
+        gameState.setOwner(2, 1);
+
+        BitSet flipped = suppliedStatusService.recomputeSupplied(gameState, 2);
+
+        assertThat(flipped).isEqualTo(bitSetOf(2, 3));
+        assertThat(gameState.isSupplied(2)).isTrue();
+        assertThat(gameState.isSupplied(3)).isTrue();
+    }
+
+    @Test
+    public void recomputeSupplied_cutsOffTerritoriesBehindCapturedTerritory() {
+        /*
+         *   P1S | P1 | P1 -> P2 | P1 | P2S
+         */
+        GameState gameState = gameStateForRow(
+                territory(1L, 1, true, true),
+                territory(2L, 1, true, false),
+                territory(3L, 1, true, false),
+                territory(4L, 1, true, false),
+                territory(5L, 2, true, true));
+        gameState.setOwner(2, 2);
+
+        BitSet flipped = suppliedStatusService.recomputeSupplied(gameState, 2);
+
+        assertThat(flipped).isEqualTo(bitSetOf(2, 3));
+        assertThat(gameState.isSupplied(0)).isTrue();
+        assertThat(gameState.isSupplied(1)).isTrue();
+        assertThat(gameState.isSupplied(2)).isFalse();
+        assertThat(gameState.isSupplied(3)).isFalse();
+        assertThat(gameState.isSupplied(4)).isTrue();
+    }
+
+    @Test
+    public void recomputeSupplied_leavesTerritoriesOutsideTouchedComponentsAlone() {
+        /*
+         *   P1 | P1 -> P2 | P2S | UO | P1
+         */
+        GameState gameState = gameStateForRow(
+                territory(1L, 1, false, false),
+                territory(2L, 1, false, false),
+                territory(3L, 2, true, true),
+                territory(4L, 0, false, false),
+                territory(5L, 1, true, false));
+        gameState.setOwner(1, 2);
+
+        BitSet flipped = suppliedStatusService.recomputeSupplied(gameState, 1);
+
+        assertThat(flipped).isEqualTo(bitSetOf(1));
+        assertThat(gameState.isSupplied(4)).isTrue();
+    }
+
+    private PlayerTerritory territory(Long territoryId, int owner, boolean supplied, boolean supplyDepot) {
+        return PlayerTerritory.builder()
+                .territoryId(territoryId)
+                .player(owner == 0 ? null : Player.builder().playerNumber(owner).build())
+                .supplied(supplied)
+                .supplyDepotTerritory(supplyDepot)
+                .build();
+    }
+
+    private PlayerTerritory detached(Long territoryId, Long playerId) {
+        return spy(PlayerTerritory.builder().id(territoryId).territoryId(territoryId).playerId(playerId).build());
+    }
+
+    private void givenMapOf(List<PlayerTerritory> playerTerritories) {
+        when(mockTerritoryRepository.findAll()).thenReturn(playerTerritories.stream()
+                .map(playerTerritory -> Territory.builder()
+                        .territoryId(playerTerritory.getTerritoryId())
+                        .north(playerTerritory.getTerritory().getNorth())
+                        .east(playerTerritory.getTerritory().getEast())
+                        .south(playerTerritory.getTerritory().getSouth())
+                        .west(playerTerritory.getTerritory().getWest())
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    private BitSet bitSetOf(int... indices) {
+        BitSet bitSet = new BitSet();
+        Arrays.stream(indices).forEach(bitSet::set);
+        return bitSet;
+    }
+
+    private GameState gameStateForRow(PlayerTerritory... row) {
+        List<Territory> territories = new ArrayList<>();
+        for (int i = 0; i < row.length; i++) {
+            territories.add(Territory.builder()
+                    .territoryId(row[i].getTerritoryId())
+                    .west(i == 0 ? null : row[i - 1].getTerritoryId())
+                    .east(i == row.length - 1 ? null : row[i + 1].getTerritoryId())
+                    .build());
+        }
+        return GameState.of(
+                Game.builder().gameName("gamename").started(true).turnNumber(1).build(),
+                Arrays.asList(Player.builder().playerNumber(1).build(), Player.builder().playerNumber(2).build()),
+                Arrays.asList(row),
+                MapTopology.of(territories).graph());
+    }
+}
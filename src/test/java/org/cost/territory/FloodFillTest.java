@@ -0,0 +1,136 @@
+package org.cost.territory;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FloodFillTest {
+
+    @Test
+    public void build_resolvesNeighborIdsToIndexes() {
+        TerritoryGraph graph = grid(3, 3);
+
+        assertThat(graph.size()).isEqualTo(9);
+        assertThat(graph.neighbor(4, TerritoryGraph.NORTH)).isEqualTo(1);
+        assertThat(graph.neighbor(4, TerritoryGraph.EAST)).isEqualTo(5);
+        assertThat(graph.neighbor(4, TerritoryGraph.SOUTH)).isEqualTo(7);
+        assertThat(graph.neighbor(4, TerritoryGraph.WEST)).isEqualTo(3);
+        assertThat(graph.neighbor(0, TerritoryGraph.NORTH)).isEqualTo(TerritoryGraph.NO_NEIGHBOR);
+        assertThat(graph.areNeighbors(0, 1)).isTrue();
+        assertThat(graph.areNeighbors(0, 4)).isFalse();
+        assertThat(graph.indexOf(105L)).isEqualTo(4);
+        assertThat(graph.indexOf(999L)).isEqualTo(TerritoryGraph.NO_NEIGHBOR);
+    }
+
+    @Test
+    public void build_ignoresNeighborsOutsideTheGraph() {
+        TerritoryGraph graph = TerritoryGraph.builder(1)
+                .add(1L, Territory.builder().east(2L).build())
+                .build();
+
+        assertThat(graph.neighbor(0, TerritoryGraph.EAST)).isEqualTo(TerritoryGraph.NO_NEIGHBOR);
+    }
+
+    @Test
+    public void componentBitboard_doesNotRecurse_onLargeBoards() {
+        TerritoryGraph graph = grid(1, 100_000);
+        long[] within = Bitboards.create(graph.size());
+        for (int index = 0; index < graph.size(); index++) {
+            Bitboards.set(within, index);
+        }
+
+        assertThat(Bitboards.count(new FloodFill(graph).component(0, within))).isEqualTo(100_000);
+    }
+
+    @Test
+    public void build_keepsNeighborMasks_onlyForBoardsThatFitOneWord() {
+        TerritoryGraph graph = grid(6, 9);
+
+        assertThat(graph.isSingleWord()).isTrue();
+        assertThat(graph.neighborMask(10)).isEqualTo(1L << 1 | 1L << 9 | 1L << 11 | 1L << 19);
+        assertThat(graph.areNeighbors(53, 44)).isTrue();
+        assertThat(graph.areNeighbors(53, 43)).isFalse();
+        assertThat(graph.areNeighbors(0, TerritoryGraph.NO_NEIGHBOR)).isFalse();
+        assertThat(grid(5, 13).isSingleWord()).isFalse();
+    }
+
+    @Test
+    public void fillBitboard_reachesOnlyTerritoriesWithin_onOneWordBoards() {
+        TerritoryGraph graph = grid(6, 9);
+        long[] within = everyTerritoryExceptColumn(graph, 9, 4);
+        long[] seeds = Bitboards.create(graph.size());
+        Bitboards.set(seeds, 0);
+
+        long[] reached = new FloodFill(graph).fill(seeds, within);
+
+        assertThat(Bitboards.count(reached)).isEqualTo(6 * 4);
+        assertThat(Bitboards.get(reached, 3)).isTrue();
+        assertThat(Bitboards.get(reached, 5)).isFalse();
+    }
+
+    @Test
+    public void fillBitboard_reachesOnlyTerritoriesWithin_onMultiWordBoards() {
+        TerritoryGraph graph = grid(10, 30);
+        long[] within = everyTerritoryExceptColumn(graph, 30, 20);
+        long[] seeds = Bitboards.create(graph.size());
+        Bitboards.set(seeds, 299);
+
+        long[] reached = new FloodFill(graph).fill(seeds, within);
+
+        assertThat(Bitboards.count(reached)).isEqualTo(10 * 9);
+        assertThat(Bitboards.get(reached, 21)).isTrue();
+        assertThat(Bitboards.get(reached, 19)).isFalse();
+    }
+
+    @Test
+    public void componentBitboard_alwaysIncludesTheSeed() {
+        TerritoryGraph graph = grid(3, 3);
+
+        long[] reached = new FloodFill(graph).component(4, Bitboards.create(graph.size()));
+
+        assertThat(reached).containsExactly(1L << 4);
+    }
+
+    @Test
+    public void nextSetBit_walksEveryWord() {
+        long[] board = Bitboards.create(200);
+        Bitboards.set(board, 3);
+        Bitboards.set(board, 64);
+        Bitboards.set(board, 199);
+
+        assertThat(Bitboards.nextSetBit(board, 0)).isEqualTo(3);
+        assertThat(Bitboards.nextSetBit(board, 4)).isEqualTo(64);
+        assertThat(Bitboards.nextSetBit(board, 65)).isEqualTo(199);
+        assertThat(Bitboards.nextSetBit(board, 200)).isEqualTo(-1);
+        Bitboards.clear(board, 199);
+        assertThat(Bitboards.nextSetBit(board, 65)).isEqualTo(-1);
+    }
+
+    private long[] everyTerritoryExceptColumn(TerritoryGraph graph, int columns, int column) {
+        long[] within = Bitboards.create(graph.size());
+        for (int index = 0; index < graph.size(); index++) {
+            if (index % columns != column) {
+                Bitboards.set(within, index);
+            }
+        }
+        return within;
+    }
+
+    private TerritoryGraph grid(int rows, int columns) {
+        TerritoryGraph.Builder builder = TerritoryGraph.builder(rows * columns);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                builder.add(id(row, column, columns),
+                        row == 0 ? null : id(row - 1, column, columns),
+                        column == columns - 1 ? null : id(row, column + 1, columns),
+                        row == rows - 1 ? null : id(row + 1, column, columns),
+                        column == 0 ? null : id(row, column - 1, columns));
+            }
+        }
+        return builder.build();
+    }
+
+    private Long id(int row, int column, int columns) {
+        return 101L + row * columns + column;
+    }
+}
@@ -0,0 +1,75 @@
+package org.cost.territory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MapTopologyTest {
+
+    private TerritoryRepository mockTerritoryRepository;
+
+    @Before
+    public void setup() {
+        mockTerritoryRepository = mock(TerritoryRepository.class);
+        when(mockTerritoryRepository.findAll()).thenReturn(Arrays.asList(
+                Territory.builder().territoryId(1L).name("Hills 1").supply(2).east(2L).build(),
+                Territory.builder().territoryId(2L).name("Hills 2").west(1L).east(3L).build(),
+                Territory.builder().territoryId(3L).name("Hills 3").supply(3).west(2L).east(4L).build(),
+                Territory.builder().territoryId(4L).name("Hills 4").supply(4).west(3L).build()));
+    }
+
+    @Test
+    public void of_indexesNamesSupplyAndNeighbors() {
+        MapTopology topology = MapTopology.of(mockTerritoryRepository.findAll());
+
+        int hills2 = topology.indexOf(2L);
+        assertThat(topology.size()).isEqualTo(4);
+        assertThat(topology.name(hills2)).isEqualTo("Hills 2");
+        assertThat(topology.territoryId(topology.neighbor(hills2, TerritoryGraph.EAST))).isEqualTo(3L);
+        assertThat(topology.neighbor(hills2, TerritoryGraph.NORTH)).isEqualTo(TerritoryGraph.NO_NEIGHBOR);
+        assertThat(topology.supply(topology.indexOf(3L))).isEqualTo(3);
+    }
+
+    @Test
+    public void startingCandidates_includeOnlyDepotsInPlayForPlayerCount() {
+        MapTopology topology = MapTopology.of(mockTerritoryRepository.findAll());
+
+        assertThat(topology.startingCandidates(2)).containsExactly(topology.indexOf(1L));
+        assertThat(topology.startingCandidates(3)).containsExactly(topology.indexOf(1L), topology.indexOf(3L));
+        assertThat(topology.startingCandidates(6)).hasSize(3);
+        assertThat(topology.isSupplyDepot(topology.indexOf(4L), 3)).isFalse();
+        assertThat(topology.isSupplyDepot(topology.indexOf(4L), 4)).isTrue();
+    }
+
+    @Test
+    public void toTerritories_returnsDetachedCopies() {
+        MapTopology topology = MapTopology.of(mockTerritoryRepository.findAll());
+
+        List<Territory> territories = topology.toTerritories();
+        territories.get(0).setName("changed");
+
+        assertThat(territories).extracting(Territory::getTerritoryId).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(territories.get(1).getWest()).isEqualTo(1L);
+        assertThat(topology.name(0)).isEqualTo("Hills 1");
+        assertThat(topology.toTerritories().get(0).getName()).isEqualTo("Hills 1");
+    }
+
+    @Test
+    public void registry_readsTerritoriesOnlyOnce() {
+        MapTopologyRegistry registry = new MapTopologyRegistry(mockTerritoryRepository);
+
+        registry.load();
+        MapTopology topology = registry.getTopology();
+
+        assertThat(registry.getTopology()).isSameAs(topology);
+        verify(mockTerritoryRepository, times(1)).findAll();
+    }
+}
@@ -2,8 +2,13 @@ package org.cost.territory;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cost.LinkFactory;
 import org.cost.SupplyRaidServerApplication;
 import org.cost.game.Game;
+import org.cost.game.GameRepository;
+import org.cost.game.GameShards;
+import org.cost.game.GameStateService;
+import org.cost.game.WriteBehindService;
 import org.cost.player.*;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -13,6 +18,7 @@ import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.context.ContextConfiguration;
@@ -20,21 +26,29 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 public class TerritoryControllerTest {
@@ -43,23 +57,36 @@ public class TerritoryControllerTest {
     private TerritoryRepository mockRepository;
     private PlayerRepository mockPlayerRepository;
     private PlayerTerritoryRepository mockPlayerTerritoryRepository;
+    private GameRepository mockGameRepository;
+    private WriteBehindService mockWriteBehindService;
+
+    private GameStateService gameStateService;
 
     @Before
     public void setup() {
+        mockWriteBehindService = mock(WriteBehindService.class);
         mockPlayerRepository = mock(PlayerRepository.class);
         mockRepository = mock(TerritoryRepository.class);
         mockPlayerTerritoryRepository = mock(PlayerTerritoryRepository.class);
+        mockGameRepository = mock(GameRepository.class);
+        MapTopologyRegistry mapTopologyRegistry = new MapTopologyRegistry(mockRepository);
+        gameStateService = new GameStateService(mockGameRepository, mockPlayerRepository, mockPlayerTerritoryRepository,
+                mockWriteBehindService, mapTopologyRegistry, mock(ApplicationEventPublisher.class));
+        SuppliedStatusService suppliedStatusService = new SuppliedStatusService(mockPlayerRepository, mockPlayerTerritoryRepository, mockWriteBehindService,
+                mapTopologyRegistry);
         TerritoryController territoryController = new TerritoryController(
-                mockRepository, mockPlayerRepository, mockPlayerTerritoryRepository);
+                mapTopologyRegistry, mockPlayerRepository, mockPlayerTerritoryRepository, gameStateService, suppliedStatusService, new LinkFactory(),
+                new GameShards(1, 16));
         mockMvc = MockMvcBuilders.standaloneSetup(territoryController).build();
     }
 
     @Test
     public void getTerritory_returnsTerritoryResponseObject() throws Exception {
-        when(mockRepository.findOne(4L)).thenReturn(Territory.builder().name("Cliffs 1").north(null).east(5L).south(13L).west(null).build());
-        when(mockRepository.findOne(5L)).thenReturn(Territory.builder().name("Cliffs 2").territoryId(5L).build());
-        when(mockRepository.findOne(13L)).thenReturn(Territory.builder().name("Cliffs 4").territoryId(13L).build());
-        when(mockPlayerTerritoryRepository.findPlayerTerritoryByTerritoryIdAndGameName(4L, "gamename")).thenReturn(new PlayerTerritory());
+        givenMap(
+                Territory.builder().name("Cliffs 1").territoryId(4L).north(null).east(5L).south(13L).west(null).build(),
+                Territory.builder().name("Cliffs 2").territoryId(5L).build(),
+                Territory.builder().name("Cliffs 4").territoryId(13L).build());
+        givenGameWith(PlayerTerritory.builder().territoryId(4L).build());
 
         MockHttpSession mockHttpSession = new MockHttpSession();
         mockHttpSession.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
@@ -88,9 +115,49 @@ public class TerritoryControllerTest {
                 "}", response, JSONCompareMode.LENIENT);
     }
 
+    @Test
+    public void getTerritory_issuesSingleQuery_whenGameIsNotInMemory() throws Exception {
+        givenMap(Territory.builder().name("Location 1").territoryId(1L).east(2L).build(),
+                Territory.builder().name("Location 2").territoryId(2L).west(1L).build());
+        givenGameWith(PlayerTerritory.builder().territoryId(1L).troops(4)
+                .player(Player.builder().playerNumber(1).name("player").build()).build());
+
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
+        mockMvc.perform(get("/territories/1").accept(MediaType.APPLICATION_JSON).session(session))
+                .andExpect(status().isOk());
+
+        verify(mockPlayerTerritoryRepository).findTerritoryDetail("gamename", 1L);
+        verifyNoMoreInteractions(mockPlayerTerritoryRepository);
+        verifyZeroInteractions(mockPlayerRepository, mockGameRepository);
+    }
+
+    @Test
+    public void getTerritory_issuesNoQueries_whenGameIsInMemory() throws Exception {
+        Player player = Player.builder().playerId(10L).playerNumber(1).name("player").build();
+        givenMap(Territory.builder().name("Location 1").territoryId(1L).build());
+        when(mockGameRepository.findOne("gamename")).thenReturn(Game.builder().gameName("gamename").started(true).turnNumber(1).build());
+        when(mockPlayerRepository.findPlayersByGameName("gamename")).thenReturn(Collections.singletonList(player));
+        when(mockPlayerTerritoryRepository.findByGameName("gamename")).thenReturn(Collections.singletonList(
+                PlayerTerritory.builder().territoryId(1L).playerId(10L).troops(6).build()));
+        gameStateService.getGameState("gamename");
+
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
+        String response = mockMvc.perform(get("/territories/1").accept(MediaType.APPLICATION_JSON).session(session))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JSONAssert.assertEquals("{\"name\": \"Location 1\", \"troops\": 6, \"owningPlayer\": {\"name\": \"player\", \"playerNumber\": 1}}",
+                response, JSONCompareMode.LENIENT);
+        verify(mockPlayerTerritoryRepository).findByGameName("gamename");
+        verifyNoMoreInteractions(mockPlayerTerritoryRepository);
+        verify(mockRepository, times(1)).findAll();
+    }
+
     @Test
     public void getTerritory_returns404_whenTerritoryOutsideRange() throws Exception {
-        when(mockRepository.getOne(-1L)).thenReturn(null);
+        givenMap(Territory.builder().name("Location 1").territoryId(1L).build());
 
         mockMvc.perform(get("/territories/-1").accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
@@ -100,9 +167,8 @@ public class TerritoryControllerTest {
     public void getOwnerofTerritory_returns_linkToOwnerOfTerritory() throws Exception {
         Player player = Player.builder().playerNumber(2).name("player").build();
         PlayerTerritory playerTerritory = PlayerTerritory.builder().playerId(30L).territoryId(1L).player(player).build();
-        when(mockRepository.findOne(1L)).thenReturn((Territory.builder().name("Location 1").territoryId(1L).build()));
-        when(mockPlayerTerritoryRepository.findPlayerTerritoryByTerritoryIdAndGameName(1L, "gamename"))
-                .thenReturn(playerTerritory);
+        givenMap(Territory.builder().name("Location 1").territoryId(1L).build());
+        givenGameWith(playerTerritory);
 
         MockHttpSession session = new MockHttpSession();
         session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
@@ -128,9 +194,8 @@ public class TerritoryControllerTest {
     @Test
     public void getOwnerOfTerritory_returnsNullOwningPlayer_whenNoOwner() throws Exception {
         PlayerTerritory playerTerritory = PlayerTerritory.builder().playerId(30L).territoryId(1L).player(null).build();
-        when(mockRepository.findOne(1L)).thenReturn((Territory.builder().name("Location 1").territoryId(1L).build()));
-        when(mockPlayerTerritoryRepository.findPlayerTerritoryByTerritoryIdAndGameName(1L, "gamename"))
-                .thenReturn(playerTerritory);
+        givenMap(Territory.builder().name("Location 1").territoryId(1L).build());
+        givenGameWith(playerTerritory);
 
         MockHttpSession session = new MockHttpSession();
         session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
@@ -159,7 +224,7 @@ public class TerritoryControllerTest {
         String content = objectMapper.writeValueAsString(territoryRequest);
         MockHttpSession mockHttpSession = new MockHttpSession();
         mockHttpSession.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
-        mockMvc.perform(post("/territories/owner").contentType(MediaType.APPLICATION_JSON).content(content).session(mockHttpSession))
+        postTerritoryOwner(content, mockHttpSession)
                 .andExpect(status().isOk());
 
         verify(mockPlayerRepository).save(player);
@@ -167,6 +232,51 @@ public class TerritoryControllerTest {
         assertThat(player.getPlayerTerritoriesList().get(0)).isSameAs(playerTerritory);
     }
 
+    @Test
+    public void postTerritoryOwner_queuesTerritoriesWhoseSupplyChanged_whenGameStarted() throws Exception {
+        Player player = Player.builder().playerId(10L).playerNumber(1).playerTerritoriesList(new ArrayList<>()).build();
+        PlayerTerritory supplyDepot = PlayerTerritory.builder().id(101L).territoryId(1L).playerId(10L).player(player)
+                .troops(8).supplied(true).supplyDepotTerritory(true)
+                .territory(Territory.builder().east(2L).build()).build();
+        PlayerTerritory captured = PlayerTerritory.builder().id(102L).territoryId(2L).troops(4)
+                .territory(Territory.builder().west(1L).build()).build();
+        givenMap(
+                Territory.builder().name("Location 1").territoryId(1L).east(2L).build(),
+                Territory.builder().name("Location 2").territoryId(2L).west(1L).build());
+        when(mockGameRepository.findOne("gamename")).thenReturn(Game.builder().gameName("gamename").started(true).turnNumber(1).build());
+        when(mockPlayerRepository.findPlayersByGameName("gamename")).thenReturn(Collections.singletonList(player));
+        when(mockPlayerTerritoryRepository.findByGameName("gamename")).thenReturn(Arrays.asList(supplyDepot, captured));
+        when(mockPlayerTerritoryRepository.findPlayerTerritoryByTerritoryIdAndGameName(2L, "gamename")).thenReturn(captured);
+        gameStateService.getGameState("gamename");
+
+        TerritoryController.TerritoryRequest territoryRequest = TerritoryController.TerritoryRequest.builder().playerNumber(1).territoryId(2).build();
+        String content = new ObjectMapper().writeValueAsString(territoryRequest);
+        MockHttpSession mockHttpSession = new MockHttpSession();
+        mockHttpSession.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
+        postTerritoryOwner(content, mockHttpSession)
+                .andExpect(status().isOk());
+
+        verify(mockWriteBehindService).updatePlayerTerritory(102L, 4, true, 10L);
+        verifyNoMoreInteractions(mockWriteBehindService);
+    }
+
+    @Test
+    public void postTerritoryOwner_runsOnTheGamesShard() throws Exception {
+        AtomicReference<String> thread = new AtomicReference<>();
+        when(mockPlayerRepository.findPlayersByGameName("gamename")).thenAnswer(invocation -> {
+            thread.set(Thread.currentThread().getName());
+            return Collections.emptyList();
+        });
+
+        String content = new ObjectMapper().writeValueAsString(TerritoryController.TerritoryRequest.builder().playerNumber(1).territoryId(2).build());
+        MockHttpSession mockHttpSession = new MockHttpSession();
+        mockHttpSession.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
+        postTerritoryOwner(content, mockHttpSession)
+                .andExpect(status().isNotFound());
+
+        assertThat(thread.get()).startsWith("game-shard-");
+    }
+
     @Test
     public void postTerritoryOwner_returnsNotFound_whenTerritoryNotFound() throws Exception{
         Player player = Player.builder().playerNumber(1).playerTerritoriesList(new ArrayList<>()).build();
@@ -180,17 +290,16 @@ public class TerritoryControllerTest {
 
         MockHttpSession mockHttpSession = new MockHttpSession();
         mockHttpSession.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
-        mockMvc.perform(post("/territories/owner").contentType(MediaType.APPLICATION_JSON).content(content).session(mockHttpSession))
+        postTerritoryOwner(content, mockHttpSession)
                 .andExpect(status().isNotFound());
     }
 
     @Test
     public void getTerritoryById_returnsNumberOfTroopsOnTerritory() throws Exception {
-        when(mockRepository.findOne(1L)).thenReturn((Territory.builder().name("Location 1").territoryId(1L).build()));
+        givenMap(Territory.builder().name("Location 1").territoryId(1L).build());
         PlayerTerritory playerTerritory = PlayerTerritory.builder().playerId(30L).territoryId(1L).
                 player(Player.builder().playerNumber(2).name("player").build()).troops(3).build();
-        when(mockPlayerTerritoryRepository.findPlayerTerritoryByTerritoryIdAndGameName(1L, "gamename"))
-                .thenReturn(playerTerritory);
+        givenGameWith(playerTerritory);
 
         MockHttpSession session = new MockHttpSession();
         session.setAttribute(PlayerController.SESSION_GAME_NAME_FIELD, "gamename");
@@ -219,6 +328,10 @@ public class TerritoryControllerTest {
     public void getTerritories_returnsListOfTerritoriesWithLinksIDsTroopsOwningPlayerNumberAndSupplyDepotAndSuppliedStatus() throws Exception {
         Player player1 = Player.builder().playerNumber(1).build();
         Player player2 = Player.builder().playerNumber(2).build();
+        givenMap(
+                Territory.builder().name("Location 1").territoryId(1L).build(),
+                Territory.builder().name("Location 2").territoryId(2L).build());
+        when(mockGameRepository.findOne("gamename")).thenReturn(Game.builder().gameName("gamename").build());
         when(mockPlayerTerritoryRepository.findByGameName("gamename")).thenReturn(Arrays.asList(
                 PlayerTerritory.builder()
                         .territoryName("Location 1").territoryId(1L).troops(11).player(player1)
@@ -263,4 +376,22 @@ public class TerritoryControllerTest {
                 "    ]}\n" +
                 "]", response, JSONCompareMode.STRICT);
     }
-}
\ No newline at end of file
+
+    private ResultActions postTerritoryOwner(String content, MockHttpSession session) throws Exception {
+        MvcResult started = mockMvc.perform(post("/territories/owner").contentType(MediaType.APPLICATION_JSON).content(content).session(session))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
+
+    private void givenMap(Territory... territories) {
+        when(mockRepository.findAll()).thenReturn(Arrays.asList(territories));
+    }
+
+    private void givenGameWith(PlayerTerritory playerTerritory) {
+        Player owner = playerTerritory.getPlayer();
+        when(mockPlayerTerritoryRepository.findTerritoryDetail("gamename", playerTerritory.getTerritoryId())).thenReturn(
+                new PlayerTerritoryDetail(playerTerritory.getTerritoryId(), playerTerritory.getTroops(),
+                        owner == null ? null : owner.getPlayerNumber(), owner == null ? null : owner.getName(), 2));
+    }
+}